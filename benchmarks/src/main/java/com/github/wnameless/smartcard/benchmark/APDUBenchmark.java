@@ -0,0 +1,95 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import javax.smartcardio.CommandAPDU;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import com.github.wnameless.smartcard.APDU;
+import com.github.wnameless.smartcard.INS;
+
+/**
+ * 
+ * {@link APDUBenchmark} measures the creation of CommandAPDU by {@link APDU#builder()}.
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class APDUBenchmark {
+
+  private static final String AID = "D1580000010000000000000000001100";
+
+  private byte[] shortData;
+  private byte[] extendedData;
+  private ByteBuffer buffer;
+
+  @Setup
+  public void setUp() {
+    shortData = new byte[16];
+    extendedData = new byte[1024];
+    buffer = ByteBuffer.allocateDirect(4096);
+  }
+
+  @Benchmark
+  public CommandAPDU buildHeaderOnly() {
+    return APDU.builder().setINS(INS.GET_CHALLENGE).build();
+  }
+
+  @Benchmark
+  public CommandAPDU buildShort() {
+    return APDU.builder().setINS(INS.SELECT_FILE).setP1((byte) 0x04).setData(shortData).setLe(255)
+        .build();
+  }
+
+  @Benchmark
+  public CommandAPDU buildExtended() {
+    return APDU.builder().setINS(INS.UPDATE_BINARY).setData(extendedData).build();
+  }
+
+  @Benchmark
+  public CommandAPDU buildExtendedLe() {
+    return APDU.builder().setINS(INS.READ_BINARY).setLe(4096).build();
+  }
+
+  @Benchmark
+  public CommandAPDU setDataWithHexString() {
+    return APDU.builder().setINS(INS.SELECT_FILE).setP1((byte) 0x04).setData(AID).build();
+  }
+
+  @Benchmark
+  public ByteBuffer encodeToByteBuffer() {
+    buffer.clear();
+    return APDU.builder().setINS(INS.UPDATE_BINARY).setData(extendedData).encodeTo(buffer);
+  }
+
+}
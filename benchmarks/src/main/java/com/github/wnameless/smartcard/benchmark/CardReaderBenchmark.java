@@ -0,0 +1,110 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import com.github.wnameless.smartcard.APDU;
+import com.github.wnameless.smartcard.CardReader;
+import com.github.wnameless.smartcard.INS;
+import com.github.wnameless.smartcard.VirtualCard;
+import com.github.wnameless.smartcard.VirtualCardTerminal;
+import com.github.wnameless.smartcard.VirtualTerminals;
+
+/**
+ * 
+ * {@link CardReaderBenchmark} measures the transmit path of {@link CardReader} against
+ * {@link VirtualCardTerminal}s with configurable latency.
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CardReaderBenchmark {
+
+  @Param({"1", "16", "128"})
+  public int terminalCount;
+
+  @Param({"0", "100"})
+  public long transmitMicros;
+
+  private CardReader reader;
+  private CardTerminal terminal;
+  private List<CommandAPDU> commands;
+
+  @Setup
+  public void setUp() {
+    VirtualCard card = VirtualCard.builder()
+        .setResponder(command -> new ResponseAPDU(new byte[] {(byte) 0x90, (byte) 0x00}))
+        .setLatency(transmitMicros, TimeUnit.MICROSECONDS).build();
+    List<VirtualCardTerminal> terminals = new ArrayList<>();
+    for (int i = 0; i < terminalCount; i++) {
+      VirtualCardTerminal virtualTerminal = new VirtualCardTerminal("Virtual Reader " + i);
+      virtualTerminal.insert(card);
+      terminals.add(virtualTerminal);
+    }
+    reader = CardReader.newInstance(VirtualTerminals.newFactory(terminals));
+    terminal = terminals.get(0);
+    commands = List.of(
+        APDU.builder().setINS(INS.SELECT_FILE).setP1((byte) 0x04)
+            .setData("D1580000010000000000000000001100").build(),
+        APDU.builder().setINS(INS.GET_DATA).setP1((byte) 0x11).setData("0000").build());
+  }
+
+  @TearDown
+  public void tearDown() {
+    reader.getSessionPool().closeAll();
+  }
+
+  @Benchmark
+  public List<ResponseAPDU> readOnTerminal() {
+    return reader.readOnTerminal(terminal, commands);
+  }
+
+  @Benchmark
+  public Map<CardTerminal, List<ResponseAPDU>> read() {
+    return reader.read(commands);
+  }
+
+  @Benchmark
+  public Map<CardTerminal, List<ResponseAPDU>> readConcurrently() {
+    return reader.readConcurrently(commands);
+  }
+
+}
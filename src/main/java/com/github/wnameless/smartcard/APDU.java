@@ -18,11 +18,9 @@
  */
 package com.github.wnameless.smartcard;
 
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
 import javax.smartcardio.CommandAPDU;
-import net.sf.rubycollect4j.Ruby;
 import net.sf.rubycollect4j.util.ByteUtils;
 
 /**
@@ -51,9 +49,8 @@ public final class APDU {
   public static class APDUBuilder {
 
     private final byte[] apdu = new byte[4];
-    private byte[] lc = null;
     private byte[] data = null;
-    private byte[] le = null;
+    private int le = 0;
 
     /**
      * Default constructor.
@@ -104,27 +101,19 @@ public final class APDU {
       return this;
     }
 
-    private APDUBuilder setLc(int lcLength) {
-      lc = lengthOfData(lcLength);
-      return this;
-    }
-
-    private byte[] lengthOfData(int length) {
-      byte[] lenBytes;
-      if (length < 256) {
-        lenBytes = new byte[] {(byte) length};
-      } else {
-        ByteBuffer buffer = ByteBuffer.allocate(3);
-        buffer.position(1);
-        lenBytes = buffer.putShort((short) length).array();
-      }
-      return lenBytes;
+    /**
+     * Checks if Lc and Le are encoded in extended length, which applies to both of them once
+     * either one doesn't fit a single byte.
+     */
+    private boolean isExtended() {
+      return (data != null && data.length > 255) || le > 255;
     }
 
-    private APDUBuilder clearLc() {
-      lc = null;
-      data = null;
-      return this;
+    /**
+     * Puts a 2-byte length in big-endian order regardless of the order of the ByteBuffer.
+     */
+    private static void putLength(ByteBuffer buffer, int length) {
+      buffer.put((byte) (length >> 8)).put((byte) length);
     }
 
     /**
@@ -139,7 +128,6 @@ public final class APDU {
         throw new IllegalArgumentException("Data length must be between 1..65535");
       }
 
-      setLc(dataBytes.length);
       data = dataBytes;
       return this;
     }
@@ -154,13 +142,7 @@ public final class APDU {
      */
     public APDUBuilder setData(String hexString) {
       byte[] bytes = ByteUtils.fromHexString(hexString);
-      if (bytes.length == 0) {
-        lc = null;
-        data = null;
-      } else {
-        data = bytes;
-        setLc(data.length);
-      }
+      data = bytes.length == 0 ? null : bytes;
       return this;
     }
 
@@ -171,7 +153,7 @@ public final class APDU {
      * @return this {@link APDUBuilder}
      */
     public APDUBuilder clearData() {
-      clearLc();
+      data = null;
       return this;
     }
 
@@ -186,7 +168,7 @@ public final class APDU {
         throw new IllegalArgumentException("Le must be between 1..65535");
       }
 
-      le = lengthOfData(leLength);
+      le = leLength;
       return this;
     }
 
@@ -196,40 +178,68 @@ public final class APDU {
      * @return this {@link APDUBuilder}
      */
     public APDUBuilder clearLe() {
-      le = null;
+      le = 0;
       return this;
     }
 
+    /**
+     * Returns the number of bytes of the encoded command APDU.
+     * 
+     * @return the encoded length
+     */
+    public int getEncodedLength() {
+      boolean extended = isExtended();
+      int length = apdu.length;
+      if (data != null) length += (extended ? 3 : 1) + data.length;
+      if (le != 0) length += extended ? (data != null ? 2 : 3) : 1;
+      return length;
+    }
+
+    /**
+     * Writes the encoded command APDU into given ByteBuffer from its current position. The position
+     * is advanced by {@link #getEncodedLength()}, nothing is written if the ByteBuffer is too
+     * small.
+     * 
+     * @param buffer a ByteBuffer
+     * @return given ByteBuffer
+     * @throws BufferOverflowException if the remaining space of the ByteBuffer is not enough
+     */
+    public ByteBuffer encodeTo(ByteBuffer buffer) {
+      if (buffer.remaining() < getEncodedLength()) throw new BufferOverflowException();
+
+      boolean extended = isExtended();
+      buffer.put(apdu);
+      if (data != null) {
+        if (extended) putLength(buffer.put((byte) 0x00), data.length);
+        else buffer.put((byte) data.length);
+        buffer.put(data);
+      }
+      if (le != 0) {
+        if (extended && data == null) buffer.put((byte) 0x00);
+        if (extended) putLength(buffer, le);
+        else buffer.put((byte) le);
+      }
+      return buffer;
+    }
+
+    /**
+     * Returns the encoded command APDU as a byte array.
+     * 
+     * @return the encoded bytes
+     */
+    public byte[] toBytes() {
+      byte[] bytes = new byte[getEncodedLength()];
+      encodeTo(ByteBuffer.wrap(bytes));
+      return bytes;
+    }
+
     /**
      * Returns a CommandAPDU by user given data.
      * 
      * @return CommandAPDU
      */
     public CommandAPDU build() {
-      byte[] finalApdu = apdu;
-      if (lc != null) {
-        finalApdu =
-            Ruby.Array.of(apdu, lc, data).reduce(new ByteArrayOutputStream(), (os, bytes) -> {
-              try {
-                os.write(bytes);
-              } catch (IOException e) {
-                throw new RuntimeException(e);
-              }
-              return os;
-            }).toByteArray();
-      }
-      if (le != null) {
-        finalApdu =
-            Ruby.Array.of(finalApdu, le).reduce(new ByteArrayOutputStream(), (os, bytes) -> {
-              try {
-                os.write(bytes);
-              } catch (IOException e) {
-                throw new RuntimeException(e);
-              }
-              return os;
-            }).toByteArray();
-      }
-      return new CommandAPDU(finalApdu);
+      return new CommandAPDU(toBytes());
     }
 
   }
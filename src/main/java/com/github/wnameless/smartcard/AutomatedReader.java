@@ -18,27 +18,56 @@
  */
 package com.github.wnameless.smartcard;
 
-import java.util.ArrayList;
+import static java.util.Collections.emptyList;
 import java.util.Arrays;
-import java.util.LinkedHashSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.smartcardio.CardException;
 import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CardTerminals;
 import javax.smartcardio.CommandAPDU;
 import javax.smartcardio.ResponseAPDU;
-import javax.swing.Timer;
 
 /**
  * 
- * {@link AutomatedReader} can continuously perform certain {@link CardTask} by a time interval.
+ * {@link AutomatedReader} can continuously perform certain {@link CardTask} by a time interval or
+ * whenever a card is inserted or removed.
+ * <P>
+ * All results are also published as {@link CardEvent}s to the subscribers of {@link #events()}, so
+ * they can be processed on their own executors without stalling the card detection.
  * 
  */
 public final class AutomatedReader {
 
-  private final List<CommandAPDU> commands;
-  private Timer timer;
+  private static final Logger logger = Logger.getLogger(AutomatedReader.class.getName());
+
+  private static final long WAIT_TIMEOUT = 1000;
+
+  private final CardReader reader;
+  private final CommandScript script;
+  private ScheduledExecutorService timer;
+  private Watcher watcher;
+  private final List<EventStream> streams = new CopyOnWriteArrayList<>();
+  private final LongAdder droppedEvents = new LongAdder();
 
   /**
    * Returns an {@link AutomatedReader}.
@@ -46,8 +75,7 @@ public final class AutomatedReader {
    * @param commands an array of CommandAPDU
    */
   public AutomatedReader(CommandAPDU... commands) {
-    Objects.requireNonNull(commands);
-    this.commands = new ArrayList<>(Arrays.asList(commands));
+    this(CardReader.getInstance(), commands);
   }
 
   /**
@@ -56,13 +84,49 @@ public final class AutomatedReader {
    * @param commands a List of CommandAPDU
    */
   public AutomatedReader(List<CommandAPDU> commands) {
+    this(CardReader.getInstance(), commands);
+  }
+
+  /**
+   * Returns an {@link AutomatedReader} which reads by given {@link CardReader}.
+   * 
+   * @param reader a {@link CardReader}
+   * @param commands an array of CommandAPDU
+   */
+  public AutomatedReader(CardReader reader, CommandAPDU... commands) {
+    Objects.requireNonNull(commands);
+    this.reader = Objects.requireNonNull(reader);
+    script = CommandScript.of(Arrays.asList(commands));
+  }
+
+  /**
+   * Returns an {@link AutomatedReader} which reads by given {@link CardReader}.
+   * 
+   * @param reader a {@link CardReader}
+   * @param commands a List of CommandAPDU
+   */
+  public AutomatedReader(CardReader reader, List<CommandAPDU> commands) {
     Objects.requireNonNull(commands);
-    this.commands = new ArrayList<>(commands);
+    this.reader = Objects.requireNonNull(reader);
+    script = CommandScript.of(commands);
+  }
+
+  /**
+   * Returns an {@link AutomatedReader} which runs a {@link CommandScript} by given
+   * {@link CardReader}.
+   * 
+   * @param reader a {@link CardReader}
+   * @param script a {@link CommandScript} whose slots are all filled
+   */
+  public AutomatedReader(CardReader reader, CommandScript script) {
+    this.reader = Objects.requireNonNull(reader);
+    script.checkComplete();
+    this.script = script;
   }
 
   /**
    * Starts to read smartcards and performs a {@link CardTask} continuously. This {@link CardTask}
-   * is only performed if there is any CHANGE on the responses from card terminals.<br>
+   * is only performed for the card terminals whose ATR or responses CHANGE since the last read.<br>
    * <br>
    * If this method is called again, the previous {@link CardTask} will be stopped and the new
    * {@link CardTask} will perform.
@@ -71,48 +135,423 @@ public final class AutomatedReader {
    * @param task a {@link CardTask}
    */
   public synchronized void reading(int time, final CardTask task) {
+    reading(PollingPolicy.fixed(Math.max(time, 1), TimeUnit.MILLISECONDS), task);
+  }
+
+  /**
+   * Starts to read smartcards and performs a {@link CardTask} continuously, each card terminal at
+   * the pace of given {@link PollingPolicy}. This {@link CardTask} is only performed for the card
+   * terminals whose ATR or responses CHANGE since the last read. Card terminals without a card are
+   * not sent any command, and card terminals quarantined by {@link TerminalHealth} are skipped.<br>
+   * <br>
+   * If this method is called again, the previous {@link CardTask} will be stopped and the new
+   * {@link CardTask} will perform.
+   * 
+   * @param policy a {@link PollingPolicy}
+   * @param task a {@link CardTask}
+   */
+  public synchronized void reading(PollingPolicy policy, final CardTask task) {
+    Objects.requireNonNull(policy);
     Objects.requireNonNull(task);
     stop();
-    final Set<ResponseAPDU> lastResponses = new LinkedHashSet<>();
-    timer = new Timer(time, (event) -> {
-      Map<CardTerminal, List<ResponseAPDU>> responses = CardReader.getInstance().read(commands);
-      List<ResponseAPDU> allResponseAPDUs =
-          responses.values().stream().flatMap(r -> r.stream()).toList();
-      if (lastResponses.addAll(allResponseAPDUs) && !lastResponses.isEmpty()) {
-        lastResponses.clear();
-        lastResponses.addAll(allResponseAPDUs);
-        for (CardTerminal terminal : responses.keySet()) {
-          task.execute(terminal, responses.get(terminal));
-        }
+    timer = Executors
+        .newSingleThreadScheduledExecutor(new DaemonThreadFactory("smartcard-automated-reader"));
+    Poller poller = new Poller(timer, policy, task);
+    timer.schedule(poller, policy.getMinimumInterval(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the 64-bit FNV-1a digest of an ATR and the bytes of all responses.
+   */
+  static long fingerprint(byte[] atr, List<ResponseAPDU> responses) {
+    long hash = 0xcbf29ce484222325L;
+    hash = fnv(hash, atr);
+    for (ResponseAPDU response : responses) {
+      hash = fnv(hash, response.getBytes());
+    }
+    return hash;
+  }
+
+  private static long fnv(long hash, byte[] bytes) {
+    for (byte b : bytes) {
+      hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+    }
+    // Mixes in the length, so the boundaries between responses count
+    hash = (hash ^ bytes.length) * 0x100000001b3L;
+    return hash;
+  }
+
+  /**
+   * Starts to read smartcards continuously and only publishes {@link CardEvent}s.
+   * 
+   * @param time in milliseconds
+   */
+  public void reading(int time) {
+    reading(time, (terminal, responses) -> {});
+  }
+
+  /**
+   * Starts to read smartcards continuously at the pace of given {@link PollingPolicy} and only
+   * publishes {@link CardEvent}s.
+   * 
+   * @param policy a {@link PollingPolicy}
+   */
+  public void reading(PollingPolicy policy) {
+    reading(policy, (terminal, responses) -> {});
+  }
+
+  /**
+   * Starts to watch smartcards and performs a {@link CardTask} whenever a card is inserted into or
+   * removed from a card terminal. No command is sent while the cards stay unchanged.<br>
+   * <br>
+   * On insertion, the {@link CardTask} receives the responses of the card. On removal, it receives
+   * an empty List of ResponseAPDU. Tasks of the same card terminal are performed in order.<br>
+   * <br>
+   * If this method is called again, the previous {@link CardTask} will be stopped and the new
+   * {@link CardTask} will perform.
+   * 
+   * @param task a {@link CardTask}
+   */
+  public synchronized void watching(final CardTask task) {
+    Objects.requireNonNull(task);
+    stop();
+    watcher = new Watcher(task);
+    watcher.start();
+  }
+
+  /**
+   * Starts to watch smartcards and only publishes {@link CardEvent}s.
+   */
+  public void watching() {
+    watching((terminal, responses) -> {});
+  }
+
+  /**
+   * Returns a Publisher of {@link CardEvent}s which delivers events on the common ForkJoinPool
+   * with the default buffer size and drops events for subscribers falling behind.
+   * 
+   * @return Publisher of {@link CardEvent}
+   */
+  public Flow.Publisher<CardEvent> events() {
+    return events(ForkJoinPool.commonPool(), Flow.defaultBufferSize(), OverflowPolicy.DROP);
+  }
+
+  /**
+   * Returns a Publisher of {@link CardEvent}s. Each subscriber has its own bounded buffer, the
+   * {@link OverflowPolicy} decides what happens once it is full.
+   * 
+   * @param executor the Executor which delivers events to subscribers
+   * @param bufferCapacity the maximum buffer capacity of each subscriber
+   * @param policy an {@link OverflowPolicy}
+   * @return Publisher of {@link CardEvent}
+   */
+  public Flow.Publisher<CardEvent> events(Executor executor, int bufferCapacity,
+      OverflowPolicy policy) {
+    Objects.requireNonNull(executor);
+    Objects.requireNonNull(policy);
+    EventStream stream =
+        new EventStream(new SubmissionPublisher<>(executor, bufferCapacity), policy);
+    streams.add(stream);
+    return stream.publisher;
+  }
+
+  /**
+   * Completes all Publishers of {@link CardEvent}s returned so far.
+   */
+  public void closeEvents() {
+    for (EventStream stream : streams) {
+      stream.publisher.close();
+    }
+    streams.clear();
+  }
+
+  /**
+   * Returns the number of {@link CardEvent}s dropped by the {@link OverflowPolicy#DROP} policy.
+   * 
+   * @return the number of dropped events
+   */
+  public long getDroppedEvents() {
+    return droppedEvents.sum();
+  }
+
+  private void publish(CardEvent event) {
+    for (EventStream stream : streams) {
+      stream.publish(event);
+    }
+  }
+
+  private final class EventStream {
+
+    private final SubmissionPublisher<CardEvent> publisher;
+    private final OverflowPolicy policy;
+
+    private EventStream(SubmissionPublisher<CardEvent> publisher, OverflowPolicy policy) {
+      this.publisher = publisher;
+      this.policy = policy;
+    }
+
+    private void publish(CardEvent event) {
+      if (publisher.isClosed()) return;
+
+      if (policy == OverflowPolicy.BLOCK) {
+        publisher.submit(event);
+      } else {
+        publisher.offer(event, (subscriber, dropped) -> {
+          droppedEvents.increment();
+          return false;
+        });
       }
-    });
-    timer.start();
+    }
+
   }
 
   /**
    * Stops the reading of smartcards.
    */
   public synchronized void stop() {
-    if (timer != null) timer.stop();
+    if (timer != null) {
+      timer.shutdownNow();
+      timer = null;
+    }
+    if (watcher != null) {
+      watcher.shutdown();
+      watcher = null;
+    }
+  }
+
+  /**
+   * 
+   * {@link Poller} reads the card terminals which are due and reschedules itself for the next due
+   * card terminal.
+   *
+   */
+  private final class Poller implements Runnable {
+
+    private final ScheduledExecutorService executor;
+    private final PollingPolicy policy;
+    private final CardTask task;
+    private final Map<CardTerminal, Poll> polls = new HashMap<>();
+
+    private Poller(ScheduledExecutorService executor, PollingPolicy policy, CardTask task) {
+      this.executor = executor;
+      this.policy = policy;
+      this.task = task;
+    }
+
+    @Override
+    public void run() {
+      try {
+        List<CardTerminal> terminals = reader.getCardTerminals();
+        polls.entrySet().removeIf(entry -> {
+          if (terminals.contains(entry.getKey())) return false;
+          if (entry.getValue().fingerprint != null) publish(CardEvent.removed(entry.getKey()));
+          return true;
+        });
+        for (CardTerminal terminal : terminals) {
+          Poll poll = polls.computeIfAbsent(terminal, k -> new Poll());
+          if (poll.due - System.nanoTime() > 0) continue;
+          if (!reader.getHealth().allows(terminal)) {
+            poll.interval = policy.nextInterval(poll.interval, false, script.size());
+            poll.due = System.nanoTime() + poll.interval;
+            continue;
+          }
+
+          boolean changed = false;
+          try {
+            changed = poll(terminal, poll);
+          } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Failed to poll " + terminal.getName(), e);
+            publish(CardEvent.error(terminal, e));
+          }
+          poll.interval = policy.nextInterval(poll.interval, changed, script.size());
+          poll.due = System.nanoTime() + poll.interval;
+        }
+      } catch (RuntimeException e) {
+        logger.log(Level.SEVERE, "Failed to list card terminals for polling", e);
+        publish(CardEvent.error(null, e));
+      }
+      reschedule();
+    }
+
+    /**
+     * Reads a card terminal and returns true if it changed since the last read. A failed read
+     * publishes an ERROR event and keeps the last state of the card terminal, only a card terminal
+     * without a card is reported as removed.
+     */
+    private boolean poll(CardTerminal terminal, Poll poll) {
+      List<ResponseAPDU> current;
+      try {
+        if (!terminal.isCardPresent()) {
+          if (poll.fingerprint == null) return false;
+
+          poll.fingerprint = null;
+          publish(CardEvent.removed(terminal));
+          return true;
+        }
+        current = reader.readOnTerminalOrThrow(terminal, script);
+      } catch (CardException | IllegalStateException e) {
+        logger.log(Level.WARNING, "Failed to read " + terminal.getName() + " while polling", e);
+        publish(CardEvent.error(terminal, e));
+        return false;
+      }
+
+      long fingerprint = fingerprint(reader.getSessionPool().getATR(terminal), current);
+      Long last = poll.fingerprint;
+      poll.fingerprint = fingerprint;
+      if (last != null && last == fingerprint) return false;
+
+      if (last == null) publish(CardEvent.inserted(terminal));
+      publish(CardEvent.responses(terminal, current));
+      task.execute(terminal, current);
+      return true;
+    }
+
+    private void reschedule() {
+      long delay = policy.getMaximumInterval(TimeUnit.NANOSECONDS);
+      long now = System.nanoTime();
+      for (Poll poll : polls.values()) {
+        delay = Math.min(delay, Math.max(poll.due - now, 0));
+      }
+      if (polls.isEmpty()) delay = policy.getMinimumInterval(TimeUnit.NANOSECONDS);
+      if (executor.isShutdown()) return;
+      try {
+        executor.schedule(this, delay, TimeUnit.NANOSECONDS);
+      } catch (RejectedExecutionException e) {
+        logger.log(Level.FINE, "Polling is stopped", e);
+      }
+    }
+
+  }
+
+  private static final class Poll {
+
+    private long interval;
+    private long due = System.nanoTime();
+    private Long fingerprint;
+
+  }
+
+  private final class Watcher extends Thread {
+
+    private final CardTask task;
+    private final ExecutorService executor =
+        Executors.newCachedThreadPool(new DaemonThreadFactory("smartcard-watcher-task"));
+    private final Map<CardTerminal, SerialExecutor> lanes = new ConcurrentHashMap<>();
+    private final Set<CardTerminal> present = new HashSet<>();
+    private volatile boolean running = true;
+
+    private Watcher(CardTask task) {
+      super("smartcard-watcher");
+      setDaemon(true);
+      this.task = task;
+    }
+
+    @Override
+    public void run() {
+      CardTerminals terminals = reader.terminals();
+      while (running) {
+        try {
+          reconcile(terminals);
+          if (!terminals.waitForChange(WAIT_TIMEOUT) || !running) continue;
+
+          for (CardTerminal terminal : terminals.list(CardTerminals.State.CARD_REMOVAL)) {
+            if (present.remove(terminal)) removed(terminal);
+          }
+          for (CardTerminal terminal : terminals.list(CardTerminals.State.CARD_INSERTION)) {
+            if (present.add(terminal)) inserted(terminal);
+          }
+        } catch (CardException | RuntimeException e) {
+          if (!running) break;
+          logger.log(Level.WARNING, "Failed to watch card terminals, retrying in "
+              + WAIT_TIMEOUT + "ms", e);
+          publish(CardEvent.error(null, e));
+          reader.getTerminalRegistry().invalidate();
+          pause();
+        }
+      }
+    }
+
+    /**
+     * Catches up with cards inserted or removed before waitForChange took its first snapshot.
+     */
+    private void reconcile(CardTerminals terminals) throws CardException {
+      List<CardTerminal> cards = terminals.list(CardTerminals.State.CARD_PRESENT);
+      for (Iterator<CardTerminal> iter = present.iterator(); iter.hasNext();) {
+        CardTerminal terminal = iter.next();
+        if (!cards.contains(terminal)) {
+          iter.remove();
+          removed(terminal);
+        }
+      }
+      for (CardTerminal terminal : cards) {
+        if (present.add(terminal)) inserted(terminal);
+      }
+    }
+
+    private void inserted(CardTerminal terminal) {
+      publish(CardEvent.inserted(terminal));
+      lane(terminal).execute(() -> {
+        if (!running) return;
+        List<ResponseAPDU> responses = reader.readOnTerminal(terminal, script);
+        publish(CardEvent.responses(terminal, responses));
+        perform(terminal, responses);
+      });
+    }
+
+    private void removed(CardTerminal terminal) {
+      publish(CardEvent.removed(terminal));
+      lane(terminal).execute(() -> {
+        reader.getSessionPool().evict(terminal);
+        if (running) perform(terminal, emptyList());
+      });
+    }
+
+    private void perform(CardTerminal terminal, List<ResponseAPDU> responses) {
+      try {
+        task.execute(terminal, responses);
+      } catch (RuntimeException e) {
+        logger.log(Level.SEVERE, "CardTask failed on " + terminal.getName(), e);
+        publish(CardEvent.error(terminal, e));
+      }
+    }
+
+    private SerialExecutor lane(CardTerminal terminal) {
+      return lanes.computeIfAbsent(terminal, t -> new SerialExecutor(executor));
+    }
+
+    private void pause() {
+      try {
+        Thread.sleep(WAIT_TIMEOUT);
+      } catch (InterruptedException e) {
+        running = false;
+      }
+    }
+
+    private void shutdown() {
+      running = false;
+      interrupt();
+      executor.shutdown();
+    }
+
   }
 
   @Override
   public boolean equals(Object o) {
     if (o instanceof AutomatedReader) {
       AutomatedReader ar = (AutomatedReader) o;
-      return Objects.equals(commands, ar.commands);
+      return Objects.equals(reader, ar.reader) && Objects.equals(script, ar.script);
     }
     return false;
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(commands);
+    return Objects.hash(reader, script);
   }
 
   @Override
   public String toString() {
-    return getClass().getSimpleName() + "{" + commands + "}";
+    return getClass().getSimpleName() + "{" + script.getCommands() + "}";
   }
 
 }
@@ -0,0 +1,369 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import javax.smartcardio.ResponseAPDU;
+import net.sf.rubycollect4j.util.ByteUtils;
+
+/**
+ * 
+ * {@link BerTlv} is a read-only view of BER-TLV data objects over a byte array or ByteBuffer, such
+ * as the FCI of SELECT or the response of GET DATA. Nothing is parsed or copied in advance, tags
+ * are looked up by walking the original bytes with offsets only.
+ * <P>
+ * Tags are given as integers of their encoded bytes, such as 0x6F or 0x9F38. Padding bytes 0x00
+ * and 0xFF between data objects are skipped. Malformed data causes an IllegalArgumentException
+ * when it is walked.
+ * 
+ */
+public final class BerTlv {
+
+  private final ByteBuffer buffer;
+  private final int start;
+  private final int end;
+
+  private BerTlv(ByteBuffer buffer, int start, int end) {
+    this.buffer = buffer;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Returns a {@link BerTlv} over a byte array, which is not copied.
+   * 
+   * @param bytes a byte array of data objects
+   * @return {@link BerTlv}
+   */
+  public static BerTlv wrap(byte[] bytes) {
+    return wrap(bytes, 0, bytes.length);
+  }
+
+  /**
+   * Returns a {@link BerTlv} over a range of a byte array, which is not copied.
+   * 
+   * @param bytes a byte array of data objects
+   * @param offset the offset of the first data object
+   * @param length the length of all data objects
+   * @return {@link BerTlv}
+   */
+  public static BerTlv wrap(byte[] bytes, int offset, int length) {
+    Objects.checkFromIndexSize(offset, length, bytes.length);
+    return new BerTlv(ByteBuffer.wrap(bytes), offset, offset + length);
+  }
+
+  /**
+   * Returns a {@link BerTlv} over the remaining bytes of a ByteBuffer, which can be a direct
+   * buffer. Neither the bytes nor the position of the buffer are changed.
+   * 
+   * @param buffer a ByteBuffer of data objects
+   * @return {@link BerTlv}
+   */
+  public static BerTlv wrap(ByteBuffer buffer) {
+    return new BerTlv(buffer.duplicate(), buffer.position(), buffer.limit());
+  }
+
+  /**
+   * Returns a {@link BerTlv} over the data of a ResponseAPDU, which is copied once from the
+   * response.
+   * 
+   * @param response a ResponseAPDU
+   * @return {@link BerTlv}
+   */
+  public static BerTlv wrap(ResponseAPDU response) {
+    byte[] bytes = response.getBytes();
+    return wrap(bytes, 0, bytes.length - 2);
+  }
+
+  /**
+   * Returns a {@link Cursor} which iterates the data objects of this {@link BerTlv}. The same
+   * {@link Cursor} is moved from one data object to the next, so no object is created per data
+   * object.
+   * 
+   * @return {@link Cursor}
+   */
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  /**
+   * Returns the value of the data object at given path, where each tag but the last one belongs
+   * to a constructed data object containing the next one. The first matching data object is
+   * taken on each level.
+   * 
+   * @param path tags from the outermost to the innermost data object
+   * @return {@link BerTlv} over the value, or null if there is no such data object
+   */
+  public BerTlv find(int... path) {
+    if (path.length == 0) throw new IllegalArgumentException("Path must not be empty");
+
+    int from = start;
+    int to = end;
+    for (int i = 0; i < path.length; i++) {
+      long found = find(from, to, path[i], i < path.length - 1);
+      if (found < 0) return null;
+      from = (int) (found >>> 32);
+      to = from + (int) found;
+    }
+    return new BerTlv(buffer, from, to);
+  }
+
+  /**
+   * Returns a copy of the value of the data object at given path.
+   * 
+   * @param path tags from the outermost to the innermost data object
+   * @return the value, or null if there is no such data object
+   */
+  public byte[] getValue(int... path) {
+    BerTlv value = find(path);
+    return value == null ? null : value.toByteArray();
+  }
+
+  /**
+   * Returns the offset and length of the value of the first data object with given tag between
+   * from and to as a single long, or -1 if none is found.
+   */
+  private long find(int from, int to, int tag, boolean constructed) {
+    int pos = from;
+    while ((pos = skipPadding(pos, to)) < to) {
+      int tagEnd = tagEnd(pos, to);
+      int valueStart = valueStart(tagEnd, to);
+      int length = length(tagEnd, valueStart, to);
+      if (tag(pos, tagEnd) == tag && (!constructed || (buffer.get(pos) & 0x20) != 0)) {
+        return ((long) valueStart << 32) | length;
+      }
+      pos = valueStart + length;
+    }
+    return -1;
+  }
+
+  private int skipPadding(int pos, int to) {
+    while (pos < to && (buffer.get(pos) == 0x00 || buffer.get(pos) == (byte) 0xFF)) {
+      pos++;
+    }
+    return pos;
+  }
+
+  private int tagEnd(int pos, int to) {
+    int i = pos + 1;
+    if ((buffer.get(pos) & 0x1F) == 0x1F) {
+      while (i < to && (buffer.get(i) & 0x80) != 0) {
+        i++;
+      }
+      i++;
+    }
+    if (i > to || i - pos > 4) throw malformed(pos);
+    return i;
+  }
+
+  private int tag(int pos, int tagEnd) {
+    int tag = 0;
+    for (int i = pos; i < tagEnd; i++) {
+      tag = (tag << 8) | (buffer.get(i) & 0xFF);
+    }
+    return tag;
+  }
+
+  private int valueStart(int tagEnd, int to) {
+    if (tagEnd >= to) throw malformed(tagEnd);
+    int first = buffer.get(tagEnd) & 0xFF;
+    if (first < 0x80) return tagEnd + 1;
+    if (first == 0x80 || first > 0x84) throw malformed(tagEnd);
+    return tagEnd + 1 + (first & 0x7F);
+  }
+
+  private int length(int tagEnd, int valueStart, int to) {
+    int length;
+    int first = buffer.get(tagEnd) & 0xFF;
+    if (first < 0x80) {
+      length = first;
+    } else {
+      if (valueStart > to) throw malformed(tagEnd);
+      length = 0;
+      for (int i = tagEnd + 1; i < valueStart; i++) {
+        length = (length << 8) | (buffer.get(i) & 0xFF);
+      }
+    }
+    if (length < 0 || length > to - valueStart) throw malformed(tagEnd);
+    return length;
+  }
+
+  private IllegalArgumentException malformed(int pos) {
+    return new IllegalArgumentException("Malformed BER-TLV at offset " + (pos - start));
+  }
+
+  /**
+   * Returns the number of bytes of this {@link BerTlv}.
+   * 
+   * @return the number of bytes
+   */
+  public int length() {
+    return end - start;
+  }
+
+  /**
+   * Returns the byte at given index of this {@link BerTlv}.
+   * 
+   * @param index an index from 0 to length - 1
+   * @return the byte
+   */
+  public byte get(int index) {
+    Objects.checkIndex(index, length());
+    return buffer.get(start + index);
+  }
+
+  /**
+   * Returns the bytes of this {@link BerTlv} as an unsigned integer in big-endian order.
+   * 
+   * @return the value
+   */
+  public long toUnsignedLong() {
+    if (length() > 8) throw new IllegalStateException("Value is longer than 8 bytes");
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      value = (value << 8) | (buffer.get(i) & 0xFF);
+    }
+    return value;
+  }
+
+  /**
+   * Returns a read-only ByteBuffer which shares the bytes of this {@link BerTlv}.
+   * 
+   * @return ByteBuffer
+   */
+  public ByteBuffer toByteBuffer() {
+    ByteBuffer slice = buffer.duplicate();
+    slice.limit(end).position(start);
+    return slice.slice().asReadOnlyBuffer();
+  }
+
+  /**
+   * Returns a copy of the bytes of this {@link BerTlv}.
+   * 
+   * @return byte array
+   */
+  public byte[] toByteArray() {
+    byte[] bytes = new byte[length()];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(start + i);
+    }
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{" + ByteUtils.toHexString(toByteArray()) + "}";
+  }
+
+  /**
+   * 
+   * {@link Cursor} moves over the data objects of a {@link BerTlv} one by one.
+   *
+   */
+  public final class Cursor {
+
+    private int next = start;
+    private boolean positioned;
+    private int tag;
+    private int tagStart;
+    private int valueStart;
+    private int length;
+
+    private Cursor() {}
+
+    /**
+     * Moves to the next data object.
+     * 
+     * @return true if there is a next data object, false otherwise
+     */
+    public boolean next() {
+      positioned = false;
+      next = skipPadding(next, end);
+      if (next >= end) return false;
+
+      tagStart = next;
+      int tagEnd = tagEnd(tagStart, end);
+      valueStart = valueStart(tagEnd, end);
+      length = length(tagEnd, valueStart, end);
+      tag = tag(tagStart, tagEnd);
+      next = valueStart + length;
+      positioned = true;
+      return true;
+    }
+
+    private void checkPosition() {
+      if (!positioned) throw new IllegalStateException("Cursor is not on a data object");
+    }
+
+    /**
+     * Returns the tag of current data object.
+     * 
+     * @return the tag
+     */
+    public int getTag() {
+      checkPosition();
+      return tag;
+    }
+
+    /**
+     * Checks if current data object is constructed, which means its value contains other data
+     * objects.
+     * 
+     * @return true if constructed, false otherwise
+     */
+    public boolean isConstructed() {
+      checkPosition();
+      return (buffer.get(tagStart) & 0x20) != 0;
+    }
+
+    /**
+     * Returns the length of the value of current data object.
+     * 
+     * @return the length
+     */
+    public int getLength() {
+      checkPosition();
+      return length;
+    }
+
+    /**
+     * Returns the offset of the value of current data object within the {@link BerTlv}.
+     * 
+     * @return the offset
+     */
+    public int getValueOffset() {
+      checkPosition();
+      return valueStart - start;
+    }
+
+    /**
+     * Returns the value of current data object. The value of a constructed data object can be
+     * iterated by its own {@link Cursor}.
+     * 
+     * @return {@link BerTlv} over the value
+     */
+    public BerTlv getValue() {
+      checkPosition();
+      return new BerTlv(buffer, valueStart, valueStart + length);
+    }
+
+  }
+
+}
@@ -0,0 +1,130 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.ResponseAPDU;
+
+/**
+ * 
+ * {@link CardEvent} is published by an {@link AutomatedReader} when a card is inserted or removed,
+ * when the responses of a card are read or when an error occurs.
+ * 
+ */
+public final class CardEvent {
+
+  /**
+   * 
+   * {@link Type} defines all kinds of {@link CardEvent}.
+   *
+   */
+  public enum Type {
+    INSERTED, REMOVED, RESPONSES, ERROR
+  }
+
+  private final Type type;
+  private final CardTerminal terminal;
+  private final List<ResponseAPDU> responses;
+  private final Throwable error;
+  private final long timestamp = System.currentTimeMillis();
+
+  private CardEvent(Type type, CardTerminal terminal, List<ResponseAPDU> responses,
+      Throwable error) {
+    this.type = type;
+    this.terminal = terminal;
+    this.responses = responses;
+    this.error = error;
+  }
+
+  static CardEvent inserted(CardTerminal terminal) {
+    return new CardEvent(Type.INSERTED, terminal, emptyList(), null);
+  }
+
+  static CardEvent removed(CardTerminal terminal) {
+    return new CardEvent(Type.REMOVED, terminal, emptyList(), null);
+  }
+
+  static CardEvent responses(CardTerminal terminal, List<ResponseAPDU> responses) {
+    return new CardEvent(Type.RESPONSES, terminal, unmodifiableList(new ArrayList<>(responses)),
+        null);
+  }
+
+  static CardEvent error(CardTerminal terminal, Throwable error) {
+    return new CardEvent(Type.ERROR, terminal, emptyList(), error);
+  }
+
+  /**
+   * Returns the {@link Type} of this event.
+   * 
+   * @return {@link Type}
+   */
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Returns the CardTerminal of this event, which is null if an error is not caused by a specific
+   * card terminal.
+   * 
+   * @return CardTerminal
+   */
+  public CardTerminal getTerminal() {
+    return terminal;
+  }
+
+  /**
+   * Returns the responses of a {@link Type#RESPONSES} event, or an empty List otherwise.
+   * 
+   * @return List of ResponseAPDU
+   */
+  public List<ResponseAPDU> getResponses() {
+    return responses;
+  }
+
+  /**
+   * Returns the error of a {@link Type#ERROR} event, or null otherwise.
+   * 
+   * @return Throwable
+   */
+  public Throwable getError() {
+    return error;
+  }
+
+  /**
+   * Returns the time this event happened, in milliseconds since the epoch.
+   * 
+   * @return the timestamp
+   */
+  public long getTimestamp() {
+    return timestamp;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{" + type + ", " + terminal
+        + (type == Type.RESPONSES ? ", " + responses : "")
+        + (error != null ? ", " + Objects.toString(error) : "") + "}";
+  }
+
+}
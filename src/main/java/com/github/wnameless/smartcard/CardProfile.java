@@ -0,0 +1,353 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.util.Arrays;
+import java.util.Objects;
+import net.sf.rubycollect4j.util.ByteUtils;
+
+/**
+ * 
+ * {@link CardProfile} describes the capabilities of a type of card, which is recognized by a prefix
+ * of its ATR under a bit mask. The transport of {@link CardReader} uses the profile of a card to
+ * pick the fastest encoding the card accepts instead of the most conservative one.
+ * <P>
+ * Capabilities left unknown, such as the extended length support, are probed at runtime and
+ * learned by the {@link CardProfileRegistry}.
+ * 
+ */
+public final class CardProfile {
+
+  static final CardProfile DEFAULT = builder().build();
+
+  private final byte[] atr;
+  private final byte[] mask;
+  private final String protocol;
+  private final Boolean extendedLength;
+  private final int maximumCommandLength;
+  private final int maximumResponseLength;
+  private final Boolean autoGetResponse;
+
+  private CardProfile(CardProfileBuilder builder) {
+    atr = builder.atr.clone();
+    mask = builder.mask == null ? filled(atr.length) : builder.mask.clone();
+    for (int i = 0; i < atr.length; i++) {
+      atr[i] &= mask[i];
+    }
+    protocol = builder.protocol;
+    extendedLength = builder.extendedLength;
+    maximumCommandLength = builder.maximumCommandLength;
+    maximumResponseLength = builder.maximumResponseLength;
+    autoGetResponse = builder.autoGetResponse;
+  }
+
+  private static byte[] filled(int length) {
+    byte[] bytes = new byte[length];
+    Arrays.fill(bytes, (byte) 0xFF);
+    return bytes;
+  }
+
+  /**
+   * Returns a builder of {@link CardProfile}.
+   * 
+   * @return {@link CardProfileBuilder}
+   */
+  public static CardProfileBuilder builder() {
+    return new CardProfileBuilder();
+  }
+
+  /**
+   * Checks if given ATR starts with the ATR prefix of this profile under its mask.
+   * 
+   * @param atrBytes the ATR bytes of a card
+   * @return true if the ATR matches, false otherwise
+   */
+  public boolean matches(byte[] atrBytes) {
+    if (atrBytes.length < atr.length) return false;
+    for (int i = 0; i < atr.length; i++) {
+      if ((atrBytes[i] & mask[i]) != atr[i]) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the number of ATR bits this profile compares, so the most specific profile wins.
+   */
+  int getSpecificity() {
+    int bits = 0;
+    for (byte b : mask) {
+      bits += Integer.bitCount(b & 0xFF);
+    }
+    return bits;
+  }
+
+  /**
+   * Returns a copy of this profile for exactly given ATR with a learned extended length support.
+   */
+  CardProfile learn(byte[] atrBytes, boolean extendedLength) {
+    return builder().setATR(atrBytes).setProtocol(protocol).setExtendedLength(extendedLength)
+        .setMaximumCommandLength(maximumCommandLength)
+        .setMaximumResponseLength(maximumResponseLength).setAutoGetResponse(autoGetResponse)
+        .build();
+  }
+
+  /**
+   * Returns the ATR prefix.
+   * 
+   * @return the ATR prefix bytes
+   */
+  public byte[] getATR() {
+    return atr.clone();
+  }
+
+  /**
+   * Returns the bit mask of the ATR prefix.
+   * 
+   * @return the mask bytes
+   */
+  public byte[] getATRMask() {
+    return mask.clone();
+  }
+
+  /**
+   * Returns the preferred protocol, "T=0", "T=1" or "*" for any.
+   * 
+   * @return the preferred protocol
+   */
+  public String getProtocol() {
+    return protocol;
+  }
+
+  /**
+   * Returns whether the card accepts extended length APDUs, or null if it is probed at runtime.
+   * 
+   * @return the extended length support
+   */
+  public Boolean getExtendedLength() {
+    return extendedLength;
+  }
+
+  /**
+   * Returns the maximum number of command data bytes (Lc) the card accepts.
+   * 
+   * @return the maximum Lc
+   */
+  public int getMaximumCommandLength() {
+    return maximumCommandLength;
+  }
+
+  /**
+   * Returns the maximum number of response data bytes (Le) the card returns at once.
+   * 
+   * @return the maximum Le
+   */
+  public int getMaximumResponseLength() {
+    return maximumResponseLength;
+  }
+
+  /**
+   * Returns whether 61xx and 6Cxx are handled transparently for the card, or null if the setting
+   * of {@link CardReader} applies.
+   * 
+   * @return the GET RESPONSE behavior
+   */
+  public Boolean getAutoGetResponse() {
+    return autoGetResponse;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof CardProfile)) return false;
+    CardProfile cp = (CardProfile) o;
+    return Arrays.equals(atr, cp.atr) && Arrays.equals(mask, cp.mask)
+        && protocol.equals(cp.protocol) && Objects.equals(extendedLength, cp.extendedLength)
+        && maximumCommandLength == cp.maximumCommandLength
+        && maximumResponseLength == cp.maximumResponseLength
+        && Objects.equals(autoGetResponse, cp.autoGetResponse);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(Arrays.hashCode(atr), Arrays.hashCode(mask), protocol, extendedLength,
+        maximumCommandLength, maximumResponseLength, autoGetResponse);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{atr=" + ByteUtils.toHexString(atr) + ", mask="
+        + ByteUtils.toHexString(mask) + ", protocol=" + protocol + ", extendedLength="
+        + extendedLength + ", maximumCommandLength=" + maximumCommandLength
+        + ", maximumResponseLength=" + maximumResponseLength + ", autoGetResponse="
+        + autoGetResponse + "}";
+  }
+
+  /**
+   * 
+   * {@link CardProfileBuilder} is designed to configure a {@link CardProfile}.
+   *
+   */
+  public static class CardProfileBuilder {
+
+    private byte[] atr = new byte[0];
+    private byte[] mask;
+    private String protocol = "*";
+    private Boolean extendedLength;
+    private int maximumCommandLength = 65535;
+    private int maximumResponseLength = 65536;
+    private Boolean autoGetResponse;
+
+    /**
+     * Default constructor.
+     */
+    public CardProfileBuilder() {}
+
+    /**
+     * Sets the ATR prefix, default is empty which matches any card.
+     * 
+     * @param atrBytes the ATR prefix bytes
+     * @return this {@link CardProfileBuilder}
+     */
+    public CardProfileBuilder setATR(byte... atrBytes) {
+      atr = atrBytes.clone();
+      return this;
+    }
+
+    /**
+     * Sets the ATR prefix by given HEX string, default is empty which matches any card.
+     * 
+     * @param hexString a hex string
+     * @return this {@link CardProfileBuilder}
+     * @throws IllegalArgumentException if hexadecimal string is invalid
+     */
+    public CardProfileBuilder setATR(String hexString) {
+      atr = ByteUtils.fromHexString(hexString);
+      return this;
+    }
+
+    /**
+     * Sets the bit mask of the ATR prefix, default compares all bits. The mask must be as long as
+     * the ATR prefix.
+     * 
+     * @param maskBytes the mask bytes
+     * @return this {@link CardProfileBuilder}
+     */
+    public CardProfileBuilder setATRMask(byte... maskBytes) {
+      mask = maskBytes.clone();
+      return this;
+    }
+
+    /**
+     * Sets the bit mask of the ATR prefix by given HEX string, default compares all bits.
+     * 
+     * @param hexString a hex string
+     * @return this {@link CardProfileBuilder}
+     * @throws IllegalArgumentException if hexadecimal string is invalid
+     */
+    public CardProfileBuilder setATRMask(String hexString) {
+      mask = ByteUtils.fromHexString(hexString);
+      return this;
+    }
+
+    /**
+     * Sets the preferred protocol, default is "*". A card connected with another protocol is
+     * reconnected with the preferred one.
+     * 
+     * @param protocol "T=0", "T=1" or "*"
+     * @return this {@link CardProfileBuilder}
+     */
+    public CardProfileBuilder setProtocol(String protocol) {
+      if (!"T=0".equals(protocol) && !"T=1".equals(protocol) && !"*".equals(protocol)) {
+        throw new IllegalArgumentException("Unsupported protocol: " + protocol);
+      }
+
+      this.protocol = protocol;
+      return this;
+    }
+
+    /**
+     * Sets whether the card accepts extended length APDUs, default is null which probes it at
+     * runtime.
+     * 
+     * @param extendedLength the extended length support, or null if unknown
+     * @return this {@link CardProfileBuilder}
+     */
+    public CardProfileBuilder setExtendedLength(Boolean extendedLength) {
+      this.extendedLength = extendedLength;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of command data bytes (Lc) the card accepts, default is 65535.
+     * 
+     * @param maximumCommandLength a length from 1 to 65535
+     * @return this {@link CardProfileBuilder}
+     */
+    public CardProfileBuilder setMaximumCommandLength(int maximumCommandLength) {
+      if (maximumCommandLength < 1 || maximumCommandLength > 65535) {
+        throw new IllegalArgumentException("Maximum command length must be from 1 to 65535");
+      }
+
+      this.maximumCommandLength = maximumCommandLength;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of response data bytes (Le) the card returns at once, default is
+     * 65536.
+     * 
+     * @param maximumResponseLength a length from 1 to 65536
+     * @return this {@link CardProfileBuilder}
+     */
+    public CardProfileBuilder setMaximumResponseLength(int maximumResponseLength) {
+      if (maximumResponseLength < 1 || maximumResponseLength > 65536) {
+        throw new IllegalArgumentException("Maximum response length must be from 1 to 65536");
+      }
+
+      this.maximumResponseLength = maximumResponseLength;
+      return this;
+    }
+
+    /**
+     * Sets whether 61xx and 6Cxx are handled transparently for the card, default is null which
+     * follows {@link CardReader#isAutoGetResponse()}.
+     * 
+     * @param autoGetResponse the GET RESPONSE behavior, or null to follow {@link CardReader}
+     * @return this {@link CardProfileBuilder}
+     */
+    public CardProfileBuilder setAutoGetResponse(Boolean autoGetResponse) {
+      this.autoGetResponse = autoGetResponse;
+      return this;
+    }
+
+    /**
+     * Builds the {@link CardProfile}.
+     * 
+     * @return {@link CardProfile}
+     */
+    public CardProfile build() {
+      if (mask != null && mask.length != atr.length) {
+        throw new IllegalStateException("ATR mask must be as long as the ATR prefix");
+      }
+      return new CardProfile(this);
+    }
+
+  }
+
+}
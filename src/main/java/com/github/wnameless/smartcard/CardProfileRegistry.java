@@ -0,0 +1,145 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+import net.sf.rubycollect4j.util.ByteUtils;
+
+/**
+ * 
+ * {@link CardProfileRegistry} holds the {@link CardProfile}s of a {@link CardReader} and finds the
+ * profile of a card by its ATR when a card session is opened.
+ * <P>
+ * Besides the registered profiles, it remembers the capabilities learned at runtime for each ATR,
+ * so the next session of the same type of card doesn't probe them again.
+ * 
+ */
+public final class CardProfileRegistry {
+
+  private static final Logger logger = Logger.getLogger(CardProfileRegistry.class.getName());
+
+  private final List<CardProfile> profiles = new CopyOnWriteArrayList<>();
+  private final ConcurrentMap<String, CardProfile> learned = new ConcurrentHashMap<>();
+
+  CardProfileRegistry() {}
+
+  /**
+   * Remembers whether the cards of given ATR accept extended length APDUs.
+   */
+  void learnExtendedLength(byte[] atr, boolean extendedLength) {
+    CardProfile profile = match(atr);
+    if (Boolean.valueOf(extendedLength).equals(profile.getExtendedLength())) return;
+
+    String key = ByteUtils.toHexString(atr);
+    learned.put(key, profile.learn(atr, extendedLength));
+    logger.fine("Learned extended length " + extendedLength + " for ATR " + key);
+  }
+
+  /**
+   * Returns true if there is neither a registered profile nor a learned capability, so a new
+   * session doesn't need to read the ATR.
+   */
+  boolean isEmpty() {
+    return profiles.isEmpty() && learned.isEmpty();
+  }
+
+  /**
+   * Registers a {@link CardProfile}. Learned capabilities are forgotten, since they may be based
+   * on the profiles registered before.
+   * 
+   * @param profile a {@link CardProfile}
+   */
+  public void register(CardProfile profile) {
+    profiles.add(Objects.requireNonNull(profile));
+    learned.clear();
+  }
+
+  /**
+   * Unregisters a {@link CardProfile}.
+   * 
+   * @param profile a {@link CardProfile}
+   * @return true if the profile was registered, false otherwise
+   */
+  public boolean unregister(CardProfile profile) {
+    boolean removed = profiles.remove(Objects.requireNonNull(profile));
+    if (removed) learned.clear();
+    return removed;
+  }
+
+  /**
+   * Returns the registered profiles in the order of registration.
+   * 
+   * @return List of {@link CardProfile}
+   */
+  public List<CardProfile> getProfiles() {
+    return Collections.unmodifiableList(new ArrayList<>(profiles));
+  }
+
+  /**
+   * Returns the profile of a card. The capabilities learned for the exact ATR come first, then the
+   * registered profile which compares the most ATR bits, the first registered one on a tie. A card
+   * without any matching profile gets a profile of unknown capabilities.
+   * 
+   * @param atr the ATR bytes of a card
+   * @return {@link CardProfile}
+   */
+  public CardProfile match(byte[] atr) {
+    CardProfile profile = learned.get(ByteUtils.toHexString(atr));
+    if (profile != null) return profile;
+
+    int specificity = -1;
+    for (CardProfile candidate : profiles) {
+      if (candidate.getSpecificity() > specificity && candidate.matches(atr)) {
+        profile = candidate;
+        specificity = candidate.getSpecificity();
+      }
+    }
+    return profile == null ? CardProfile.DEFAULT : profile;
+  }
+
+  /**
+   * Returns the number of ATRs whose capabilities are learned at runtime.
+   * 
+   * @return the number of learned ATRs
+   */
+  public int getLearnedCount() {
+    return learned.size();
+  }
+
+  /**
+   * Forgets all capabilities learned at runtime.
+   */
+  public void clearLearned() {
+    learned.clear();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{profiles=" + profiles.size() + ", learned="
+        + learned.size() + "}";
+  }
+
+}
@@ -19,17 +19,36 @@
 package com.github.wnameless.smartcard;
 
 import static java.util.Collections.emptyList;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.smartcardio.Card;
-import javax.smartcardio.CardChannel;
 import javax.smartcardio.CardException;
 import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CardTerminals;
 import javax.smartcardio.CommandAPDU;
 import javax.smartcardio.ResponseAPDU;
 import javax.smartcardio.TerminalFactory;
@@ -39,17 +58,46 @@ import javax.smartcardio.TerminalFactory;
  * {@link CardReader} is a friendly wrapper to Java Smartcard API. It can execute a set of
  * CommandAPDU to all or specified card readers and return the responses back.
  * <P>
- * It's a singleton.
+ * Opened cards are kept in a {@link CardSessionPool} and reused by subsequent reads. Command
+ * scripts are serialized per card terminal by a {@link TerminalScheduler}.
+ * <P>
+ * The default instance working on the default TerminalFactory is a singleton. Other instances can
+ * be created for any TerminalFactory, such as the one of {@link VirtualTerminals}.
  * 
  */
 public final class CardReader {
 
   private static final Logger logger = Logger.getLogger(CardReader.class.getName());
 
-  private static final TerminalFactory factory = TerminalFactory.getDefault();
-  private static final CardReader INSTANCE = new CardReader();
+  private static final CardReader INSTANCE = new CardReader(TerminalFactory.getDefault());
+
+  private final TerminalFactory factory;
+  private final CardSessionPool sessionPool = new CardSessionPool();
+  private final TerminalRegistry terminalRegistry;
+  private final Transport transport = new Transport();
+  private final TerminalScheduler scheduler = new TerminalScheduler();
+  private final TerminalHealth health = new TerminalHealth();
+  private final CardProfileRegistry profiles = new CardProfileRegistry();
+  private volatile ExecutorService executor =
+      Executors.newCachedThreadPool(new DaemonThreadFactory("smartcard-reader"));
+  private volatile long readTimeoutNanos = TimeUnit.SECONDS.toNanos(10);
 
-  private CardReader() {}
+  private CardReader(TerminalFactory factory) {
+    this.factory = factory;
+    setMetrics(new DefaultCardReaderMetrics());
+    sessionPool.setProfiles(profiles);
+    transport.setProfiles(profiles);
+    terminalRegistry = new TerminalRegistry(factory::terminals);
+    terminalRegistry.addListener((attached, detached) -> detached.forEach(terminal -> {
+      sessionPool.evict(terminal);
+      scheduler.remove(terminal);
+    }));
+    sessionPool.setEvictionListener(session -> {
+      ResponseCache cache = transport.getResponseCache();
+      byte[] identity = session.getIdentity();
+      if (cache != null && identity != null && identity.length > 0) cache.invalidate(identity);
+    });
+  }
 
   /**
    * Returns the instance of {@link CardReader}.
@@ -60,9 +108,28 @@ public final class CardReader {
     return INSTANCE;
   }
 
+  /**
+   * Returns a new {@link CardReader} which works on the card terminals of given TerminalFactory.
+   * 
+   * @param factory a TerminalFactory
+   * @return {@link CardReader}
+   */
+  public static CardReader newInstance(TerminalFactory factory) {
+    return new CardReader(Objects.requireNonNull(factory));
+  }
+
+  /**
+   * Returns the TerminalFactory of this {@link CardReader}.
+   * 
+   * @return TerminalFactory
+   */
+  public TerminalFactory getTerminalFactory() {
+    return factory;
+  }
+
   /**
    * Returns a Multimap&lt;CardTerminal, ResponseAPDU&gt; after executing a set of CommandAPDU on
-   * all Smartcard readers.
+   * all Smartcard readers. Card readers quarantined by {@link TerminalHealth} are skipped.
    * 
    * @param commands an array of CommandAPDU
    * @return ListMultimap&lt;CardTerminal, ResponseAPDU&gt;
@@ -73,15 +140,90 @@ public final class CardReader {
 
   /**
    * Returns a Multimap&lt;CardTerminal, ResponseAPDU&gt; after executing a set of CommandAPDU on
-   * all Smartcard readers.
+   * all Smartcard readers. Card readers quarantined by {@link TerminalHealth} are skipped.
    * 
    * @param commands a List of CommandAPDU
    * @return ListMultimap&lt;CardTerminal, ResponseAPDU&gt;
    */
   public Map<CardTerminal, List<ResponseAPDU>> read(List<CommandAPDU> commands) {
     Map<CardTerminal, List<ResponseAPDU>> responses = new LinkedHashMap<>();
-    for (CardTerminal terminal : getCardTerminals()) {
-      responses.put(terminal, getResponse(terminal, commands));
+    for (CardTerminal terminal : getHealthyTerminals()) {
+      responses.put(terminal, getResponse(terminal, TerminalScheduler.NORMAL_PRIORITY, commands));
+    }
+    return responses;
+  }
+
+  /**
+   * Returns a Map&lt;CardTerminal, List&lt;ResponseAPDU&gt;&gt; after executing a
+   * {@link CommandScript} on all Smartcard readers. Skipped steps of the script add no response.
+   * Card readers quarantined by {@link TerminalHealth} are skipped.
+   * 
+   * @param script a {@link CommandScript} whose slots are all filled
+   * @return Map&lt;CardTerminal, List&lt;ResponseAPDU&gt;&gt;
+   */
+  public Map<CardTerminal, List<ResponseAPDU>> read(CommandScript script) {
+    script.checkComplete();
+    Map<CardTerminal, List<ResponseAPDU>> responses = new LinkedHashMap<>();
+    for (CardTerminal terminal : getHealthyTerminals()) {
+      responses.put(terminal, readOnTerminal(terminal, script));
+    }
+    return responses;
+  }
+
+  /**
+   * Returns a Map&lt;CardTerminal, List&lt;ResponseAPDU&gt;&gt; after executing a set of
+   * CommandAPDU on all Smartcard readers concurrently.
+   * <P>
+   * The whole sweep takes as long as the slowest card reader. A card reader which does not finish
+   * within the read timeout is given an empty List of ResponseAPDU. Card readers quarantined by
+   * {@link TerminalHealth} are skipped.
+   * 
+   * @param commands an array of CommandAPDU
+   * @return Map&lt;CardTerminal, List&lt;ResponseAPDU&gt;&gt;
+   */
+  public Map<CardTerminal, List<ResponseAPDU>> readConcurrently(CommandAPDU... commands) {
+    return readConcurrently(Arrays.asList(commands));
+  }
+
+  /**
+   * Returns a Map&lt;CardTerminal, List&lt;ResponseAPDU&gt;&gt; after executing a set of
+   * CommandAPDU on all Smartcard readers concurrently.
+   * <P>
+   * The whole sweep takes as long as the slowest card reader. A card reader which does not finish
+   * within the read timeout is given an empty List of ResponseAPDU. Card readers quarantined by
+   * {@link TerminalHealth} are skipped.
+   * 
+   * @param commands a List of CommandAPDU
+   * @return Map&lt;CardTerminal, List&lt;ResponseAPDU&gt;&gt;
+   */
+  public Map<CardTerminal, List<ResponseAPDU>> readConcurrently(List<CommandAPDU> commands) {
+    Objects.requireNonNull(commands);
+    Map<CardTerminal, Future<List<ResponseAPDU>>> futures = new LinkedHashMap<>();
+    for (CardTerminal terminal : getHealthyTerminals()) {
+      futures.put(terminal, executor
+          .submit(() -> getResponse(terminal, TerminalScheduler.NORMAL_PRIORITY, commands)));
+    }
+
+    Map<CardTerminal, List<ResponseAPDU>> responses = new LinkedHashMap<>();
+    long deadline = System.nanoTime() + readTimeoutNanos;
+    for (Map.Entry<CardTerminal, Future<List<ResponseAPDU>>> entry : futures.entrySet()) {
+      CardTerminal terminal = entry.getKey();
+      Future<List<ResponseAPDU>> future = entry.getValue();
+      List<ResponseAPDU> terminalResponses = new ArrayList<>();
+      try {
+        terminalResponses = future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        future.cancel(true);
+        logger.log(Level.WARNING, "Read timeout on " + terminal);
+        transport.getMetrics().failed(terminal, e);
+        health.failed(terminal);
+      } catch (ExecutionException e) {
+        logger.log(Level.SEVERE, "Failed to read " + terminal, e.getCause());
+      } catch (InterruptedException e) {
+        futures.values().forEach(f -> f.cancel(true));
+        Thread.currentThread().interrupt();
+      }
+      responses.put(terminal, terminalResponses);
     }
     return responses;
   }
@@ -105,40 +247,870 @@ public final class CardReader {
    * @return List of ResponseAPDU
    */
   public List<ResponseAPDU> readOnTerminal(CardTerminal terminal, List<CommandAPDU> commands) {
-    return getResponse(terminal, commands);
+    return getResponse(terminal, TerminalScheduler.NORMAL_PRIORITY, commands);
+  }
+
+  /**
+   * Returns a List of ResponseAPDU of executed {@link CommandScript} on specified card terminal.
+   * Skipped steps of the script add no response.
+   * 
+   * @param terminal a CardTerminal
+   * @param script a {@link CommandScript} whose slots are all filled
+   * @return List of ResponseAPDU
+   */
+  public List<ResponseAPDU> readOnTerminal(CardTerminal terminal, CommandScript script) {
+    Objects.requireNonNull(terminal);
+    script.checkComplete();
+    return getResponse(terminal, TerminalScheduler.NORMAL_PRIORITY,
+        (session, responses) -> transport.transmit(session, session.getChannel(), script,
+            responses));
   }
 
-  private List<ResponseAPDU> getResponse(CardTerminal terminal, List<CommandAPDU> commands) {
+  /**
+   * Runs a {@link CommandScript} on specified card terminal like
+   * {@link #readOnTerminal(CardTerminal, CommandScript)}, but throws the failure of the read
+   * instead of returning an empty List.
+   */
+  List<ResponseAPDU> readOnTerminalOrThrow(CardTerminal terminal, CommandScript script)
+      throws CardException {
+    script.checkComplete();
     List<ResponseAPDU> responses = new ArrayList<>();
+    return execute(terminal, TerminalScheduler.NORMAL_PRIORITY, session -> {
+      responses.clear();
+      transport.transmit(session, session.getChannel(), script, responses);
+      return responses;
+    }, () -> true);
+  }
+
+  /**
+   * Returns a List of ResponseAPDU of executed command on specified card terminal. It waits for
+   * scripts with a higher priority and earlier scripts with the same priority on the card terminal.
+   * 
+   * @param terminal a CardTerminal
+   * @param priority the priority of commands, {@link TerminalScheduler#NORMAL_PRIORITY} is 0
+   * @param commands a List of CommandAPDU
+   * @return List of ResponseAPDU
+   */
+  public List<ResponseAPDU> readOnTerminal(CardTerminal terminal, int priority,
+      List<CommandAPDU> commands) {
+    Objects.requireNonNull(terminal);
+    Objects.requireNonNull(commands);
+    return getResponse(terminal, priority, commands);
+  }
+
+  /**
+   * Returns a CompletableFuture of the responses of all Smartcard readers. Each card reader is
+   * read on its own lane of the {@link TerminalScheduler}, so different cards are read
+   * concurrently.
+   * <P>
+   * A card reader which fails or does not finish within the read timeout is given an empty List
+   * of ResponseAPDU, and card readers quarantined by {@link TerminalHealth} are skipped.
+   * Cancelling the returned CompletableFuture cancels all pending reads.
+   * 
+   * @param commands an array of CommandAPDU
+   * @return CompletableFuture of Map&lt;CardTerminal, List&lt;ResponseAPDU&gt;&gt;
+   */
+  public CompletableFuture<Map<CardTerminal, List<ResponseAPDU>>> readAsync(
+      CommandAPDU... commands) {
+    return readAsync(Arrays.asList(commands));
+  }
+
+  /**
+   * Returns a CompletableFuture of the responses of all Smartcard readers. Each card reader is
+   * read on its own lane of the {@link TerminalScheduler}, so different cards are read
+   * concurrently.
+   * <P>
+   * A card reader which fails or does not finish within the read timeout is given an empty List
+   * of ResponseAPDU, and card readers quarantined by {@link TerminalHealth} are skipped.
+   * Cancelling the returned CompletableFuture cancels all pending reads.
+   * 
+   * @param commands a List of CommandAPDU
+   * @return CompletableFuture of Map&lt;CardTerminal, List&lt;ResponseAPDU&gt;&gt;
+   */
+  public CompletableFuture<Map<CardTerminal, List<ResponseAPDU>>> readAsync(
+      List<CommandAPDU> commands) {
+    Objects.requireNonNull(commands);
+    List<CardTerminal> terminals;
     try {
-      Card card = terminal.connect("*");
-      CardChannel channel = card.getBasicChannel();
-      for (CommandAPDU command : commands) {
-        ResponseAPDU response = channel.transmit(command);
-        responses.add(response);
+      terminals = getHealthyTerminals();
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+
+    Map<CardTerminal, CompletableFuture<List<ResponseAPDU>>> futures = new LinkedHashMap<>();
+    for (CardTerminal terminal : terminals) {
+      futures.put(terminal, readOnTerminalAsync(terminal, commands));
+    }
+    CompletableFuture<Map<CardTerminal, List<ResponseAPDU>>> result =
+        CompletableFuture.allOf(futures.values().stream()
+            .map(future -> future.exceptionally(e -> null)).toArray(CompletableFuture[]::new))
+            .thenApply(v -> {
+              Map<CardTerminal, List<ResponseAPDU>> responses = new LinkedHashMap<>();
+              futures.forEach((terminal, future) -> responses.put(terminal,
+                  future.isCompletedExceptionally() ? new ArrayList<>() : future.join()));
+              return responses;
+            });
+    result.whenComplete((responses, e) -> {
+      if (result.isCancelled()) futures.values().forEach(future -> future.cancel(false));
+    });
+    return result;
+  }
+
+  /**
+   * Returns a CompletableFuture of the responses of specified card terminal. Commands to the same
+   * card terminal are executed in submission order, while different card terminals proceed
+   * concurrently on the ExecutorService of this {@link CardReader}.
+   * <P>
+   * The CompletableFuture completes exceptionally with a CardException if the card can't be read
+   * or with a TimeoutException after the read timeout. A read which is cancelled or timed out
+   * before it starts is never sent to the card.
+   * 
+   * @param terminal a CardTerminal
+   * @param commands an array of CommandAPDU
+   * @return CompletableFuture of List&lt;ResponseAPDU&gt;
+   */
+  public CompletableFuture<List<ResponseAPDU>> readOnTerminalAsync(CardTerminal terminal,
+      CommandAPDU... commands) {
+    return readOnTerminalAsync(terminal, Arrays.asList(commands));
+  }
+
+  /**
+   * Returns a CompletableFuture of the responses of specified card terminal. Commands to the same
+   * card terminal are executed in submission order, while different card terminals proceed
+   * concurrently on the ExecutorService of this {@link CardReader}.
+   * <P>
+   * The CompletableFuture completes exceptionally with a CardException if the card can't be read
+   * or with a TimeoutException after the read timeout. A read which is cancelled or timed out
+   * before it starts is never sent to the card.
+   * 
+   * @param terminal a CardTerminal
+   * @param commands a List of CommandAPDU
+   * @return CompletableFuture of List&lt;ResponseAPDU&gt;
+   */
+  public CompletableFuture<List<ResponseAPDU>> readOnTerminalAsync(CardTerminal terminal,
+      List<CommandAPDU> commands) {
+    return readOnTerminalAsync(terminal, TerminalScheduler.NORMAL_PRIORITY, commands);
+  }
+
+  /**
+   * Returns a CompletableFuture of the responses of specified card terminal. Scripts with a higher
+   * priority are executed first, scripts with the same priority in submission order.
+   * 
+   * @param terminal a CardTerminal
+   * @param priority the priority of commands, {@link TerminalScheduler#NORMAL_PRIORITY} is 0
+   * @param commands a List of CommandAPDU
+   * @return CompletableFuture of List&lt;ResponseAPDU&gt;
+   */
+  public CompletableFuture<List<ResponseAPDU>> readOnTerminalAsync(CardTerminal terminal,
+      int priority, List<CommandAPDU> commands) {
+    Objects.requireNonNull(terminal);
+    List<CommandAPDU> script = new ArrayList<>(commands);
+    CompletableFuture<List<ResponseAPDU>> future = new CompletableFuture<>();
+    TerminalScheduler.Ticket ticket = scheduler.submit(terminal, priority, granted -> {
+      if (future.isDone()) {
+        scheduler.release(granted);
+        return;
       }
-    } catch (CardException e) {
-      logger.log(Level.SEVERE, null, e.getMessage());
+      try {
+        executor.execute(() -> {
+          try {
+            if (!future.isDone()) future.complete(executeNow(terminal, session -> {
+              List<ResponseAPDU> responses = new ArrayList<>();
+              transmit(session, script, responses);
+              return responses;
+            }, () -> true));
+          } catch (CardException | RuntimeException e) {
+            future.completeExceptionally(e);
+          } finally {
+            scheduler.release(granted);
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        future.completeExceptionally(e);
+        scheduler.release(granted);
+      }
+    });
+    future.orTimeout(readTimeoutNanos, TimeUnit.NANOSECONDS).whenComplete((responses, e) -> {
+      scheduler.cancel(ticket);
+      if (e instanceof TimeoutException) {
+        transport.getMetrics().failed(terminal, e);
+        health.failed(terminal);
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Returns a List of ResponseAPDU of executed command on an application of specified card
+   * terminal. The application is selected by its AID on a logical channel of its own, which is
+   * kept with the card session, so switching between applications doesn't need another SELECT.
+   * <P>
+   * If the card refuses to open a logical channel, the application is selected on the basic
+   * channel before each script instead.
+   * 
+   * @param terminal a CardTerminal
+   * @param aid the AID of an application
+   * @param commands an array of CommandAPDU
+   * @return List of ResponseAPDU
+   * @throws CardException if the card can't be read or the application can't be selected
+   */
+  public List<ResponseAPDU> readOnApplication(CardTerminal terminal, byte[] aid,
+      CommandAPDU... commands) throws CardException {
+    return readOnApplication(terminal, aid, Arrays.asList(commands));
+  }
+
+  /**
+   * Returns a List of ResponseAPDU of executed command on an application of specified card
+   * terminal. The application is selected by its AID on a logical channel of its own, which is
+   * kept with the card session, so switching between applications doesn't need another SELECT.
+   * <P>
+   * If the card refuses to open a logical channel, the application is selected on the basic
+   * channel before each script instead.
+   * 
+   * @param terminal a CardTerminal
+   * @param aid the AID of an application
+   * @param commands a List of CommandAPDU
+   * @return List of ResponseAPDU
+   * @throws CardException if the card can't be read or the application can't be selected
+   */
+  public List<ResponseAPDU> readOnApplication(CardTerminal terminal, byte[] aid,
+      List<CommandAPDU> commands) throws CardException {
+    Objects.requireNonNull(terminal);
+    if (aid.length < 1 || aid.length > 16) {
+      throw new IllegalArgumentException("AID must be 1 to 16 bytes");
+    }
+    List<CommandAPDU> script = new ArrayList<>(commands);
+    byte[] application = aid.clone();
+
+    return execute(terminal, TerminalScheduler.NORMAL_PRIORITY, session -> {
+      List<ResponseAPDU> responses = new ArrayList<>();
+      transport.transmit(session, transport.openApplication(session, application), script,
+          responses);
+      return responses;
+    }, () -> true);
+  }
+
+  /**
+   * Returns the content of an elementary file on specified card terminal. The file is selected by
+   * its file identifier and read by READ BINARY in the largest chunks the card accepts, including
+   * extended length Le when it is supported.
+   * 
+   * @param terminal a CardTerminal
+   * @param fileId the 2-byte file identifier
+   * @param length the number of bytes to read
+   * @return the content of the file, which is shorter than length if the file ends earlier
+   * @throws CardException if the card can't be read
+   */
+  public byte[] readBinary(CardTerminal terminal, int fileId, int length) throws CardException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+    try {
+      readBinary(terminal, fileId, length, out);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * Streams the content of an elementary file on specified card terminal into an OutputStream.
+   * The file is selected by its file identifier and read by READ BINARY in the largest chunks the
+   * card accepts, including extended length Le when it is supported.
+   * 
+   * @param terminal a CardTerminal
+   * @param fileId the 2-byte file identifier
+   * @param length the number of bytes to read
+   * @param out an OutputStream
+   * @throws CardException if the card can't be read
+   * @throws IOException if the OutputStream can't be written
+   */
+  public void readBinary(CardTerminal terminal, int fileId, int length, OutputStream out)
+      throws CardException, IOException {
+    Objects.requireNonNull(terminal);
+    Objects.requireNonNull(out);
+    if (fileId < 0 || fileId > 0xFFFF) throw new IllegalArgumentException("Invalid file ID");
+    if (length < 0) throw new IllegalArgumentException("Length must not be negative");
+
+    CountingOutputStream counter = new CountingOutputStream(out);
+    try {
+      execute(terminal, TerminalScheduler.NORMAL_PRIORITY, session -> {
+        try {
+          transport.readBinary(session, fileId, length, counter);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return null;
+      }, () -> counter.count == 0);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Writes a payload to an elementary file on specified card terminal. The file is selected by its
+   * file identifier and written by UPDATE BINARY, WRITE BINARY, WRITE RECORD or APPEND RECORD.
+   * Binary writes are split into the largest chunks the card accepts at increasing offsets, while
+   * a record is sent in extended length or by command chaining if it doesn't fit a short APDU.
+   * 
+   * @param terminal a CardTerminal
+   * @param ins one of {@link INS#UPDATE_BINARY}, {@link INS#WRITE_BINARY},
+   *          {@link INS#WRITE_RECORD} and {@link INS#APPEND_RECORD}
+   * @param fileId the 2-byte file identifier
+   * @param position the offset of a binary write, the record number of WRITE RECORD, or ignored
+   *          by APPEND RECORD
+   * @param data the payload
+   * @return the number of bytes written
+   * @throws CardException if the card can't be written
+   */
+  public long write(CardTerminal terminal, byte ins, int fileId, int position, byte[] data)
+      throws CardException {
+    try {
+      return write(terminal, ins, fileId, position, new ByteArrayInputStream(data));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Writes the remaining bytes of a ByteBuffer to an elementary file on specified card terminal,
+   * see {@link #write(CardTerminal, byte, int, int, byte[])}. The position of the buffer reaches
+   * its limit once the payload is written.
+   * 
+   * @param terminal a CardTerminal
+   * @param ins one of {@link INS#UPDATE_BINARY}, {@link INS#WRITE_BINARY},
+   *          {@link INS#WRITE_RECORD} and {@link INS#APPEND_RECORD}
+   * @param fileId the 2-byte file identifier
+   * @param position the offset of a binary write, the record number of WRITE RECORD, or ignored
+   *          by APPEND RECORD
+   * @param data a ByteBuffer of the payload
+   * @return the number of bytes written
+   * @throws CardException if the card can't be written
+   */
+  public long write(CardTerminal terminal, byte ins, int fileId, int position, ByteBuffer data)
+      throws CardException {
+    try {
+      return write(terminal, ins, fileId, position, new ByteBufferInputStream(data));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Streams a payload from an InputStream to an elementary file on specified card terminal, see
+   * {@link #write(CardTerminal, byte, int, int, byte[])}. Only one chunk of the payload is held in
+   * memory at a time.
+   * 
+   * @param terminal a CardTerminal
+   * @param ins one of {@link INS#UPDATE_BINARY}, {@link INS#WRITE_BINARY},
+   *          {@link INS#WRITE_RECORD} and {@link INS#APPEND_RECORD}
+   * @param fileId the 2-byte file identifier
+   * @param position the offset of a binary write, the record number of WRITE RECORD, or ignored
+   *          by APPEND RECORD
+   * @param in an InputStream of the payload
+   * @return the number of bytes written
+   * @throws CardException if the card can't be written
+   * @throws IOException if the InputStream can't be read
+   */
+  public long write(CardTerminal terminal, byte ins, int fileId, int position, InputStream in)
+      throws CardException, IOException {
+    Objects.requireNonNull(terminal);
+    Objects.requireNonNull(in);
+    if (fileId < 0 || fileId > 0xFFFF) throw new IllegalArgumentException("Invalid file ID");
+    switch (ins) {
+      case INS.UPDATE_BINARY:
+      case INS.WRITE_BINARY:
+        if (position < 0 || position > 0x7FFF) {
+          throw new IllegalArgumentException("Offset must be between 0..7FFF");
+        }
+        break;
+      case INS.WRITE_RECORD:
+        if (position < 1 || position > 254) {
+          throw new IllegalArgumentException("Record number must be between 1..254");
+        }
+        break;
+      case INS.APPEND_RECORD:
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported write instruction: " + ins);
+    }
+
+    CountingInputStream counter = new CountingInputStream(in);
+    try {
+      return execute(terminal, TerminalScheduler.NORMAL_PRIORITY, session -> {
+        try {
+          return transport.write(session, ins & 0xFF, fileId, position, counter);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }, () -> counter.count == 0);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Transmits an encoded command on specified card terminal and puts the encoded response into a
+   * buffer, without creating any CommandAPDU or ResponseAPDU. Both buffers are owned by the caller
+   * and can be direct or heap buffers, so they can be reused across the commands of a script.
+   * <P>
+   * The command is read from the position to the limit of the command buffer. The response,
+   * including the status word, is put at the position of the response buffer, which must have at
+   * least 258 bytes remaining. If {@link #isAutoGetResponse} is true, a short command answered by
+   * 6Cxx is resent with the exact Le and the data announced by 61xx are appended by GET RESPONSE.
+   * A CardException is thrown if the appended data don't fit into the response buffer.
+   * 
+   * @param terminal a CardTerminal
+   * @param command a ByteBuffer of the encoded command
+   * @param response a ByteBuffer to receive the encoded response
+   * @return the status word of the response
+   * @throws CardException if the card can't be read
+   */
+  public int transmit(CardTerminal terminal, ByteBuffer command, ByteBuffer response)
+      throws CardException {
+    Objects.requireNonNull(terminal);
+    if (command == response) {
+      throw new IllegalArgumentException("Command and response must not be the same buffer");
+    }
+    if (command.remaining() < 4) throw new IllegalArgumentException("Command is too short");
+    if (response.remaining() < Transport.MIN_RESPONSE_SPACE) {
+      throw new IllegalArgumentException("Insufficient space in response buffer");
+    }
+
+    int commandPosition = command.position();
+    int responsePosition = response.position();
+    return execute(terminal, TerminalScheduler.NORMAL_PRIORITY, session -> {
+      command.position(commandPosition);
+      response.position(responsePosition);
+      return transport.transmit(session, session.getChannel(), command, response);
+    }, () -> true);
+  }
+
+  private List<ResponseAPDU> getResponse(CardTerminal terminal, int priority,
+      List<CommandAPDU> commands) {
+    return getResponse(terminal, priority,
+        (session, responses) -> transmit(session, commands, responses));
+  }
+
+  private List<ResponseAPDU> getResponse(CardTerminal terminal, int priority,
+      ScriptTask script) {
+    List<ResponseAPDU> responses = new ArrayList<>();
+    try {
+      execute(terminal, priority, session -> {
+        responses.clear();
+        script.run(session, responses);
+        return responses;
+      }, () -> true);
+    } catch (CardException | IllegalStateException e) {
+      logger.log(Level.SEVERE, "Failed to read " + terminal, e);
     }
     return responses;
   }
 
   /**
-   * Returns all card terminals of the system.
+   * Waits for the lane of given CardTerminal, then runs a task on its session.
+   */
+  private <T> T execute(CardTerminal terminal, int priority, SessionTask<T> task,
+      BooleanSupplier retryable) throws CardException {
+    TerminalScheduler.Ticket ticket = scheduler.acquire(terminal, priority);
+    try {
+      return executeNow(terminal, task, retryable);
+    } finally {
+      scheduler.release(ticket);
+    }
+  }
+
+  /**
+   * Runs a task on the session of given CardTerminal. If a reused session fails because the card
+   * was removed or reset since it was opened, the card is reconnected and the task is retried once
+   * as long as it is still retryable and hasn't sent any command which may have changed the card,
+   * other than a failed first command.
+   */
+  private <T> T executeNow(CardTerminal terminal, SessionTask<T> task, BooleanSupplier retryable)
+      throws CardException {
+    try {
+      CardSession session = sessionPool.acquire(terminal);
+      T result;
+      try {
+        session.startTask();
+        result = runExclusive(session, task);
+      } catch (StatusWordException e) {
+        throw e;
+      } catch (CardException | IllegalStateException e) {
+        sessionPool.evict(terminal);
+        if (!session.isReused() || !session.isRetryable() || !retryable.getAsBoolean()) throw e;
+
+        transport.getMetrics().failed(terminal, e);
+        CardSession retry = sessionPool.acquire(terminal);
+        retry.startTask();
+        result = runExclusive(retry, task);
+      }
+      health.succeeded(terminal);
+      return result;
+    } catch (StatusWordException e) {
+      health.succeeded(terminal);
+      throw e;
+    } catch (CardException | IllegalStateException e) {
+      transport.getMetrics().failed(terminal, e);
+      sessionPool.evict(terminal);
+      if (PcscErrors.isReaderUnavailable(e)) terminalRegistry.invalidate();
+      if (PcscErrors.isCardAbsent(e)) {
+        health.succeeded(terminal);
+      } else {
+        health.failed(terminal);
+      }
+      throw e;
+    }
+  }
+
+  private <T> T runExclusive(CardSession session, SessionTask<T> task) throws CardException {
+    if (!scheduler.isExclusive()) return task.run(session);
+
+    Card card = session.getCard();
+    card.beginExclusive();
+    try {
+      return task.run(session);
+    } finally {
+      try {
+        card.endExclusive();
+      } catch (CardException | IllegalStateException e) {
+        logger.log(Level.FINE, "Failed to end exclusive access on " + session.getTerminal(), e);
+      }
+    }
+  }
+
+  private interface SessionTask<T> {
+
+    T run(CardSession session) throws CardException;
+
+  }
+
+  private interface ScriptTask {
+
+    void run(CardSession session, List<ResponseAPDU> responses) throws CardException;
+
+  }
+
+  private static final class CountingOutputStream extends FilterOutputStream {
+
+    private long count;
+
+    private CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+
+  }
+
+  private static final class CountingInputStream extends FilterInputStream {
+
+    private long count;
+
+    private CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b >= 0) count++;
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = in.read(b, off, len);
+      if (n > 0) count += n;
+      return n;
+    }
+
+  }
+
+  private static final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+
+    private ByteBufferInputStream(ByteBuffer buffer) {
+      this.buffer = Objects.requireNonNull(buffer);
+    }
+
+    @Override
+    public int read() {
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (len == 0) return 0;
+      if (!buffer.hasRemaining()) return -1;
+
+      int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+
+  }
+
+  private void transmit(CardSession session, List<CommandAPDU> commands,
+      List<ResponseAPDU> responses) throws CardException {
+    transport.transmit(session, session.getChannel(), commands, responses);
+  }
+
+  /**
+   * Sets whether 61xx and 6Cxx responses are handled transparently, default is true. If enabled,
+   * a command answered by 6Cxx is resent with the exact Le and all data announced by 61xx are
+   * collected by GET RESPONSE into a single ResponseAPDU.
+   * 
+   * @param autoGetResponse true to handle 61xx and 6Cxx transparently
+   */
+  public void setAutoGetResponse(boolean autoGetResponse) {
+    transport.setAutoGetResponse(autoGetResponse);
+  }
+
+  /**
+   * Checks if 61xx and 6Cxx responses are handled transparently.
+   * 
+   * @return true if 61xx and 6Cxx responses are handled transparently
+   */
+  public boolean isAutoGetResponse() {
+    return transport.isAutoGetResponse();
+  }
+
+  /**
+   * Sets whether a SELECT is answered from the card session when it repeats the last successful
+   * SELECT on the same channel, default is false. The cached response is dropped once the card is
+   * reconnected, another SELECT is sent or, for a file, any other command is sent.
+   * <P>
+   * Only enable it for cards whose applications keep no state which a SELECT would reset, such as
+   * a verified PIN or a secure messaging session.
+   * 
+   * @param selectElision true to skip redundant SELECT commands
+   */
+  public void setSelectElision(boolean selectElision) {
+    transport.setSelectElision(selectElision);
+  }
+
+  /**
+   * Checks if redundant SELECT commands are skipped.
+   * 
+   * @return true if redundant SELECT commands are skipped
+   */
+  public boolean isSelectElision() {
+    return transport.isSelectElision();
+  }
+
+  /**
+   * Sets the {@link ResponseCache} which answers repeated reads of immutable card data, default is
+   * null which disables caching.
+   * 
+   * @param responseCache a {@link ResponseCache}, or null
+   */
+  public void setResponseCache(ResponseCache responseCache) {
+    transport.setResponseCache(responseCache);
+  }
+
+  /**
+   * Returns the {@link ResponseCache} of this {@link CardReader}.
+   * 
+   * @return {@link ResponseCache}, or null if caching is disabled
+   */
+  public ResponseCache getResponseCache() {
+    return transport.getResponseCache();
+  }
+
+  /**
+   * Sets the {@link ExchangeRecorder} which records every APDU exchange, default is null which
+   * disables recording.
+   * 
+   * @param exchangeRecorder an {@link ExchangeRecorder}, or null
+   */
+  public void setExchangeRecorder(ExchangeRecorder exchangeRecorder) {
+    transport.setExchangeRecorder(exchangeRecorder);
+  }
+
+  /**
+   * Returns the {@link ExchangeRecorder} of this {@link CardReader}.
+   * 
+   * @return {@link ExchangeRecorder}, or null if recording is disabled
+   */
+  public ExchangeRecorder getExchangeRecorder() {
+    return transport.getExchangeRecorder();
+  }
+
+  /**
+   * Sets the status words which stop a command script early. The remaining commands are not sent
+   * after a response with any of them, default is none.
+   * 
+   * @param statusWords status words, such as 0x6A82
+   */
+  public void setStopStatusWords(int... statusWords) {
+    transport.setStopStatusWords(statusWords);
+  }
+
+  /**
+   * Returns the status words which stop a command script early.
+   * 
+   * @return status words
+   */
+  public int[] getStopStatusWords() {
+    return transport.getStopStatusWords();
+  }
+
+  /**
+   * Sets the {@link CardReaderMetrics} which records connects, transmits and errors of this
+   * {@link CardReader}. The default one is a {@link DefaultCardReaderMetrics},
+   * {@link CardReaderMetrics#NONE} disables recording.
+   * 
+   * @param metrics {@link CardReaderMetrics}
+   */
+  public void setMetrics(CardReaderMetrics metrics) {
+    Objects.requireNonNull(metrics);
+    transport.setMetrics(metrics);
+    sessionPool.setMetrics(metrics);
+    scheduler.setMetrics(metrics);
+  }
+
+  /**
+   * Returns the {@link CardReaderMetrics} of this {@link CardReader}.
+   * 
+   * @return {@link CardReaderMetrics}
+   */
+  public CardReaderMetrics getMetrics() {
+    return transport.getMetrics();
+  }
+
+  /**
+   * Sets the ExecutorService used by concurrent and asynchronous reads. The default one runs each
+   * card reader on a cached daemon thread.
+   * 
+   * @param executor an ExecutorService
+   */
+  public void setExecutor(ExecutorService executor) {
+    this.executor = Objects.requireNonNull(executor);
+  }
+
+  /**
+   * Returns the ExecutorService used by concurrent and asynchronous reads.
+   * 
+   * @return ExecutorService
+   */
+  public ExecutorService getExecutor() {
+    return executor;
+  }
+
+  /**
+   * Sets the per card reader timeout of concurrent and asynchronous reads, default is 10 seconds.
+   * 
+   * @param timeout the read timeout
+   * @param unit the TimeUnit of timeout
+   */
+  public void setReadTimeout(long timeout, TimeUnit unit) {
+    Objects.requireNonNull(unit);
+    if (timeout <= 0) throw new IllegalArgumentException("Timeout must be positive");
+
+    readTimeoutNanos = unit.toNanos(timeout);
+  }
+
+  /**
+   * Returns the per card reader timeout of concurrent and asynchronous reads.
+   * 
+   * @param unit the TimeUnit of returned value
+   * @return the read timeout
+   */
+  public long getReadTimeout(TimeUnit unit) {
+    return unit.convert(readTimeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the {@link CardSessionPool} which keeps the opened card sessions of this
+   * {@link CardReader}.
+   * 
+   * @return {@link CardSessionPool}
+   */
+  public CardSessionPool getSessionPool() {
+    return sessionPool;
+  }
+
+  /**
+   * Returns the {@link TerminalScheduler} which serializes the command scripts of this
+   * {@link CardReader} per card terminal.
+   * 
+   * @return {@link TerminalScheduler}
+   */
+  public TerminalScheduler getScheduler() {
+    return scheduler;
+  }
+
+  /**
+   * Returns all card terminals of the system. The List is cached by the {@link TerminalRegistry}.
    * 
    * @return List of CardTerminal
    */
   public List<CardTerminal> getCardTerminals() {
     List<CardTerminal> terminals = emptyList();
     try {
-      terminals = factory.terminals().list();
+      terminals = terminalRegistry.getTerminals();
     } catch (CardException e) {
-      logger.log(Level.SEVERE, null, e.getMessage());
+      logger.log(Level.SEVERE, "Failed to list card terminals", e);
       throw new RuntimeException(e);
     }
     return terminals;
   }
 
+  /**
+   * Returns the card terminals which are not quarantined by the {@link TerminalHealth}.
+   */
+  List<CardTerminal> getHealthyTerminals() {
+    List<CardTerminal> terminals = new ArrayList<>();
+    for (CardTerminal terminal : getCardTerminals()) {
+      if (health.allows(terminal)) terminals.add(terminal);
+    }
+    return terminals;
+  }
+
+  /**
+   * Returns the {@link TerminalHealth} which quarantines failing card terminals of this
+   * {@link CardReader}.
+   * 
+   * @return {@link TerminalHealth}
+   */
+  public TerminalHealth getHealth() {
+    return health;
+  }
+
+  /**
+   * Returns the {@link CardProfileRegistry} which tunes the transport of this {@link CardReader}
+   * per type of card.
+   * 
+   * @return {@link CardProfileRegistry}
+   */
+  public CardProfileRegistry getProfiles() {
+    return profiles;
+  }
+
+  /**
+   * Returns the {@link TerminalRegistry} which caches the card terminals of this
+   * {@link CardReader}.
+   * 
+   * @return {@link TerminalRegistry}
+   */
+  public TerminalRegistry getTerminalRegistry() {
+    return terminalRegistry;
+  }
+
+  CardTerminals terminals() {
+    return factory.terminals();
+  }
+
   @Override
   public String toString() {
     return getClass().getSimpleName();
@@ -0,0 +1,76 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import javax.smartcardio.CardTerminal;
+
+/**
+ * 
+ * {@link CardReaderMetrics} is notified by a {@link CardReader} about every connect, every
+ * scheduled script, every APDU exchanged with a card and every failed read. All methods are called
+ * on the reading thread, so implementations must be thread-safe and should return quickly.
+ * 
+ */
+public interface CardReaderMetrics {
+
+  /**
+   * The {@link CardReaderMetrics} which records nothing.
+   */
+  CardReaderMetrics NONE = new CardReaderMetrics() {};
+
+  /**
+   * Called after a card is connected.
+   * 
+   * @param terminal the CardTerminal
+   * @param nanos the connect latency in nanoseconds
+   */
+  default void connected(CardTerminal terminal, long nanos) {}
+
+  /**
+   * Called when a command script starts to run on a card terminal.
+   * 
+   * @param terminal the CardTerminal
+   * @param queueDepth the number of scripts still waiting for the card terminal
+   * @param waitNanos the time the script waited in the queue in nanoseconds
+   */
+  default void scheduled(CardTerminal terminal, int queueDepth, long waitNanos) {}
+
+  /**
+   * Called after a single APDU is exchanged with a card, including GET RESPONSE and resent
+   * commands.
+   * 
+   * @param terminal the CardTerminal
+   * @param ins the INS byte of the command
+   * @param bytesSent the encoded length of the command
+   * @param bytesReceived the encoded length of the response
+   * @param sw the status word of the response
+   * @param nanos the transmit latency in nanoseconds
+   */
+  default void transmitted(CardTerminal terminal, int ins, int bytesSent, int bytesReceived,
+      int sw, long nanos) {}
+
+  /**
+   * Called after a read on a card terminal fails or times out.
+   * 
+   * @param terminal the CardTerminal
+   * @param error the cause of failure
+   */
+  default void failed(CardTerminal terminal, Throwable error) {}
+
+}
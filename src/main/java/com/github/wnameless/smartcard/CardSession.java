@@ -0,0 +1,327 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.smartcardio.Card;
+import javax.smartcardio.CardChannel;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+
+/**
+ *
+ * {@link CardSession} holds an opened Card, its basic CardChannel and the logical channels of
+ * selected applications of a CardTerminal, so they can be reused across many command scripts.
+ *
+ */
+final class CardSession {
+
+  private static final byte[] EMPTY = new byte[0];
+  private static final byte[] MF = {0x3F, 0x00};
+
+  private final CardTerminal terminal;
+  private final Card card;
+  private final CardChannel channel;
+  private final CardProfile profile;
+  private volatile long lastUsed;
+  private int answered;
+  private boolean modified;
+  private volatile boolean reused;
+  private volatile Boolean extendedLength;
+  private volatile boolean logicalChannelSupported = true;
+  private final Map<String, CardChannel> applicationChannels = new ConcurrentHashMap<>();
+  private final Selection[] selections = new Selection[20];
+  private final byte[][] directories = new byte[20][];
+  private final byte[][] files = new byte[20][];
+  private volatile byte[] identity;
+  private ByteBuffer commandBuffer;
+  private ByteBuffer responseBuffer;
+  private Transport.ResponseBuffer chainBuffer;
+
+  CardSession(CardTerminal terminal, Card card, CardProfile profile) {
+    this.terminal = terminal;
+    this.card = card;
+    this.profile = profile;
+    channel = card.getBasicChannel();
+    extendedLength = profile.getExtendedLength();
+    lastUsed = System.nanoTime();
+    Arrays.fill(directories, EMPTY);
+    Arrays.fill(files, EMPTY);
+  }
+
+  CardTerminal getTerminal() {
+    return terminal;
+  }
+
+  Card getCard() {
+    return card;
+  }
+
+  CardChannel getChannel() {
+    return channel;
+  }
+
+  CardProfile getProfile() {
+    return profile;
+  }
+
+  /**
+   * Returns true if this session has been handed out before, which means the card may have been
+   * removed or reset since then.
+   */
+  boolean isReused() {
+    return reused;
+  }
+
+  /**
+   * Starts tracking the commands of a task for {@link #isRetryable()}.
+   */
+  void startTask() {
+    answered = 0;
+    modified = false;
+  }
+
+  /**
+   * Notes a command about to be sent. A command which may change the card is only safe to resend
+   * if it is the first command of the task, because a card which was reset fails on that one.
+   */
+  void sending(boolean readOnly) {
+    if (!readOnly && answered > 0) modified = true;
+  }
+
+  /**
+   * Notes an answered command.
+   */
+  void answered(boolean readOnly) {
+    answered++;
+    if (!readOnly) modified = true;
+  }
+
+  /**
+   * Returns true if resending the task since {@link #startTask()} can't apply any command which
+   * may change the card twice.
+   */
+  boolean isRetryable() {
+    return !modified;
+  }
+
+  /**
+   * Returns whether the card accepts extended length APDUs, or null if it is not known yet.
+   */
+  Boolean getExtendedLength() {
+    return extendedLength;
+  }
+
+  void setExtendedLength(Boolean extendedLength) {
+    this.extendedLength = extendedLength;
+  }
+
+  /**
+   * Returns the logical channel on which given application is selected, or null if there is none.
+   */
+  CardChannel getApplicationChannel(String aid) {
+    return applicationChannels.get(aid);
+  }
+
+  void putApplicationChannel(String aid, CardChannel channel) {
+    applicationChannels.put(aid, channel);
+  }
+
+  /**
+   * Returns false once the card refused to open a logical channel.
+   */
+  boolean isLogicalChannelSupported() {
+    return logicalChannelSupported;
+  }
+
+  void setLogicalChannelSupported(boolean logicalChannelSupported) {
+    this.logicalChannelSupported = logicalChannelSupported;
+  }
+
+  /**
+   * Returns the cached response of given SELECT if it is the last successful SELECT on the
+   * channel, or null otherwise.
+   */
+  synchronized ResponseAPDU getSelection(int channel, CommandAPDU select) {
+    Selection selection = selections[channel];
+    return selection != null && selection.command.equals(select) ? selection.response : null;
+  }
+
+  /**
+   * Remembers the last SELECT on a channel, a failed SELECT leaves the selection unknown.
+   */
+  synchronized void setSelection(int channel, CommandAPDU select, ResponseAPDU response) {
+    selections[channel] = response.getSW() == 0x9000 ? new Selection(select, response) : null;
+  }
+
+  synchronized void clearSelection(int channel) {
+    selections[channel] = null;
+  }
+
+  /**
+   * Forgets the last SELECT on a channel if it selected a file rather than an application, since
+   * other commands, such as READ BINARY with a short EF identifier, may change the current file.
+   */
+  synchronized void invalidateFileSelection(int channel) {
+    Selection selection = selections[channel];
+    if (selection != null && selection.command.getP1() != 0x04) selections[channel] = null;
+  }
+
+  /**
+   * Returns the identity of the card for the {@link ResponseCache}, an empty array if the card
+   * has none, or null if it is not known yet.
+   */
+  byte[] getIdentity() {
+    return identity;
+  }
+
+  void setIdentity(byte[] identity) {
+    this.identity = identity;
+  }
+
+  /**
+   * Returns the bytes of the SELECT commands which the response of given command depends on, or
+   * null if the selected directory or file is unknown.
+   */
+  synchronized byte[] getCacheContext(int channel, CommandAPDU command) {
+    byte[] directory = directories[channel];
+    if (directory == null) return null;
+    if (isDirectoryLevel(command)) return directory;
+
+    byte[] file = files[channel];
+    if (file == null) return null;
+    byte[] context = Arrays.copyOf(directory, directory.length + file.length);
+    System.arraycopy(file, 0, context, directory.length, file.length);
+    return context;
+  }
+
+  /**
+   * Forgets the selected directory and file of a channel.
+   */
+  synchronized void clearCacheContext(int channel) {
+    directories[channel] = null;
+  }
+
+  /**
+   * Follows the selected directory and file of a channel after a command is answered.
+   */
+  synchronized void updateCacheContext(int channel, CommandAPDU command, int sw) {
+    if (command.getINS() != (INS.SELECT_FILE & 0xFF)) {
+      if (hasShortFileIdentifier(command)) files[channel] = null;
+      return;
+    }
+
+    int p1 = command.getP1();
+    byte[] data = command.getData();
+    if (sw != 0x9000) {
+      files[channel] = null;
+    } else if (p1 == 0x04 || p1 == 0x08
+        || (p1 == 0x00 && (data.length == 0 || Arrays.equals(data, MF)))) {
+      directories[channel] = command.getBytes();
+      files[channel] = EMPTY;
+    } else if (p1 == 0x00 || p1 == 0x02) {
+      files[channel] = command.getBytes();
+    } else {
+      directories[channel] = null;
+    }
+  }
+
+  /**
+   * Checks if a command addresses its data within the current directory by itself, such as GET
+   * DATA or a command with a short EF identifier.
+   */
+  private static boolean isDirectoryLevel(CommandAPDU command) {
+    int ins = command.getINS();
+    return ins == (INS.GET_DATA & 0xFF) || ins == (INS.PUT_DATA & 0xFF)
+        || hasShortFileIdentifier(command);
+  }
+
+  private static boolean hasShortFileIdentifier(CommandAPDU command) {
+    switch (command.getINS() & 0xFE) {
+      case INS.READ_BINARY & 0xFE:
+      case INS.UPDATE_BINARY & 0xFE:
+      case INS.WRITE_BINARY & 0xFE:
+      case INS.ERASE_BINARY & 0xFE:
+        return (command.getP1() & 0x80) != 0;
+      case INS.READ_RECORD & 0xFE:
+      case INS.UPDATE_DATA & 0xFE:
+      case INS.WRITE_RECORD & 0xFE:
+      case INS.APPEND_RECORD & 0xFE:
+        return (command.getP2() >> 3) != 0;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Returns a reusable buffer for short commands sent on behalf of the caller, such as GET
+   * RESPONSE.
+   */
+  ByteBuffer getCommandBuffer() {
+    if (commandBuffer == null) commandBuffer = ByteBuffer.allocate(261);
+    return commandBuffer;
+  }
+
+  /**
+   * Returns a reusable buffer which is large enough for any response to a short command.
+   */
+  ByteBuffer getResponseBuffer() {
+    if (responseBuffer == null) responseBuffer = ByteBuffer.allocate(Transport.MIN_RESPONSE_SPACE);
+    return responseBuffer;
+  }
+
+  /**
+   * Returns a reusable buffer which collects the data of responses chained by 61xx.
+   */
+  Transport.ResponseBuffer getChainBuffer() {
+    if (chainBuffer == null) chainBuffer = new Transport.ResponseBuffer();
+    return chainBuffer;
+  }
+
+  void touch() {
+    lastUsed = System.nanoTime();
+    reused = true;
+  }
+
+  boolean isIdle(long idleTimeoutNanos, long now) {
+    return now - lastUsed >= idleTimeoutNanos;
+  }
+
+  void close() throws CardException {
+    card.disconnect(false);
+  }
+
+  private static final class Selection {
+
+    private final CommandAPDU command;
+    private final ResponseAPDU response;
+
+    private Selection(CommandAPDU command, ResponseAPDU response) {
+      this.command = command;
+      this.response = response;
+    }
+
+  }
+
+}
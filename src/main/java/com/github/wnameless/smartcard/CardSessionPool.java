@@ -0,0 +1,216 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.smartcardio.Card;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+
+/**
+ *
+ * {@link CardSessionPool} keeps one opened card session per CardTerminal, so the PC/SC connect and
+ * ATR handshake are paid only once instead of on every read.
+ * <P>
+ * A session is reconnected lazily if it has been idle longer than the idle timeout or if the card
+ * was removed or reset since it was last used.
+ *
+ */
+public final class CardSessionPool {
+
+  private static final Logger logger = Logger.getLogger(CardSessionPool.class.getName());
+
+  private final ConcurrentMap<CardTerminal, CardSession> sessions = new ConcurrentHashMap<>();
+  private volatile long idleTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+  private volatile CardReaderMetrics metrics = CardReaderMetrics.NONE;
+  private volatile CardProfileRegistry profiles = new CardProfileRegistry();
+  private volatile Consumer<CardSession> evictionListener = session -> {};
+
+  CardSessionPool() {}
+
+  /**
+   * Returns an opened session of given CardTerminal, connects to the card if needed.
+   */
+  CardSession acquire(CardTerminal terminal) throws CardException {
+    long now = System.nanoTime();
+    CardSession session = sessions.get(terminal);
+    if (session != null) {
+      if (!session.isIdle(idleTimeoutNanos, now)) {
+        session.touch();
+        return session;
+      }
+      evict(terminal, session);
+    }
+
+    long start = System.nanoTime();
+    Card card = terminal.connect("*");
+    CardProfile profile = profiles.isEmpty() ? CardProfile.DEFAULT
+        : profiles.match(card.getATR().getBytes());
+    String protocol = profile.getProtocol();
+    if (!"*".equals(protocol) && !protocol.equals(card.getProtocol())) {
+      card.disconnect(false);
+      card = terminal.connect(protocol);
+    }
+    CardSession fresh = new CardSession(terminal, card, profile);
+    metrics.connected(terminal, System.nanoTime() - start);
+    CardSession existing = sessions.putIfAbsent(terminal, fresh);
+    if (existing != null) {
+      close(fresh);
+      existing.touch();
+      return existing;
+    }
+    return fresh;
+  }
+
+  void setMetrics(CardReaderMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Sets the {@link CardProfileRegistry} which gives each new session the profile of its card. A
+   * card is reconnected once if its profile prefers another protocol.
+   */
+  void setProfiles(CardProfileRegistry profiles) {
+    this.profiles = profiles;
+  }
+
+  /**
+   * Sets the listener which is notified when a session is evicted because the card was removed or
+   * failed, but not when it is only idle.
+   */
+  void setEvictionListener(Consumer<CardSession> evictionListener) {
+    this.evictionListener = evictionListener;
+  }
+
+  /**
+   * Returns the ATR bytes of the opened session of given CardTerminal, or an empty array if there
+   * is no opened session.
+   */
+  byte[] getATR(CardTerminal terminal) {
+    CardSession session = sessions.get(terminal);
+    return session == null ? new byte[0] : session.getCard().getATR().getBytes();
+  }
+
+  /**
+   * Sets the idle timeout of sessions. A session which is not used within the timeout is
+   * disconnected and reconnected on next use. A zero timeout disables the session reuse.
+   *
+   * @param timeout the idle timeout
+   * @param unit the TimeUnit of timeout
+   */
+  public void setIdleTimeout(long timeout, TimeUnit unit) {
+    Objects.requireNonNull(unit);
+    if (timeout < 0) throw new IllegalArgumentException("Timeout must not be negative");
+
+    idleTimeoutNanos = unit.toNanos(timeout);
+  }
+
+  /**
+   * Returns the idle timeout of sessions.
+   *
+   * @param unit the TimeUnit of returned value
+   * @return the idle timeout
+   */
+  public long getIdleTimeout(TimeUnit unit) {
+    return unit.convert(idleTimeoutNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Checks if there is an opened session of given CardTerminal.
+   *
+   * @param terminal a CardTerminal
+   * @return true if a session is opened, false otherwise
+   */
+  public boolean isOpen(CardTerminal terminal) {
+    return sessions.containsKey(terminal);
+  }
+
+  /**
+   * Returns the number of opened sessions.
+   *
+   * @return the number of opened sessions
+   */
+  public int size() {
+    return sessions.size();
+  }
+
+  /**
+   * Disconnects the session of given CardTerminal if any.
+   *
+   * @param terminal a CardTerminal
+   */
+  public void evict(CardTerminal terminal) {
+    CardSession session = sessions.remove(terminal);
+    if (session != null) {
+      close(session);
+      evictionListener.accept(session);
+    }
+  }
+
+  /**
+   * Disconnects all sessions which are idle longer than the idle timeout.
+   *
+   * @return the number of disconnected sessions
+   */
+  public int evictIdle() {
+    long now = System.nanoTime();
+    int count = 0;
+    for (CardSession session : sessions.values()) {
+      if (session.isIdle(idleTimeoutNanos, now) && evict(session.getTerminal(), session)) count++;
+    }
+    return count;
+  }
+
+  /**
+   * Disconnects all sessions.
+   */
+  public void closeAll() {
+    for (CardTerminal terminal : sessions.keySet()) {
+      evict(terminal);
+    }
+  }
+
+  private boolean evict(CardTerminal terminal, CardSession session) {
+    if (sessions.remove(terminal, session)) {
+      close(session);
+      return true;
+    }
+    return false;
+  }
+
+  private void close(CardSession session) {
+    try {
+      session.close();
+    } catch (CardException | IllegalStateException e) {
+      logger.log(Level.FINE, "Failed to disconnect " + session.getTerminal(), e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{size=" + sessions.size() + "}";
+  }
+
+}
@@ -0,0 +1,444 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import javax.smartcardio.CommandAPDU;
+
+/**
+ * 
+ * {@link CommandScript} is a sequence of commands precompiled into a single packed byte array, so
+ * it can be run many times and shared across threads without building any CommandAPDU again.
+ * <P>
+ * Commands can be written as hex templates with named slots, such as
+ * <code>"00 B0 {offset:2} 00"</code>, whose bytes are filled by {@link #with(String, byte...)}.
+ * Each step may run only if the last response has given status words, and may stop the script on
+ * given status words.
+ * 
+ */
+public final class CommandScript {
+
+  private static final int[] NONE = new int[0];
+
+  private final byte[] packed;
+  private final int[] offsets;
+  private final CommandAPDU[] commands;
+  private final int[][] conditions;
+  private final int[][] stops;
+  private final String[] names;
+  private final int[] slotNames;
+  private final int[] slotOffsets;
+  private final int[] slotWidths;
+  private final boolean[] bound;
+
+  private CommandScript(CommandScriptBuilder builder) {
+    packed = builder.packed.toByteArray();
+    int size = builder.offsets.size();
+    offsets = new int[size + 1];
+    conditions = new int[size][];
+    stops = new int[size][];
+    for (int i = 0; i < size; i++) {
+      offsets[i] = builder.offsets.get(i);
+      conditions[i] = builder.conditions.get(i);
+      stops[i] = builder.stops.get(i);
+    }
+    offsets[size] = packed.length;
+    commands = new CommandAPDU[size];
+    for (int i = 0; i < size; i++) {
+      commands[i] = command(packed, i);
+    }
+    names = builder.names.toArray(new String[0]);
+    slotNames = builder.slotNames.stream().mapToInt(Integer::intValue).toArray();
+    slotOffsets = builder.slotOffsets.stream().mapToInt(Integer::intValue).toArray();
+    slotWidths = builder.slotWidths.stream().mapToInt(Integer::intValue).toArray();
+    bound = new boolean[names.length];
+  }
+
+  private CommandScript(CommandScript script, byte[] packed, CommandAPDU[] commands,
+      boolean[] bound) {
+    this.packed = packed;
+    offsets = script.offsets;
+    this.commands = commands;
+    conditions = script.conditions;
+    stops = script.stops;
+    names = script.names;
+    slotNames = script.slotNames;
+    slotOffsets = script.slotOffsets;
+    slotWidths = script.slotWidths;
+    this.bound = bound;
+  }
+
+  /**
+   * Returns a builder of {@link CommandScript}.
+   * 
+   * @return {@link CommandScriptBuilder}
+   */
+  public static CommandScriptBuilder builder() {
+    return new CommandScriptBuilder();
+  }
+
+  /**
+   * Returns a {@link CommandScript} of given commands without any slot or condition.
+   * 
+   * @param commands a List of CommandAPDU
+   * @return {@link CommandScript}
+   */
+  public static CommandScript of(List<CommandAPDU> commands) {
+    CommandScriptBuilder builder = builder();
+    commands.forEach(builder::add);
+    return builder.build();
+  }
+
+  /**
+   * Returns a copy of this {@link CommandScript} whose slot of given name is filled with given
+   * bytes. The packed commands are copied once and patched in place, and only the commands of the
+   * patched steps are built again.
+   * 
+   * @param name the name of a slot
+   * @param value the bytes of the slot, which must be as many as the slot width
+   * @return {@link CommandScript}
+   */
+  public CommandScript with(String name, byte... value) {
+    int index = indexOf(name);
+    byte[] copy = packed.clone();
+    CommandAPDU[] patched = commands.clone();
+    for (int i = 0; i < slotNames.length; i++) {
+      if (slotNames[i] != index) continue;
+      if (value.length != slotWidths[i]) {
+        throw new IllegalArgumentException(
+            "Slot " + name + " must be " + slotWidths[i] + " bytes, but got " + value.length);
+      }
+      System.arraycopy(value, 0, copy, slotOffsets[i], value.length);
+      patched[stepOf(slotOffsets[i])] = null;
+    }
+    for (int step = 0; step < patched.length; step++) {
+      if (patched[step] == null) patched[step] = command(copy, step);
+    }
+    boolean[] filled = bound.clone();
+    filled[index] = true;
+    return new CommandScript(this, copy, patched, filled);
+  }
+
+  /**
+   * Returns a copy of this {@link CommandScript} whose slot of given name is filled with given
+   * value in big-endian order.
+   * 
+   * @param name the name of a slot
+   * @param value a non-negative value which fits the slot width
+   * @return {@link CommandScript}
+   */
+  public CommandScript with(String name, int value) {
+    int index = indexOf(name);
+    int width = 0;
+    for (int i = 0; width == 0; i++) {
+      if (slotNames[i] == index) width = slotWidths[i];
+    }
+    if (value < 0 || (width < 4 && value >>> (8 * width) != 0)) {
+      throw new IllegalArgumentException("Value " + value + " doesn't fit slot " + name);
+    }
+    byte[] bytes = new byte[width];
+    for (int i = width - 1, v = value; i >= 0; i--, v >>>= 8) {
+      bytes[i] = (byte) v;
+    }
+    return with(name, bytes);
+  }
+
+  private CommandAPDU command(byte[] bytes, int step) {
+    return new CommandAPDU(bytes, offsets[step], offsets[step + 1] - offsets[step]);
+  }
+
+  /**
+   * Returns the step whose command contains given offset of the packed commands.
+   */
+  private int stepOf(int offset) {
+    int step = Arrays.binarySearch(offsets, offset);
+    return step >= 0 ? step : -step - 2;
+  }
+
+  private int indexOf(String name) {
+    Objects.requireNonNull(name);
+    for (int i = 0; i < names.length; i++) {
+      if (names[i].equals(name)) return i;
+    }
+    throw new IllegalArgumentException("Unknown slot " + name);
+  }
+
+  /**
+   * Returns the names of all slots.
+   * 
+   * @return Set of slot names
+   */
+  public Set<String> getSlotNames() {
+    return Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(names)));
+  }
+
+  /**
+   * Checks if all slots are filled.
+   * 
+   * @return true if all slots are filled, false otherwise
+   */
+  public boolean isComplete() {
+    for (boolean b : bound) {
+      if (!b) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Throws an IllegalStateException if any slot is not filled.
+   */
+  void checkComplete() {
+    for (int i = 0; i < names.length; i++) {
+      if (!bound[i]) throw new IllegalStateException("Slot " + names[i] + " is not filled");
+    }
+  }
+
+  /**
+   * Returns the number of steps.
+   * 
+   * @return the number of steps
+   */
+  public int size() {
+    return conditions.length;
+  }
+
+  /**
+   * Returns the command of given step.
+   */
+  CommandAPDU getCommand(int step) {
+    return commands[step];
+  }
+
+  /**
+   * Returns the commands of all steps, unfilled slots are zeros.
+   * 
+   * @return List of CommandAPDU
+   */
+  public List<CommandAPDU> getCommands() {
+    return new ArrayList<>(Arrays.asList(commands));
+  }
+
+  /**
+   * Checks if given step runs after a response with given status word, -1 if there is none yet.
+   */
+  boolean accepts(int step, int sw) {
+    int[] condition = conditions[step];
+    return condition == null || (sw >= 0 && Arrays.binarySearch(condition, sw) >= 0);
+  }
+
+  /**
+   * Checks if the script stops after given step is answered with given status word.
+   */
+  boolean stopsOn(int step, int sw) {
+    int[] stop = stops[step];
+    return stop.length > 0 && Arrays.binarySearch(stop, sw) >= 0;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof CommandScript)) return false;
+    CommandScript cs = (CommandScript) o;
+    return Arrays.equals(packed, cs.packed) && Arrays.equals(offsets, cs.offsets)
+        && Arrays.deepEquals(conditions, cs.conditions) && Arrays.deepEquals(stops, cs.stops)
+        && Arrays.equals(names, cs.names) && Arrays.equals(slotNames, cs.slotNames)
+        && Arrays.equals(slotOffsets, cs.slotOffsets) && Arrays.equals(bound, cs.bound);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(Arrays.hashCode(packed), Arrays.hashCode(offsets),
+        Arrays.deepHashCode(conditions), Arrays.deepHashCode(stops), Arrays.hashCode(names),
+        Arrays.hashCode(bound));
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{size=" + size() + ", bytes=" + packed.length
+        + ", slots=" + Arrays.toString(names) + "}";
+  }
+
+  /**
+   * 
+   * {@link CommandScriptBuilder} is designed to compile commands into a {@link CommandScript}.
+   *
+   */
+  public static class CommandScriptBuilder {
+
+    private final ByteArrayOutputStream packed = new ByteArrayOutputStream();
+    private final List<Integer> offsets = new ArrayList<>();
+    private final List<int[]> conditions = new ArrayList<>();
+    private final List<int[]> stops = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Integer> widths = new ArrayList<>();
+    private final List<Integer> slotNames = new ArrayList<>();
+    private final List<Integer> slotOffsets = new ArrayList<>();
+    private final List<Integer> slotWidths = new ArrayList<>();
+
+    /**
+     * Default constructor.
+     */
+    public CommandScriptBuilder() {}
+
+    /**
+     * Adds a step of given command.
+     * 
+     * @param command a CommandAPDU
+     * @return this {@link CommandScriptBuilder}
+     */
+    public CommandScriptBuilder add(CommandAPDU command) {
+      byte[] bytes = command.getBytes();
+      offsets.add(packed.size());
+      conditions.add(null);
+      stops.add(NONE);
+      packed.write(bytes, 0, bytes.length);
+      return this;
+    }
+
+    /**
+     * Adds a step of given hex template. A slot is written as <code>{name:width}</code>, where
+     * width is its number of bytes. Slots of the same name are filled together and must have the
+     * same width. Slots can't change the length of a command, so Lc must be literal.
+     * 
+     * @param template a hex template, such as <code>"00 B0 {offset:2} 00"</code>
+     * @return this {@link CommandScriptBuilder}
+     */
+    public CommandScriptBuilder add(String template) {
+      int named = names.size();
+      try {
+        return compile(template);
+      } catch (IllegalArgumentException e) {
+        names.subList(named, names.size()).clear();
+        widths.subList(named, widths.size()).clear();
+        throw e;
+      }
+    }
+
+    private CommandScriptBuilder compile(String template) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      List<int[]> slots = new ArrayList<>();
+      String hex = template.replaceAll("\\s", "");
+      int i = 0;
+      while (i < hex.length()) {
+        if (hex.charAt(i) == '{') {
+          int end = hex.indexOf('}', i);
+          int colon = hex.indexOf(':', i);
+          if (end < 0 || colon < 0 || colon > end) {
+            throw new IllegalArgumentException("Invalid slot in " + template);
+          }
+          String name = hex.substring(i + 1, colon);
+          String digits = hex.substring(colon + 1, end);
+          if (name.isEmpty() || !digits.matches("[1-9][0-9]{0,2}")) {
+            throw new IllegalArgumentException("Invalid slot in " + template);
+          }
+          int width = Integer.parseInt(digits);
+          slots.add(new int[] {nameIndex(name, width), bytes.size(), width});
+          bytes.write(new byte[width], 0, width);
+          i = end + 1;
+        } else {
+          if (i + 2 > hex.length()) throw new IllegalArgumentException("Invalid hex " + template);
+          int high = Character.digit(hex.charAt(i), 16);
+          int low = Character.digit(hex.charAt(i + 1), 16);
+          if (high < 0 || low < 0) throw new IllegalArgumentException("Invalid hex " + template);
+          bytes.write((high << 4) | low);
+          i += 2;
+        }
+      }
+
+      CommandAPDU command = new CommandAPDU(bytes.toByteArray());
+      int offset = packed.size();
+      add(command);
+      for (int[] slot : slots) {
+        slotNames.add(slot[0]);
+        slotOffsets.add(offset + slot[1]);
+        slotWidths.add(slot[2]);
+      }
+      return this;
+    }
+
+    private int nameIndex(String name, int width) {
+      int index = names.indexOf(name);
+      if (index < 0) {
+        names.add(name);
+        widths.add(width);
+        return names.size() - 1;
+      }
+      if (widths.get(index) != width) {
+        throw new IllegalArgumentException("Slot " + name + " has different widths");
+      }
+      return index;
+    }
+
+    /**
+     * Makes the last added step run only if the last response has one of given status words.
+     * Otherwise the step is skipped and adds no response.
+     * 
+     * @param statusWords status words
+     * @return this {@link CommandScriptBuilder}
+     */
+    public CommandScriptBuilder when(int... statusWords) {
+      conditions.set(lastStep(), sorted(statusWords));
+      return this;
+    }
+
+    /**
+     * Makes the script stop after the last added step if it is answered with one of given status
+     * words.
+     * 
+     * @param statusWords status words
+     * @return this {@link CommandScriptBuilder}
+     */
+    public CommandScriptBuilder stopOn(int... statusWords) {
+      stops.set(lastStep(), sorted(statusWords));
+      return this;
+    }
+
+    private int lastStep() {
+      if (offsets.isEmpty()) throw new IllegalStateException("No step is added");
+      return offsets.size() - 1;
+    }
+
+    private static int[] sorted(int[] statusWords) {
+      int[] sws = statusWords.clone();
+      for (int sw : sws) {
+        if (sw < 0 || sw > 0xFFFF) throw new IllegalArgumentException("Invalid status word " + sw);
+      }
+      Arrays.sort(sws);
+      return sws;
+    }
+
+    /**
+     * Builds the {@link CommandScript}.
+     * 
+     * @return {@link CommandScript}
+     */
+    public CommandScript build() {
+      return new CommandScript(this);
+    }
+
+  }
+
+}
@@ -0,0 +1,168 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.smartcardio.CardTerminal;
+
+/**
+ * 
+ * {@link DefaultCardReaderMetrics} is the default {@link CardReaderMetrics} of a
+ * {@link CardReader}. It keeps lock-free {@link TerminalMetrics} per card terminal name, which can
+ * be exported as MXBeans under the domain {@value #JMX_DOMAIN}.
+ * 
+ */
+public final class DefaultCardReaderMetrics implements CardReaderMetrics {
+
+  private static final Logger logger = Logger.getLogger(DefaultCardReaderMetrics.class.getName());
+
+  /**
+   * The JMX domain of exported {@link TerminalMetrics}.
+   */
+  public static final String JMX_DOMAIN = "com.github.wnameless.smartcard";
+
+  private final ConcurrentMap<String, TerminalMetrics> terminals = new ConcurrentHashMap<>();
+  private volatile MBeanServer server;
+
+  @Override
+  public void connected(CardTerminal terminal, long nanos) {
+    metricsOf(terminal).recordConnect(nanos);
+  }
+
+  @Override
+  public void scheduled(CardTerminal terminal, int queueDepth, long waitNanos) {
+    metricsOf(terminal).recordSchedule(queueDepth, waitNanos);
+  }
+
+  @Override
+  public void transmitted(CardTerminal terminal, int ins, int bytesSent, int bytesReceived,
+      int sw, long nanos) {
+    metricsOf(terminal).recordTransmit(ins, bytesSent, bytesReceived, sw, nanos);
+  }
+
+  @Override
+  public void failed(CardTerminal terminal, Throwable error) {
+    metricsOf(terminal).recordError();
+  }
+
+  /**
+   * Returns the {@link TerminalMetrics} of given CardTerminal.
+   * 
+   * @param terminal a CardTerminal
+   * @return {@link TerminalMetrics}, or null if nothing is recorded for the CardTerminal
+   */
+  public TerminalMetrics getTerminalMetrics(CardTerminal terminal) {
+    return terminals.get(terminal.getName());
+  }
+
+  /**
+   * Returns the {@link TerminalMetrics} of all card terminals keyed by their names.
+   * 
+   * @return Map&lt;String, {@link TerminalMetrics}&gt;
+   */
+  public Map<String, TerminalMetrics> getAllTerminalMetrics() {
+    return Collections.unmodifiableMap(new TreeMap<>(terminals));
+  }
+
+  /**
+   * Registers the {@link TerminalMetrics} of all card terminals, including the ones seen later, to
+   * the platform MBeanServer.
+   */
+  public synchronized void registerMBeans() {
+    if (server != null) return;
+
+    server = ManagementFactory.getPlatformMBeanServer();
+    terminals.values().forEach(this::register);
+  }
+
+  /**
+   * Unregisters all {@link TerminalMetrics} from the platform MBeanServer.
+   */
+  public synchronized void unregisterMBeans() {
+    MBeanServer registered = server;
+    if (registered == null) return;
+
+    server = null;
+    for (TerminalMetrics metrics : terminals.values()) {
+      try {
+        ObjectName name = objectName(metrics);
+        if (registered.isRegistered(name)) registered.unregisterMBean(name);
+      } catch (JMException e) {
+        logger.log(Level.WARNING, "Failed to unregister " + metrics.getTerminalName(), e);
+      }
+    }
+  }
+
+  /**
+   * Returns the JMX ObjectName of given {@link TerminalMetrics}.
+   * 
+   * @param metrics {@link TerminalMetrics}
+   * @return ObjectName
+   * @throws JMException if the ObjectName is malformed
+   */
+  public static ObjectName objectName(TerminalMetrics metrics) throws JMException {
+    return new ObjectName(JMX_DOMAIN + ":type=TerminalMetrics,name="
+        + ObjectName.quote(metrics.getTerminalName()));
+  }
+
+  private TerminalMetrics metricsOf(CardTerminal terminal) {
+    String name = terminal.getName();
+    TerminalMetrics metrics = terminals.get(name);
+    if (metrics != null) return metrics;
+
+    TerminalMetrics fresh = new TerminalMetrics(name);
+    metrics = terminals.putIfAbsent(name, fresh);
+    if (metrics != null) return metrics;
+
+    if (server != null) {
+      synchronized (this) {
+        register(fresh);
+      }
+    }
+    return fresh;
+  }
+
+  private void register(TerminalMetrics metrics) {
+    MBeanServer registered = server;
+    if (registered == null) return;
+
+    try {
+      ObjectName name = objectName(metrics);
+      if (!registered.isRegistered(name)) registered.registerMBean(metrics, name);
+    } catch (JMException e) {
+      logger.log(Level.WARNING, "Failed to register " + metrics.getTerminalName(), e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{terminals=" + terminals.keySet() + "}";
+  }
+
+}
@@ -0,0 +1,479 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.smartcardio.ATR;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+
+/**
+ * 
+ * {@link ExchangeRecorder} appends every APDU exchange of a {@link CardReader} to a compact binary
+ * log, which is made of memory-mapped append-only segment files in a directory. Each record holds
+ * the card terminal name, the ATR of the card, the timestamp, the command and response bytes and
+ * the latency.
+ * <P>
+ * A log can be read back by {@link #read(Path)} or replayed by {@link #replay(Path, double)} as
+ * {@link VirtualCardTerminal}s, which answer the recorded commands at the original or an
+ * accelerated speed.
+ * 
+ */
+public final class ExchangeRecorder implements Closeable {
+
+  private static final Logger logger = Logger.getLogger(ExchangeRecorder.class.getName());
+
+  private static final int MAGIC = 0x41504455;
+  private static final int VERSION = 2;
+  // Segments of version 1 don't record the ATR
+  private static final int VERSION_WITHOUT_ATR = 1;
+  private static final int HEADER_LENGTH = 8;
+  private static final String PREFIX = "exchanges-";
+  private static final String SUFFIX = ".log";
+  private static final ResponseAPDU NOT_RECORDED =
+      new ResponseAPDU(new byte[] {(byte) 0x6F, (byte) 0x00});
+
+  private final Path directory;
+  private final int segmentSize;
+  private MappedByteBuffer segment;
+  private int segmentIndex;
+  private long recordCount;
+  private boolean closed;
+
+  private ExchangeRecorder(ExchangeRecorderBuilder builder) throws IOException {
+    directory = builder.directory;
+    segmentSize = builder.segmentSize;
+    Files.createDirectories(directory);
+    for (Path path : segments(directory)) {
+      segmentIndex = Math.max(segmentIndex, indexOf(path) + 1);
+    }
+    roll(0);
+  }
+
+  /**
+   * Returns a builder of {@link ExchangeRecorder}.
+   * 
+   * @return {@link ExchangeRecorderBuilder}
+   */
+  public static ExchangeRecorderBuilder builder() {
+    return new ExchangeRecorderBuilder();
+  }
+
+  /**
+   * Appends an exchange. A failure of the log is logged and doesn't affect the exchange.
+   */
+  void record(CardTerminal terminal, byte[] atr, byte[] command, byte[] response,
+      long latencyNanos) {
+    long timestamp = epochNanos(Instant.now()) - latencyNanos;
+    byte[] name = terminal.getName().getBytes(StandardCharsets.UTF_8);
+    int length =
+        8 + 8 + 2 + name.length + 1 + atr.length + 4 + command.length + 4 + response.length;
+
+    synchronized (this) {
+      if (closed) return;
+      try {
+        if (segment == null || segment.remaining() < 4 + length + 4) roll(4 + length + 4);
+      } catch (IOException e) {
+        logger.log(Level.WARNING, "Failed to open a segment in " + directory, e);
+        return;
+      }
+      segment.putInt(length).putLong(timestamp).putLong(latencyNanos)
+          .putShort((short) name.length).put(name).put((byte) atr.length).put(atr)
+          .putInt(command.length).put(command)
+          .putInt(response.length).put(response);
+      recordCount++;
+    }
+  }
+
+  /**
+   * Opens the next segment, skipping the indexes of segments created by others in the meantime.
+   */
+  private void roll(int minimumSize) throws IOException {
+    if (segment != null) segment.force();
+    while (true) {
+      Path path = directory.resolve(String.format("%s%06d%s", PREFIX, segmentIndex++, SUFFIX));
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+          StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+        segment = channel.map(MapMode.READ_WRITE, 0,
+            Math.max(segmentSize, HEADER_LENGTH + minimumSize));
+        break;
+      } catch (FileAlreadyExistsException e) {
+        logger.log(Level.FINE, "Segment " + path + " exists, trying the next one", e);
+      }
+    }
+    segment.putInt(MAGIC).putInt(VERSION);
+  }
+
+  private static long epochNanos(Instant instant) {
+    return TimeUnit.SECONDS.toNanos(instant.getEpochSecond()) + instant.getNano();
+  }
+
+  /**
+   * Returns the directory of the log.
+   * 
+   * @return Path of the directory
+   */
+  public Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Returns the number of exchanges recorded by this {@link ExchangeRecorder}.
+   * 
+   * @return the number of records
+   */
+  public synchronized long getRecordCount() {
+    return recordCount;
+  }
+
+  /**
+   * Writes all recorded exchanges to the storage.
+   */
+  public synchronized void flush() {
+    if (segment != null) segment.force();
+  }
+
+  /**
+   * Flushes and stops recording. Further exchanges are ignored.
+   */
+  @Override
+  public synchronized void close() {
+    flush();
+    segment = null;
+    closed = true;
+  }
+
+  /**
+   * Reads all exchanges of the log in a directory in recorded order.
+   * 
+   * @param directory Path of the log directory
+   * @return List of {@link Exchange}
+   * @throws IOException if the log can't be read or is corrupted
+   */
+  public static List<Exchange> read(Path directory) throws IOException {
+    List<Exchange> exchanges = new ArrayList<>();
+    for (Path path : segments(directory)) {
+      ByteBuffer buffer;
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      }
+      if (buffer.remaining() < HEADER_LENGTH || buffer.getInt() != MAGIC) {
+        throw new IOException("Not an exchange log segment: " + path);
+      }
+      int version = buffer.getInt();
+      if (version != VERSION && version != VERSION_WITHOUT_ATR) {
+        throw new IOException("Unsupported exchange log version " + version + ": " + path);
+      }
+      try {
+        while (buffer.remaining() >= 4) {
+          int length = buffer.getInt();
+          if (length == 0) break;
+
+          long timestamp = buffer.getLong();
+          long latency = buffer.getLong();
+          String terminal = new String(bytes(buffer, buffer.getShort() & 0xFFFF),
+              StandardCharsets.UTF_8);
+          byte[] atr = version == VERSION ? bytes(buffer, buffer.get() & 0xFF) : null;
+          byte[] command = bytes(buffer, buffer.getInt());
+          byte[] response = bytes(buffer, buffer.getInt());
+          exchanges.add(new Exchange(terminal, atr, timestamp, command, response, latency));
+        }
+      } catch (RuntimeException e) {
+        throw new IOException("Corrupted exchange log segment: " + path, e);
+      }
+    }
+    return exchanges;
+  }
+
+  private static byte[] bytes(ByteBuffer buffer, int length) {
+    byte[] bytes = new byte[length];
+    buffer.get(bytes);
+    return bytes;
+  }
+
+  /**
+   * Returns one {@link VirtualCardTerminal} per recorded card terminal, each holding a
+   * {@link VirtualCard} which answers the recorded commands of that terminal. The card has the
+   * first recorded ATR of the terminal, so it is matched by {@link CardProfile}s and identified
+   * by a {@link ResponseCache} like the recorded card.
+   * <P>
+   * Commands are expected in recorded order and the recording wraps around at its end. A command
+   * which doesn't match the next recorded one is answered by its next recorded occurrence, or by
+   * 6F00 if it was never recorded. Each response is delayed by its recorded latency divided by
+   * speed, so a speed of 10 replays ten times faster and an infinite speed doesn't wait at all.
+   * 
+   * @param directory Path of the log directory
+   * @param speed the speed factor, which must be positive
+   * @return List of {@link VirtualCardTerminal}
+   * @throws IOException if the log can't be read or is corrupted
+   */
+  public static List<VirtualCardTerminal> replay(Path directory, double speed)
+      throws IOException {
+    if (!(speed > 0)) throw new IllegalArgumentException("Speed must be positive");
+
+    Map<String, List<Exchange>> byTerminal = new LinkedHashMap<>();
+    for (Exchange exchange : read(directory)) {
+      byTerminal.computeIfAbsent(exchange.terminal, k -> new ArrayList<>()).add(exchange);
+    }
+
+    List<VirtualCardTerminal> terminals = new ArrayList<>();
+    for (Map.Entry<String, List<Exchange>> entry : byTerminal.entrySet()) {
+      VirtualCardTerminal terminal = new VirtualCardTerminal(entry.getKey());
+      Exchange[] exchanges = entry.getValue().toArray(new Exchange[0]);
+      AtomicInteger next = new AtomicInteger();
+      VirtualCard.VirtualCardBuilder card = VirtualCard.builder().setResponder(command -> {
+        Exchange exchange = next(exchanges, next, withoutChannel(command.getBytes()));
+        if (exchange == null) return NOT_RECORDED;
+
+        park((long) (exchange.latencyNanos / speed));
+        return new ResponseAPDU(exchange.response);
+      });
+      for (Exchange exchange : exchanges) {
+        if (exchange.atr != null) {
+          card.setATR(exchange.atr);
+          break;
+        }
+      }
+      terminal.insert(card.build());
+      terminals.add(terminal);
+    }
+    return terminals;
+  }
+
+  private static Exchange next(Exchange[] exchanges, AtomicInteger next, byte[] command) {
+    synchronized (exchanges) {
+      for (int i = 0; i < exchanges.length; i++) {
+        int index = (next.get() + i) % exchanges.length;
+        if (Arrays.equals(command, withoutChannel(exchanges[index].command))) {
+          next.set(index + 1);
+          return exchanges[index];
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Clears the logical channel number of an interindustry CLA.
+   */
+  private static byte[] withoutChannel(byte[] command) {
+    if ((command[0] & 0x80) == 0) {
+      command = command.clone();
+      command[0] = (byte) ((command[0] & 0x40) == 0 ? command[0] & 0xBC : command[0] & 0xB0);
+    }
+    return command;
+  }
+
+  private static void park(long nanos) {
+    long deadline = System.nanoTime() + nanos;
+    for (long remaining = nanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+      LockSupport.parkNanos(remaining);
+      if (Thread.currentThread().isInterrupted()) return;
+    }
+  }
+
+  private static List<Path> segments(Path directory) throws IOException {
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream =
+        Files.newDirectoryStream(directory, PREFIX + "[0-9]*" + SUFFIX)) {
+      stream.forEach(paths::add);
+    }
+    paths.sort((a, b) -> Integer.compare(indexOf(a), indexOf(b)));
+    return paths;
+  }
+
+  private static int indexOf(Path segment) {
+    String name = segment.getFileName().toString();
+    return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{directory=" + directory + ", records="
+        + getRecordCount() + "}";
+  }
+
+  /**
+   * 
+   * {@link Exchange} is a recorded APDU exchange.
+   *
+   */
+  public static final class Exchange {
+
+    private final String terminal;
+    private final byte[] atr;
+    private final long timestamp;
+    private final byte[] command;
+    private final byte[] response;
+    private final long latencyNanos;
+
+    private Exchange(String terminal, byte[] atr, long timestamp, byte[] command, byte[] response,
+        long latencyNanos) {
+      this.terminal = terminal;
+      this.atr = atr;
+      this.timestamp = timestamp;
+      this.command = command;
+      this.response = response;
+      this.latencyNanos = latencyNanos;
+    }
+
+    /**
+     * Returns the name of the card terminal.
+     * 
+     * @return the card terminal name
+     */
+    public String getTerminalName() {
+      return terminal;
+    }
+
+    /**
+     * Returns the ATR of the card.
+     * 
+     * @return ATR, or null if the log doesn't record it
+     */
+    public ATR getATR() {
+      return atr == null ? null : new ATR(atr);
+    }
+
+    /**
+     * Returns the time when the command was sent.
+     * 
+     * @return Instant
+     */
+    public Instant getTimestamp() {
+      return Instant.ofEpochSecond(0, timestamp);
+    }
+
+    /**
+     * Returns the command.
+     * 
+     * @return CommandAPDU
+     */
+    public CommandAPDU getCommand() {
+      return new CommandAPDU(command);
+    }
+
+    /**
+     * Returns the response.
+     * 
+     * @return ResponseAPDU
+     */
+    public ResponseAPDU getResponse() {
+      return new ResponseAPDU(response);
+    }
+
+    /**
+     * Returns the latency of the exchange.
+     * 
+     * @param unit the TimeUnit of returned value
+     * @return the latency
+     */
+    public long getLatency(TimeUnit unit) {
+      return unit.convert(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "{" + terminal + ", " + getTimestamp() + ", "
+          + getCommand() + ", " + getResponse() + "}";
+    }
+
+  }
+
+  /**
+   * 
+   * {@link ExchangeRecorderBuilder} is designed to configure an {@link ExchangeRecorder}.
+   *
+   */
+  public static class ExchangeRecorderBuilder {
+
+    private Path directory;
+    private int segmentSize = 16 << 20;
+
+    /**
+     * Default constructor.
+     */
+    public ExchangeRecorderBuilder() {}
+
+    /**
+     * Sets the directory of the log, which is created if absent. Segments already in the
+     * directory are kept and new segments are appended after them.
+     * 
+     * @param directory Path of the log directory
+     * @return this {@link ExchangeRecorderBuilder}
+     */
+    public ExchangeRecorderBuilder setDirectory(Path directory) {
+      this.directory = Objects.requireNonNull(directory);
+      return this;
+    }
+
+    /**
+     * Sets the size of each memory-mapped segment file in bytes, default is 16 MiB.
+     * 
+     * @param segmentSize the segment size in bytes
+     * @return this {@link ExchangeRecorderBuilder}
+     */
+    public ExchangeRecorderBuilder setSegmentSize(int segmentSize) {
+      if (segmentSize < 1024) {
+        throw new IllegalArgumentException("Segment size must be at least 1024 bytes");
+      }
+
+      this.segmentSize = segmentSize;
+      return this;
+    }
+
+    /**
+     * Builds the {@link ExchangeRecorder}.
+     * 
+     * @return {@link ExchangeRecorder}
+     * @throws IOException if the directory can't be created or listed, or the first segment can't
+     *           be created
+     */
+    public ExchangeRecorder build() throws IOException {
+      if (directory == null) throw new IllegalStateException("Directory is not set");
+      return new ExchangeRecorder(this);
+    }
+
+  }
+
+}
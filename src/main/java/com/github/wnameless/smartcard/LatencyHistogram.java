@@ -0,0 +1,137 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 
+ * {@link LatencyHistogram} is a lock-free histogram of latencies in nanoseconds. Values are counted
+ * in log-linear buckets, 16 per power of two, so any percentile is accurate within 6.25% and
+ * recording never allocates.
+ * 
+ */
+public final class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final long MAX_VALUE = (1L << 40) - 1;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(index(MAX_VALUE) + 1);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sum = new LongAdder();
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Records a latency. Negative values are recorded as zero and values beyond about 18 minutes
+   * are recorded as 18 minutes.
+   * 
+   * @param nanos the latency in nanoseconds
+   */
+  public void record(long nanos) {
+    long value = Math.min(Math.max(nanos, 0), MAX_VALUE);
+    buckets.incrementAndGet(index(value));
+    count.increment();
+    sum.add(value);
+    max.accumulate(value);
+  }
+
+  /**
+   * Returns the number of recorded latencies.
+   * 
+   * @return the count
+   */
+  public long getCount() {
+    return count.sum();
+  }
+
+  /**
+   * Returns the mean of recorded latencies in nanoseconds.
+   * 
+   * @return the mean, or 0 if nothing is recorded
+   */
+  public double getMean() {
+    long n = count.sum();
+    return n == 0 ? 0 : (double) sum.sum() / n;
+  }
+
+  /**
+   * Returns the maximum of recorded latencies in nanoseconds.
+   * 
+   * @return the maximum, or 0 if nothing is recorded
+   */
+  public long getMax() {
+    return max.get();
+  }
+
+  /**
+   * Returns the latency in nanoseconds which given percentage of recorded latencies are below or
+   * equal to.
+   * 
+   * @param percentile a percentage between 0 and 100
+   * @return the latency, or 0 if nothing is recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (!(percentile >= 0 && percentile <= 100)) {
+      throw new IllegalArgumentException("Percentile must be between 0 and 100");
+    }
+
+    long[] snapshot = new long[buckets.length()];
+    long total = 0;
+    for (int i = 0; i < snapshot.length; i++) {
+      snapshot[i] = buckets.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) return 0;
+
+    long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+    long seen = 0;
+    for (int i = 0; i < snapshot.length; i++) {
+      seen += snapshot[i];
+      if (seen >= target) return Math.min(upperBound(i), getMax());
+    }
+    return getMax();
+  }
+
+  static int index(long value) {
+    if (value < SUB_BUCKETS) return (int) value;
+
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+    return (shift + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  static long upperBound(int index) {
+    if (index < SUB_BUCKETS) return index;
+
+    int shift = index / SUB_BUCKETS - 1;
+    long subBucket = index % SUB_BUCKETS + SUB_BUCKETS;
+    return ((subBucket + 1) << shift) - 1;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{count=" + getCount() + ", p50="
+        + getValueAtPercentile(50) + ", p99=" + getValueAtPercentile(99) + ", max=" + getMax()
+        + "}";
+  }
+
+}
@@ -0,0 +1,39 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+/**
+ * 
+ * {@link OverflowPolicy} defines what happens when a subscriber of {@link CardEvent}s falls behind
+ * and its buffer is full.
+ * 
+ */
+public enum OverflowPolicy {
+
+  /**
+   * Blocks the card reading until the subscriber catches up.
+   */
+  BLOCK,
+
+  /**
+   * Drops the new event for the subscriber, the card reading is never blocked.
+   */
+  DROP
+
+}
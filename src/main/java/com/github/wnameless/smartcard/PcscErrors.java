@@ -0,0 +1,62 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import javax.smartcardio.CardNotPresentException;
+
+/**
+ *
+ * {@link PcscErrors} classifies the exceptions thrown by the PC/SC provider. The provider only
+ * exposes the PC/SC error code names in the exception messages, so they are matched by name.
+ *
+ */
+final class PcscErrors {
+
+  private PcscErrors() {}
+
+  /**
+   * Checks if given exception means the card reader itself is gone.
+   */
+  static boolean isReaderUnavailable(Throwable t) {
+    return hasCode(t, "SCARD_E_READER_UNAVAILABLE", "SCARD_E_UNKNOWN_READER",
+        "SCARD_E_NO_READERS_AVAILABLE");
+  }
+
+  /**
+   * Checks if given exception only means there is no card in the card reader.
+   */
+  static boolean isCardAbsent(Throwable t) {
+    for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+      if (cause instanceof CardNotPresentException) return true;
+    }
+    return hasCode(t, "SCARD_E_NO_SMARTCARD", "SCARD_W_REMOVED_CARD");
+  }
+
+  private static boolean hasCode(Throwable t, String... codes) {
+    for (Throwable cause = t; cause != null; cause = cause.getCause()) {
+      String message = cause.getMessage();
+      if (message == null) continue;
+      for (String code : codes) {
+        if (message.contains(code)) return true;
+      }
+    }
+    return false;
+  }
+
+}
@@ -0,0 +1,239 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 
+ * {@link PollingPolicy} decides how often {@link AutomatedReader} polls each card terminal. The
+ * interval of a card terminal backs off exponentially from the minimum to the maximum interval
+ * while nothing changes on it, and snaps back to the minimum interval once a card is inserted,
+ * removed or answers differently.
+ * 
+ */
+public final class PollingPolicy {
+
+  private final long minimumIntervalNanos;
+  private final long maximumIntervalNanos;
+  private final double backoffMultiplier;
+  private final double maximumRate;
+
+  private PollingPolicy(PollingPolicyBuilder builder) {
+    minimumIntervalNanos = builder.minimumIntervalNanos;
+    maximumIntervalNanos = builder.maximumIntervalNanos;
+    backoffMultiplier = builder.backoffMultiplier;
+    maximumRate = builder.maximumRate;
+  }
+
+  /**
+   * Returns a builder of {@link PollingPolicy}.
+   * 
+   * @return {@link PollingPolicyBuilder}
+   */
+  public static PollingPolicyBuilder builder() {
+    return new PollingPolicyBuilder();
+  }
+
+  /**
+   * Returns a {@link PollingPolicy} which polls at a fixed interval.
+   * 
+   * @param interval the interval
+   * @param unit the TimeUnit of interval
+   * @return {@link PollingPolicy}
+   */
+  public static PollingPolicy fixed(long interval, TimeUnit unit) {
+    return builder().setMinimumInterval(interval, unit).setMaximumInterval(interval, unit)
+        .setBackoffMultiplier(1).build();
+  }
+
+  /**
+   * Returns the interval in nanoseconds before the next poll of a card terminal.
+   * 
+   * @param intervalNanos the last interval, or 0 if the card terminal is polled the first time
+   * @param changed true if the card terminal changed in the last poll
+   * @param commands the number of commands sent in each poll
+   */
+  long nextInterval(long intervalNanos, boolean changed, int commands) {
+    long next = minimumIntervalNanos;
+    if (!changed && intervalNanos > 0) {
+      next = (long) Math.min(maximumIntervalNanos, intervalNanos * backoffMultiplier);
+    }
+    if (maximumRate < Double.POSITIVE_INFINITY) {
+      next = Math.max(next, (long) (commands * TimeUnit.SECONDS.toNanos(1) / maximumRate));
+    }
+    return next;
+  }
+
+  /**
+   * Returns the minimum interval.
+   * 
+   * @param unit the TimeUnit of returned value
+   * @return the minimum interval
+   */
+  public long getMinimumInterval(TimeUnit unit) {
+    return unit.convert(minimumIntervalNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the maximum interval.
+   * 
+   * @param unit the TimeUnit of returned value
+   * @return the maximum interval
+   */
+  public long getMaximumInterval(TimeUnit unit) {
+    return unit.convert(maximumIntervalNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the factor by which the interval grows after each poll without change.
+   * 
+   * @return the backoff multiplier
+   */
+  public double getBackoffMultiplier() {
+    return backoffMultiplier;
+  }
+
+  /**
+   * Returns the maximum number of commands per second sent to each card terminal.
+   * 
+   * @return the maximum rate
+   */
+  public double getMaximumRate() {
+    return maximumRate;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) return true;
+    if (!(o instanceof PollingPolicy)) return false;
+    PollingPolicy pp = (PollingPolicy) o;
+    return minimumIntervalNanos == pp.minimumIntervalNanos
+        && maximumIntervalNanos == pp.maximumIntervalNanos
+        && Double.compare(backoffMultiplier, pp.backoffMultiplier) == 0
+        && Double.compare(maximumRate, pp.maximumRate) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(minimumIntervalNanos, maximumIntervalNanos, backoffMultiplier,
+        maximumRate);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{minimumInterval="
+        + TimeUnit.NANOSECONDS.toMillis(minimumIntervalNanos) + "ms, maximumInterval="
+        + TimeUnit.NANOSECONDS.toMillis(maximumIntervalNanos) + "ms, backoffMultiplier="
+        + backoffMultiplier + ", maximumRate=" + maximumRate + "}";
+  }
+
+  /**
+   * 
+   * {@link PollingPolicyBuilder} is designed to configure a {@link PollingPolicy}.
+   *
+   */
+  public static class PollingPolicyBuilder {
+
+    private long minimumIntervalNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    private long maximumIntervalNanos = TimeUnit.SECONDS.toNanos(5);
+    private double backoffMultiplier = 2;
+    private double maximumRate = Double.POSITIVE_INFINITY;
+
+    /**
+     * Default constructor.
+     */
+    public PollingPolicyBuilder() {}
+
+    /**
+     * Sets the interval right after a change, default is 100 milliseconds.
+     * 
+     * @param interval a positive interval
+     * @param unit the TimeUnit of interval
+     * @return this {@link PollingPolicyBuilder}
+     */
+    public PollingPolicyBuilder setMinimumInterval(long interval, TimeUnit unit) {
+      Objects.requireNonNull(unit);
+      if (interval <= 0) throw new IllegalArgumentException("Interval must be positive");
+
+      minimumIntervalNanos = unit.toNanos(interval);
+      return this;
+    }
+
+    /**
+     * Sets the interval which the backoff never exceeds, default is 5 seconds.
+     * 
+     * @param interval a positive interval
+     * @param unit the TimeUnit of interval
+     * @return this {@link PollingPolicyBuilder}
+     */
+    public PollingPolicyBuilder setMaximumInterval(long interval, TimeUnit unit) {
+      Objects.requireNonNull(unit);
+      if (interval <= 0) throw new IllegalArgumentException("Interval must be positive");
+
+      maximumIntervalNanos = unit.toNanos(interval);
+      return this;
+    }
+
+    /**
+     * Sets the factor by which the interval grows after each poll without change, default is 2. A
+     * factor of 1 disables the backoff.
+     * 
+     * @param backoffMultiplier a factor of at least 1
+     * @return this {@link PollingPolicyBuilder}
+     */
+    public PollingPolicyBuilder setBackoffMultiplier(double backoffMultiplier) {
+      if (!(backoffMultiplier >= 1) || Double.isInfinite(backoffMultiplier)) {
+        throw new IllegalArgumentException("Backoff multiplier must be finite and at least 1");
+      }
+
+      this.backoffMultiplier = backoffMultiplier;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of commands per second sent to each card terminal, default is
+     * unlimited. It stretches the interval of scripts with many commands.
+     * 
+     * @param maximumRate a positive rate
+     * @return this {@link PollingPolicyBuilder}
+     */
+    public PollingPolicyBuilder setMaximumRate(double maximumRate) {
+      if (!(maximumRate > 0)) throw new IllegalArgumentException("Rate must be positive");
+
+      this.maximumRate = maximumRate;
+      return this;
+    }
+
+    /**
+     * Builds the {@link PollingPolicy}.
+     * 
+     * @return {@link PollingPolicy}
+     */
+    public PollingPolicy build() {
+      if (minimumIntervalNanos > maximumIntervalNanos) {
+        throw new IllegalStateException("Minimum interval must not exceed maximum interval");
+      }
+      return new PollingPolicy(this);
+    }
+
+  }
+
+}
@@ -0,0 +1,360 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+
+/**
+ * 
+ * {@link ResponseCache} keeps the successful responses of commands which read immutable card data,
+ * so they are sent to each card only once. Entries are keyed by the card identity, the selected
+ * application and file and the command bytes, and evicted in LRU order beyond the maximum size.
+ * <P>
+ * The card identity is the ATR followed by the response of the identity command, which is the
+ * PC/SC GET DATA of the card UID by default. Cards which don't answer the identity command with
+ * 9000 are never cached. All entries of a card are dropped when the card is removed or written.
+ * <P>
+ * Files must be selected by AID, path or MF, followed by a SELECT of an EF under the current DF,
+ * for responses of READ BINARY and READ RECORD without SFI to be cached.
+ * 
+ */
+public final class ResponseCache {
+
+  /**
+   * The PC/SC GET DATA command of the card UID.
+   */
+  public static final CommandAPDU GET_UID = new CommandAPDU(0xFF, 0xCA, 0x00, 0x00, 256);
+
+  private static final int ENTRY_OVERHEAD = 64;
+
+  private final long maximumBytes;
+  private final boolean offHeap;
+  private final Predicate<CommandAPDU> cacheable;
+  private final CommandAPDU identityCommand;
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private long bytes;
+
+  private ResponseCache(ResponseCacheBuilder builder) {
+    maximumBytes = builder.maximumBytes;
+    offHeap = builder.offHeap;
+    cacheable = builder.cacheable;
+    identityCommand = builder.identityCommand;
+  }
+
+  /**
+   * Creates a {@link ResponseCacheBuilder}.
+   * 
+   * @return {@link ResponseCacheBuilder}
+   */
+  public static ResponseCacheBuilder builder() {
+    return new ResponseCacheBuilder();
+  }
+
+  /**
+   * Checks if the response of given command may be cached. By default, READ BINARY, READ RECORD
+   * and GET DATA without secure messaging are cacheable. READ RECORD is only cacheable when it
+   * reads the record numbered by P1, because the current, first, last, next and previous records
+   * depend on the record pointer of the card.
+   * 
+   * @param command a CommandAPDU
+   * @return true if the response may be cached
+   */
+  public static boolean isReadCommand(CommandAPDU command) {
+    int cla = command.getCLA();
+    if ((cla & 0x80) != 0) return false;
+    boolean secureMessaging = (cla & 0x40) == 0 ? (cla & 0x0C) != 0 : (cla & 0x20) != 0;
+    if (secureMessaging) return false;
+
+    int ins = command.getINS();
+    if (ins == (INS.READ_RECORD & 0xFF)) {
+      return (command.getP2() & 0x07) == 0x04 && command.getP1() != 0;
+    }
+    return ins == (INS.READ_BINARY & 0xFF) || ins == (INS.GET_DATA & 0xFF);
+  }
+
+  boolean isCacheable(CommandAPDU command) {
+    return cacheable.test(command);
+  }
+
+  CommandAPDU getIdentityCommand() {
+    return identityCommand;
+  }
+
+  ResponseAPDU get(byte[] identity, byte[] context, CommandAPDU command) {
+    Key key = new Key(identity, context, command);
+    Entry entry;
+    synchronized (this) {
+      entry = entries.get(key);
+    }
+    if (entry == null) {
+      misses.increment();
+      return null;
+    }
+    hits.increment();
+    return new ResponseAPDU(entry.toBytes());
+  }
+
+  void put(byte[] identity, byte[] context, CommandAPDU command, ResponseAPDU response) {
+    Key key = new Key(identity, context, command);
+    Entry entry = new Entry(response.getBytes(), offHeap);
+    long size = key.bytes.length + entry.length + ENTRY_OVERHEAD;
+    if (size > maximumBytes) return;
+
+    synchronized (this) {
+      Entry previous = entries.put(key, entry);
+      bytes += size;
+      if (previous != null) bytes -= key.bytes.length + previous.length + ENTRY_OVERHEAD;
+
+      Iterator<Map.Entry<Key, Entry>> iter = entries.entrySet().iterator();
+      while (bytes > maximumBytes && iter.hasNext()) {
+        Map.Entry<Key, Entry> eldest = iter.next();
+        bytes -= eldest.getKey().bytes.length + eldest.getValue().length + ENTRY_OVERHEAD;
+        iter.remove();
+      }
+    }
+  }
+
+  /**
+   * Drops all entries of a card.
+   */
+  synchronized void invalidate(byte[] identity) {
+    Iterator<Map.Entry<Key, Entry>> iter = entries.entrySet().iterator();
+    while (iter.hasNext()) {
+      Map.Entry<Key, Entry> entry = iter.next();
+      if (entry.getKey().belongsTo(identity)) {
+        bytes -= entry.getKey().bytes.length + entry.getValue().length + ENTRY_OVERHEAD;
+        iter.remove();
+      }
+    }
+  }
+
+  /**
+   * Drops all entries.
+   */
+  public synchronized void invalidateAll() {
+    entries.clear();
+    bytes = 0;
+  }
+
+  /**
+   * Returns the number of cached responses.
+   * 
+   * @return the number of cached responses
+   */
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  /**
+   * Returns the estimated size of all entries in bytes.
+   * 
+   * @return the size in bytes
+   */
+  public synchronized long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * Returns the maximum size of all entries in bytes.
+   * 
+   * @return the maximum size in bytes
+   */
+  public long getMaximumBytes() {
+    return maximumBytes;
+  }
+
+  /**
+   * Checks if responses are stored in direct buffers outside of the Java heap.
+   * 
+   * @return true if responses are stored off-heap
+   */
+  public boolean isOffHeap() {
+    return offHeap;
+  }
+
+  /**
+   * Returns the number of commands answered by this cache.
+   * 
+   * @return the hit count
+   */
+  public long getHitCount() {
+    return hits.sum();
+  }
+
+  /**
+   * Returns the number of cacheable commands which were sent to a card.
+   * 
+   * @return the miss count
+   */
+  public long getMissCount() {
+    return misses.sum();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{size=" + size() + ", bytes=" + getBytes() + "}";
+  }
+
+  private static final class Key {
+
+    private final byte[] bytes;
+    private final int identityLength;
+    private final int hash;
+
+    private Key(byte[] identity, byte[] context, CommandAPDU command) {
+      byte[] commandBytes = command.getBytes();
+      bytes = new byte[8 + identity.length + context.length + commandBytes.length];
+      ByteBuffer.wrap(bytes).putInt(identity.length).put(identity).putInt(context.length)
+          .put(context).put(commandBytes);
+      identityLength = identity.length;
+      hash = Arrays.hashCode(bytes);
+    }
+
+    private boolean belongsTo(byte[] identity) {
+      return identityLength == identity.length
+          && Arrays.equals(bytes, 4, 4 + identityLength, identity, 0, identity.length);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && Arrays.equals(bytes, ((Key) o).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+  }
+
+  private static final class Entry {
+
+    private final byte[] heap;
+    private final ByteBuffer direct;
+    private final int length;
+
+    private Entry(byte[] response, boolean offHeap) {
+      length = response.length;
+      if (offHeap) {
+        heap = null;
+        direct = ByteBuffer.allocateDirect(length).put(response);
+      } else {
+        heap = response;
+        direct = null;
+      }
+    }
+
+    private byte[] toBytes() {
+      if (heap != null) return heap.clone();
+
+      byte[] response = new byte[length];
+      direct.duplicate().flip().get(response);
+      return response;
+    }
+
+  }
+
+  /**
+   * 
+   * {@link ResponseCacheBuilder} is designed to configure a {@link ResponseCache}.
+   *
+   */
+  public static class ResponseCacheBuilder {
+
+    private long maximumBytes = 1 << 20;
+    private boolean offHeap;
+    private Predicate<CommandAPDU> cacheable = ResponseCache::isReadCommand;
+    private CommandAPDU identityCommand = GET_UID;
+
+    /**
+     * Default constructor.
+     */
+    public ResponseCacheBuilder() {}
+
+    /**
+     * Sets the maximum size of all entries in bytes, default is 1 MiB.
+     * 
+     * @param maximumBytes the maximum size in bytes
+     * @return this {@link ResponseCacheBuilder}
+     */
+    public ResponseCacheBuilder setMaximumBytes(long maximumBytes) {
+      if (maximumBytes <= 0) throw new IllegalArgumentException("Maximum bytes must be positive");
+
+      this.maximumBytes = maximumBytes;
+      return this;
+    }
+
+    /**
+     * Sets whether responses are stored in direct buffers outside of the Java heap, default is
+     * false. It suits large responses such as certificates.
+     * 
+     * @param offHeap true to store responses off-heap
+     * @return this {@link ResponseCacheBuilder}
+     */
+    public ResponseCacheBuilder setOffHeap(boolean offHeap) {
+      this.offHeap = offHeap;
+      return this;
+    }
+
+    /**
+     * Sets the rule of cacheable commands, default is {@link ResponseCache#isReadCommand}.
+     * 
+     * @param cacheable a Predicate of CommandAPDU
+     * @return this {@link ResponseCacheBuilder}
+     */
+    public ResponseCacheBuilder setCacheable(Predicate<CommandAPDU> cacheable) {
+      this.cacheable = Objects.requireNonNull(cacheable);
+      return this;
+    }
+
+    /**
+     * Sets the command whose response identifies a card together with its ATR, default is
+     * {@link ResponseCache#GET_UID}.
+     * 
+     * @param identityCommand a CommandAPDU
+     * @return this {@link ResponseCacheBuilder}
+     */
+    public ResponseCacheBuilder setIdentityCommand(CommandAPDU identityCommand) {
+      this.identityCommand = Objects.requireNonNull(identityCommand);
+      return this;
+    }
+
+    /**
+     * Builds the {@link ResponseCache}.
+     * 
+     * @return {@link ResponseCache}
+     */
+    public ResponseCache build() {
+      return new ResponseCache(this);
+    }
+
+  }
+
+}
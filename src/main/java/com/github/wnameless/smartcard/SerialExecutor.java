@@ -0,0 +1,69 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ *
+ * {@link SerialExecutor} runs submitted tasks one at a time in submission order on top of another
+ * Executor.
+ *
+ */
+final class SerialExecutor implements Executor {
+
+  private final Queue<Runnable> tasks = new ArrayDeque<>();
+  private final Executor executor;
+  private Runnable active;
+
+  SerialExecutor(Executor executor) {
+    this.executor = executor;
+  }
+
+  @Override
+  public synchronized void execute(Runnable task) {
+    tasks.add(() -> {
+      try {
+        task.run();
+      } finally {
+        scheduleNext(false);
+      }
+    });
+    if (active == null) scheduleNext(true);
+  }
+
+  /**
+   * Submits the next task. Once the underlying Executor is shut down, the remaining tasks are
+   * dropped and the rejection only reaches the caller of {@link #execute(Runnable)}.
+   */
+  private synchronized void scheduleNext(boolean rethrow) {
+    if ((active = tasks.poll()) == null) return;
+    try {
+      executor.execute(active);
+    } catch (RejectedExecutionException e) {
+      active = null;
+      tasks.clear();
+      if (rethrow) throw e;
+    }
+  }
+
+}
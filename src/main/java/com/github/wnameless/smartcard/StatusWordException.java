@@ -0,0 +1,55 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import javax.smartcardio.CardException;
+
+/**
+ * 
+ * {@link StatusWordException} is thrown when a card answers a command with an unexpected status
+ * word. Unlike other CardExceptions, the card session is still usable.
+ * 
+ */
+public class StatusWordException extends CardException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final int sw;
+
+  /**
+   * Returns a {@link StatusWordException}.
+   * 
+   * @param message the detail message
+   * @param sw the status word
+   */
+  public StatusWordException(String message, int sw) {
+    super(String.format("%s: SW=%04X", message, sw));
+    this.sw = sw;
+  }
+
+  /**
+   * Returns the status word answered by the card.
+   * 
+   * @return the status word
+   */
+  public int getSW() {
+    return sw;
+  }
+
+}
@@ -0,0 +1,220 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import javax.smartcardio.CardTerminal;
+
+/**
+ * 
+ * {@link TerminalHealth} is a circuit breaker of card terminals. A card terminal which fails a
+ * number of times in a row is quarantined, so the sweeps of {@link CardReader} and
+ * {@link AutomatedReader} skip it instead of paying the PC/SC timeout again.
+ * <P>
+ * Once a quarantine expires, a single sweep probes the card terminal. A success makes it healthy
+ * again, while a failure doubles the quarantine up to the maximum quarantine.
+ * 
+ */
+public final class TerminalHealth {
+
+  private static final Logger logger = Logger.getLogger(TerminalHealth.class.getName());
+
+  private final ConcurrentMap<CardTerminal, State> states = new ConcurrentHashMap<>();
+  private volatile int failureThreshold = 3;
+  private volatile long initialQuarantineNanos = TimeUnit.SECONDS.toNanos(1);
+  private volatile long maximumQuarantineNanos = TimeUnit.MINUTES.toNanos(1);
+
+  TerminalHealth() {}
+
+  /**
+   * Checks if a sweep may read given CardTerminal. After a quarantine expires, it returns true only
+   * once until the probe is reported.
+   */
+  boolean allows(CardTerminal terminal) {
+    State state = states.get(terminal);
+    return state == null || state.allows(System.nanoTime());
+  }
+
+  void succeeded(CardTerminal terminal) {
+    State state = states.remove(terminal);
+    if (state != null && state.quarantined) {
+      logger.info("Card terminal " + terminal.getName() + " recovered from quarantine");
+    }
+  }
+
+  void failed(CardTerminal terminal) {
+    State state = states.computeIfAbsent(terminal, k -> new State());
+    if (state.failed(System.nanoTime(), failureThreshold, initialQuarantineNanos,
+        maximumQuarantineNanos)) {
+      logger.warning("Card terminal " + terminal.getName() + " is quarantined after "
+          + state.failures + " consecutive failures");
+    }
+  }
+
+  /**
+   * Sets the number of consecutive failures which quarantine a card terminal, default is 3.
+   * 
+   * @param failureThreshold a positive number of failures
+   */
+  public void setFailureThreshold(int failureThreshold) {
+    if (failureThreshold < 1) throw new IllegalArgumentException("Threshold must be positive");
+
+    this.failureThreshold = failureThreshold;
+  }
+
+  /**
+   * Returns the number of consecutive failures which quarantine a card terminal.
+   * 
+   * @return the failure threshold
+   */
+  public int getFailureThreshold() {
+    return failureThreshold;
+  }
+
+  /**
+   * Sets the first and the longest quarantine of a card terminal, default is 1 second and 1
+   * minute.
+   * 
+   * @param initial the first quarantine
+   * @param maximum the longest quarantine
+   * @param unit the TimeUnit of quarantines
+   */
+  public void setQuarantine(long initial, long maximum, TimeUnit unit) {
+    Objects.requireNonNull(unit);
+    if (initial <= 0) throw new IllegalArgumentException("Quarantine must be positive");
+    if (maximum < initial) {
+      throw new IllegalArgumentException("Maximum quarantine must not be less than initial");
+    }
+
+    initialQuarantineNanos = unit.toNanos(initial);
+    maximumQuarantineNanos = unit.toNanos(maximum);
+  }
+
+  /**
+   * Returns the first quarantine of a card terminal.
+   * 
+   * @param unit the TimeUnit of returned value
+   * @return the initial quarantine
+   */
+  public long getInitialQuarantine(TimeUnit unit) {
+    return unit.convert(initialQuarantineNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Returns the longest quarantine of a card terminal.
+   * 
+   * @param unit the TimeUnit of returned value
+   * @return the maximum quarantine
+   */
+  public long getMaximumQuarantine(TimeUnit unit) {
+    return unit.convert(maximumQuarantineNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Checks if given CardTerminal is quarantined.
+   * 
+   * @param terminal a CardTerminal
+   * @return true if quarantined, false otherwise
+   */
+  public boolean isQuarantined(CardTerminal terminal) {
+    State state = states.get(terminal);
+    return state != null && state.quarantined;
+  }
+
+  /**
+   * Returns the number of consecutive failures of given CardTerminal.
+   * 
+   * @param terminal a CardTerminal
+   * @return the number of consecutive failures
+   */
+  public int getConsecutiveFailures(CardTerminal terminal) {
+    State state = states.get(terminal);
+    return state == null ? 0 : state.failures;
+  }
+
+  /**
+   * Returns all quarantined card terminals.
+   * 
+   * @return List of CardTerminal
+   */
+  public List<CardTerminal> getQuarantinedTerminals() {
+    List<CardTerminal> terminals = new ArrayList<>();
+    for (Map.Entry<CardTerminal, State> entry : states.entrySet()) {
+      if (entry.getValue().quarantined) terminals.add(entry.getKey());
+    }
+    return terminals;
+  }
+
+  /**
+   * Makes given CardTerminal healthy immediately.
+   * 
+   * @param terminal a CardTerminal
+   */
+  public void reset(CardTerminal terminal) {
+    states.remove(terminal);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{quarantined=" + getQuarantinedTerminals().size() + "}";
+  }
+
+  private static final class State {
+
+    private volatile int failures;
+    private volatile boolean quarantined;
+    private long quarantineNanos;
+    private long until;
+
+    private synchronized boolean allows(long now) {
+      if (!quarantined) return true;
+      if (now - until < 0) return false;
+
+      until = now + quarantineNanos;
+      return true;
+    }
+
+    /**
+     * Counts a failure and returns true if it starts a quarantine.
+     */
+    private synchronized boolean failed(long now, int threshold, long initial, long maximum) {
+      failures++;
+      if (quarantined) {
+        quarantineNanos = Math.min(maximum, quarantineNanos * 2);
+        until = now + quarantineNanos;
+        return false;
+      }
+      if (failures < threshold) return false;
+
+      quarantined = true;
+      quarantineNanos = initial;
+      until = now + quarantineNanos;
+      return true;
+    }
+
+  }
+
+}
@@ -0,0 +1,40 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.util.List;
+import javax.smartcardio.CardTerminal;
+
+/**
+ * 
+ * {@link TerminalListener} is notified by a {@link TerminalRegistry} when card readers are attached
+ * or detached.
+ * 
+ */
+public interface TerminalListener {
+
+  /**
+   * Yields the attached and detached CardTerminals to the block.
+   * 
+   * @param attached a List of newly attached CardTerminal
+   * @param detached a List of detached CardTerminal
+   */
+  void terminalsChanged(List<CardTerminal> attached, List<CardTerminal> detached);
+
+}
@@ -0,0 +1,248 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 
+ * {@link TerminalMetrics} holds the metrics of a single card terminal which are recorded by
+ * {@link DefaultCardReaderMetrics}.
+ * 
+ */
+public final class TerminalMetrics implements TerminalMetricsMXBean {
+
+  private final String terminalName;
+  private final LatencyHistogram connectLatency = new LatencyHistogram();
+  private final LatencyHistogram transmitLatency = new LatencyHistogram();
+  private final LatencyHistogram queueWait = new LatencyHistogram();
+  private final LongAccumulator maxQueueDepth = new LongAccumulator(Math::max, 0);
+  private final AtomicReferenceArray<LatencyHistogram> transmitLatencyByINS =
+      new AtomicReferenceArray<>(256);
+  // Status word counts indexed by SW1, each holding the counts indexed by SW2
+  private final AtomicReferenceArray<AtomicLongArray> statusWords =
+      new AtomicReferenceArray<>(256);
+  private final LongAdder bytesSent = new LongAdder();
+  private final LongAdder bytesReceived = new LongAdder();
+  private final LongAdder errors = new LongAdder();
+
+  TerminalMetrics(String terminalName) {
+    this.terminalName = terminalName;
+  }
+
+  void recordConnect(long nanos) {
+    connectLatency.record(nanos);
+  }
+
+  void recordSchedule(int queueDepth, long nanos) {
+    queueWait.record(nanos);
+    maxQueueDepth.accumulate(queueDepth);
+  }
+
+  void recordTransmit(int ins, int sent, int received, int sw, long nanos) {
+    transmitLatency.record(nanos);
+    LatencyHistogram histogram = transmitLatencyByINS.get(ins & 0xFF);
+    if (histogram == null) {
+      transmitLatencyByINS.compareAndSet(ins & 0xFF, null, new LatencyHistogram());
+      histogram = transmitLatencyByINS.get(ins & 0xFF);
+    }
+    histogram.record(nanos);
+    bytesSent.add(sent);
+    bytesReceived.add(received);
+    AtomicLongArray counts = statusWords.get((sw >> 8) & 0xFF);
+    if (counts == null) {
+      statusWords.compareAndSet((sw >> 8) & 0xFF, null, new AtomicLongArray(256));
+      counts = statusWords.get((sw >> 8) & 0xFF);
+    }
+    counts.incrementAndGet(sw & 0xFF);
+  }
+
+  void recordError() {
+    errors.increment();
+  }
+
+  /**
+   * Returns the histogram of connect latencies.
+   * 
+   * @return {@link LatencyHistogram}
+   */
+  public LatencyHistogram getConnectLatency() {
+    return connectLatency;
+  }
+
+  /**
+   * Returns the histogram of all transmit latencies.
+   * 
+   * @return {@link LatencyHistogram}
+   */
+  public LatencyHistogram getTransmitLatency() {
+    return transmitLatency;
+  }
+
+  /**
+   * Returns the histogram of the time scripts waited for the card terminal.
+   * 
+   * @return {@link LatencyHistogram}
+   */
+  public LatencyHistogram getQueueWait() {
+    return queueWait;
+  }
+
+  /**
+   * Returns the histogram of transmit latencies of commands with given INS byte.
+   * 
+   * @param ins the INS byte
+   * @return {@link LatencyHistogram}, or null if no such command is transmitted
+   */
+  public LatencyHistogram getTransmitLatency(int ins) {
+    return transmitLatencyByINS.get(ins & 0xFF);
+  }
+
+  /**
+   * Returns the number of responses with given status word.
+   * 
+   * @param sw the status word
+   * @return the number of responses
+   */
+  public long getStatusWordCount(int sw) {
+    if ((sw & ~0xFFFF) != 0) return 0;
+
+    AtomicLongArray counts = statusWords.get(sw >> 8);
+    return counts == null ? 0 : counts.get(sw & 0xFF);
+  }
+
+  @Override
+  public String getTerminalName() {
+    return terminalName;
+  }
+
+  @Override
+  public long getConnectCount() {
+    return connectLatency.getCount();
+  }
+
+  @Override
+  public double getConnectLatencyMean() {
+    return connectLatency.getMean() / 1000;
+  }
+
+  @Override
+  public long getConnectLatencyMax() {
+    return micros(connectLatency.getMax());
+  }
+
+  @Override
+  public long getTransmitCount() {
+    return transmitLatency.getCount();
+  }
+
+  @Override
+  public double getTransmitLatencyMean() {
+    return transmitLatency.getMean() / 1000;
+  }
+
+  @Override
+  public long getTransmitLatency50thPercentile() {
+    return micros(transmitLatency.getValueAtPercentile(50));
+  }
+
+  @Override
+  public long getTransmitLatency99thPercentile() {
+    return micros(transmitLatency.getValueAtPercentile(99));
+  }
+
+  @Override
+  public long getTransmitLatencyMax() {
+    return micros(transmitLatency.getMax());
+  }
+
+  @Override
+  public Map<String, Long> getTransmitLatency99thPercentileByINS() {
+    Map<String, Long> latencies = new TreeMap<>();
+    for (int ins = 0; ins < 256; ins++) {
+      LatencyHistogram histogram = transmitLatencyByINS.get(ins);
+      if (histogram != null) {
+        latencies.put(String.format("%02X", ins), micros(histogram.getValueAtPercentile(99)));
+      }
+    }
+    return latencies;
+  }
+
+  @Override
+  public double getQueueWaitMean() {
+    return queueWait.getMean() / 1000;
+  }
+
+  @Override
+  public long getQueueWait99thPercentile() {
+    return micros(queueWait.getValueAtPercentile(99));
+  }
+
+  @Override
+  public long getMaxQueueDepth() {
+    return maxQueueDepth.get();
+  }
+
+  @Override
+  public long getBytesSent() {
+    return bytesSent.sum();
+  }
+
+  @Override
+  public long getBytesReceived() {
+    return bytesReceived.sum();
+  }
+
+  @Override
+  public Map<String, Long> getStatusWordCounts() {
+    Map<String, Long> counts = new TreeMap<>();
+    for (int sw1 = 0; sw1 < 256; sw1++) {
+      AtomicLongArray sw2Counts = statusWords.get(sw1);
+      if (sw2Counts == null) continue;
+
+      for (int sw2 = 0; sw2 < 256; sw2++) {
+        long count = sw2Counts.get(sw2);
+        if (count > 0) counts.put(String.format("%02X%02X", sw1, sw2), count);
+      }
+    }
+    return counts;
+  }
+
+  @Override
+  public long getErrorCount() {
+    return errors.sum();
+  }
+
+  private static long micros(long nanos) {
+    return TimeUnit.NANOSECONDS.toMicros(nanos);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{" + terminalName + ", transmit=" + transmitLatency
+        + ", errors=" + getErrorCount() + "}";
+  }
+
+}
@@ -0,0 +1,150 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.util.Map;
+
+/**
+ * 
+ * {@link TerminalMetricsMXBean} exports the {@link TerminalMetrics} of a card terminal by JMX. All
+ * latencies are in microseconds.
+ * 
+ */
+public interface TerminalMetricsMXBean {
+
+  /**
+   * Returns the name of the card terminal.
+   * 
+   * @return the card terminal name
+   */
+  String getTerminalName();
+
+  /**
+   * Returns the number of connects to the card.
+   * 
+   * @return the number of connects
+   */
+  long getConnectCount();
+
+  /**
+   * Returns the mean connect latency.
+   * 
+   * @return the mean connect latency in microseconds
+   */
+  double getConnectLatencyMean();
+
+  /**
+   * Returns the maximum connect latency.
+   * 
+   * @return the maximum connect latency in microseconds
+   */
+  long getConnectLatencyMax();
+
+  /**
+   * Returns the number of transmitted commands.
+   * 
+   * @return the number of transmitted commands
+   */
+  long getTransmitCount();
+
+  /**
+   * Returns the mean transmit latency.
+   * 
+   * @return the mean transmit latency in microseconds
+   */
+  double getTransmitLatencyMean();
+
+  /**
+   * Returns the median transmit latency.
+   * 
+   * @return the 50th percentile of transmit latencies in microseconds
+   */
+  long getTransmitLatency50thPercentile();
+
+  /**
+   * Returns the 99th percentile of transmit latencies.
+   * 
+   * @return the 99th percentile of transmit latencies in microseconds
+   */
+  long getTransmitLatency99thPercentile();
+
+  /**
+   * Returns the maximum transmit latency.
+   * 
+   * @return the maximum transmit latency in microseconds
+   */
+  long getTransmitLatencyMax();
+
+  /**
+   * Returns the 99th percentile of transmit latencies keyed by the hex INS byte, such as B0.
+   * 
+   * @return Map of the hex INS byte to the 99th percentile in microseconds
+   */
+  Map<String, Long> getTransmitLatency99thPercentileByINS();
+
+  /**
+   * Returns the mean time scripts waited for the card terminal.
+   * 
+   * @return the mean queue wait in microseconds
+   */
+  double getQueueWaitMean();
+
+  /**
+   * Returns the 99th percentile of the time scripts waited for the card terminal.
+   * 
+   * @return the 99th percentile of queue waits in microseconds
+   */
+  long getQueueWait99thPercentile();
+
+  /**
+   * Returns the largest number of scripts which waited for the card terminal at once.
+   * 
+   * @return the maximum queue depth
+   */
+  long getMaxQueueDepth();
+
+  /**
+   * Returns the number of command bytes sent.
+   * 
+   * @return the number of bytes sent
+   */
+  long getBytesSent();
+
+  /**
+   * Returns the number of response bytes received, including status words.
+   * 
+   * @return the number of bytes received
+   */
+  long getBytesReceived();
+
+  /**
+   * Returns the number of responses keyed by the hex status word, such as 9000.
+   * 
+   * @return Map of the hex status word to the number of responses
+   */
+  Map<String, Long> getStatusWordCounts();
+
+  /**
+   * Returns the number of failures on the card terminal, such as failed reads and timeouts.
+   * 
+   * @return the number of errors
+   */
+  long getErrorCount();
+
+}
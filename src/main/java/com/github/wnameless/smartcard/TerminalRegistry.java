@@ -0,0 +1,181 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CardTerminals;
+
+/**
+ *
+ * {@link TerminalRegistry} caches the card terminals of the system, so the PC/SC reader enumeration
+ * is not performed on every read.
+ * <P>
+ * The cached list is refreshed when it is older than the time to live, or when it is invalidated
+ * because a card reader is detected as detached.
+ *
+ */
+public final class TerminalRegistry {
+
+  private static final Logger logger = Logger.getLogger(TerminalRegistry.class.getName());
+
+  private final Supplier<CardTerminals> terminals;
+  private final List<TerminalListener> listeners = new CopyOnWriteArrayList<>();
+  private volatile List<CardTerminal> snapshot = emptyList();
+  private volatile long refreshedAt;
+  private volatile boolean valid = false;
+  private volatile long timeToLiveNanos = TimeUnit.SECONDS.toNanos(5);
+
+  TerminalRegistry(Supplier<CardTerminals> terminals) {
+    this.terminals = terminals;
+  }
+
+  /**
+   * Returns all card terminals of the system, refreshes the cached list first if it is stale.
+   *
+   * @return List of CardTerminal
+   * @throws CardException if the card terminals can't be listed
+   */
+  public List<CardTerminal> getTerminals() throws CardException {
+    if (isFresh()) return snapshot;
+
+    synchronized (this) {
+      return isFresh() ? snapshot : refresh();
+    }
+  }
+
+  /**
+   * Returns the cached card terminals without refreshing them.
+   *
+   * @return List of CardTerminal
+   */
+  public List<CardTerminal> getSnapshot() {
+    return snapshot;
+  }
+
+  /**
+   * Lists the card terminals of the system again and notifies the {@link TerminalListener}s if any
+   * card reader is attached or detached.
+   *
+   * @return List of CardTerminal
+   * @throws CardException if the card terminals can't be listed
+   */
+  public synchronized List<CardTerminal> refresh() throws CardException {
+    List<CardTerminal> current = unmodifiableList(new ArrayList<>(terminals.get().list()));
+    List<CardTerminal> previous = snapshot;
+    snapshot = current;
+    refreshedAt = System.nanoTime();
+    valid = true;
+
+    Map<String, CardTerminal> detached = new LinkedHashMap<>();
+    for (CardTerminal terminal : previous) {
+      detached.put(terminal.getName(), terminal);
+    }
+    List<CardTerminal> attached = new ArrayList<>();
+    for (CardTerminal terminal : current) {
+      if (detached.remove(terminal.getName()) == null) attached.add(terminal);
+    }
+    if (!attached.isEmpty() || !detached.isEmpty()) {
+      fire(attached, new ArrayList<>(detached.values()));
+    }
+    return current;
+  }
+
+  /**
+   * Marks the cached card terminals as stale, so they are listed again on next use.
+   */
+  public void invalidate() {
+    valid = false;
+  }
+
+  /**
+   * Sets how long the cached card terminals are used before they are listed again, default is 5
+   * seconds. A zero time to live disables the cache.
+   *
+   * @param timeToLive the time to live
+   * @param unit the TimeUnit of timeToLive
+   */
+  public void setTimeToLive(long timeToLive, TimeUnit unit) {
+    Objects.requireNonNull(unit);
+    if (timeToLive < 0) throw new IllegalArgumentException("Time to live must not be negative");
+
+    timeToLiveNanos = unit.toNanos(timeToLive);
+  }
+
+  /**
+   * Returns how long the cached card terminals are used before they are listed again.
+   *
+   * @param unit the TimeUnit of returned value
+   * @return the time to live
+   */
+  public long getTimeToLive(TimeUnit unit) {
+    return unit.convert(timeToLiveNanos, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Adds a {@link TerminalListener}.
+   *
+   * @param listener a {@link TerminalListener}
+   */
+  public void addListener(TerminalListener listener) {
+    listeners.add(Objects.requireNonNull(listener));
+  }
+
+  /**
+   * Removes a {@link TerminalListener}.
+   *
+   * @param listener a {@link TerminalListener}
+   */
+  public void removeListener(TerminalListener listener) {
+    listeners.remove(Objects.requireNonNull(listener));
+  }
+
+  private boolean isFresh() {
+    return valid && System.nanoTime() - refreshedAt < timeToLiveNanos;
+  }
+
+  private void fire(List<CardTerminal> attached, List<CardTerminal> detached) {
+    for (TerminalListener listener : listeners) {
+      try {
+        listener.terminalsChanged(unmodifiableList(attached), unmodifiableList(detached));
+      } catch (RuntimeException e) {
+        logger.log(Level.SEVERE, "TerminalListener failed on card terminals attached: "
+            + attached + ", detached: " + detached, e);
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{" + snapshot + "}";
+  }
+
+}
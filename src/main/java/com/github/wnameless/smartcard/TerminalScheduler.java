@@ -0,0 +1,278 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.util.Comparator;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+
+/**
+ * 
+ * {@link TerminalScheduler} serializes the command scripts of a {@link CardReader} per card
+ * terminal, while different card terminals run in parallel. Waiting scripts are queued by priority
+ * and then in FIFO order, but the oldest waiting script is overtaken by at most
+ * {@value #MAX_BYPASS} scripts, so a script of a low priority is never starved. Each script holds
+ * exclusive access to the card by Card#beginExclusive and Card#endExclusive unless it is disabled.
+ * 
+ */
+public final class TerminalScheduler {
+
+  /**
+   * The priority of scripts which are not given any.
+   */
+  public static final int NORMAL_PRIORITY = 0;
+
+  /**
+   * The number of times the oldest waiting script can be overtaken by scripts of a higher priority.
+   */
+  public static final int MAX_BYPASS = 16;
+
+  private static final Comparator<Ticket> ORDER =
+      Comparator.comparingInt((Ticket ticket) -> -ticket.priority)
+          .thenComparingLong(ticket -> ticket.sequence);
+
+  private final ConcurrentMap<CardTerminal, Lane> lanes = new ConcurrentHashMap<>();
+  private final AtomicLong sequence = new AtomicLong();
+  private volatile boolean exclusive = true;
+  private volatile CardReaderMetrics metrics = CardReaderMetrics.NONE;
+
+  TerminalScheduler() {}
+
+  void setMetrics(CardReaderMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Blocks until the caller owns the lane of given CardTerminal.
+   */
+  Ticket acquire(CardTerminal terminal, int priority) throws CardException {
+    CountDownLatch granted = new CountDownLatch(1);
+    Ticket ticket = submit(terminal, priority, t -> granted.countDown());
+    try {
+      granted.await();
+      return ticket;
+    } catch (InterruptedException e) {
+      if (!cancel(ticket)) release(ticket);
+      Thread.currentThread().interrupt();
+      throw new CardException("Interrupted", e);
+    }
+  }
+
+  /**
+   * Queues a ticket on the lane of given CardTerminal. The action is called once the ticket owns
+   * the lane, which must be given back by {@link #release(Ticket)}.
+   */
+  Ticket submit(CardTerminal terminal, int priority, Consumer<Ticket> onGrant) {
+    while (true) {
+      Lane lane = lanes.computeIfAbsent(terminal, Lane::new);
+      Ticket ticket = new Ticket(lane, priority, sequence.getAndIncrement(), onGrant);
+      // A removed lane is replaced by a new one
+      if (lane.submit(ticket)) return ticket;
+    }
+  }
+
+  /**
+   * Removes the lane of a detached CardTerminal once no script is running or waiting on it.
+   */
+  void remove(CardTerminal terminal) {
+    Lane lane = lanes.get(terminal);
+    if (lane != null) lane.detach();
+  }
+
+  /**
+   * Removes a ticket which does not own its lane yet.
+   * 
+   * @return true if the ticket was still queued
+   */
+  boolean cancel(Ticket ticket) {
+    return ticket.lane.cancel(ticket);
+  }
+
+  void release(Ticket ticket) {
+    ticket.lane.release();
+  }
+
+  /**
+   * Sets whether each script holds exclusive access to the card, default is true.
+   * 
+   * @param exclusive true to call Card#beginExclusive and Card#endExclusive around each script
+   */
+  public void setExclusive(boolean exclusive) {
+    this.exclusive = exclusive;
+  }
+
+  /**
+   * Checks if each script holds exclusive access to the card.
+   * 
+   * @return true if each script holds exclusive access to the card
+   */
+  public boolean isExclusive() {
+    return exclusive;
+  }
+
+  /**
+   * Returns the number of scripts waiting for given CardTerminal.
+   * 
+   * @param terminal a CardTerminal
+   * @return the number of waiting scripts
+   */
+  public int getQueueDepth(CardTerminal terminal) {
+    Lane lane = lanes.get(Objects.requireNonNull(terminal));
+    return lane == null ? 0 : lane.depth();
+  }
+
+  /**
+   * Checks if a script is running on given CardTerminal.
+   * 
+   * @param terminal a CardTerminal
+   * @return true if a script is running
+   */
+  public boolean isBusy(CardTerminal terminal) {
+    Lane lane = lanes.get(Objects.requireNonNull(terminal));
+    return lane != null && lane.isBusy();
+  }
+
+  int getLaneCount() {
+    return lanes.size();
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{lanes=" + lanes.size() + "}";
+  }
+
+  static final class Ticket {
+
+    private final Lane lane;
+    private final int priority;
+    private final long sequence;
+    private final Consumer<Ticket> onGrant;
+    private final long submitted = System.nanoTime();
+    private int queueDepth;
+
+    private Ticket(Lane lane, int priority, long sequence, Consumer<Ticket> onGrant) {
+      this.lane = lane;
+      this.priority = priority;
+      this.sequence = sequence;
+      this.onGrant = onGrant;
+    }
+
+  }
+
+  private final class Lane {
+
+    private final CardTerminal terminal;
+    private final PriorityQueue<Ticket> queue = new PriorityQueue<>(ORDER);
+    private boolean busy;
+    private int bypassed;
+    private boolean detached;
+    private boolean removed;
+
+    private Lane(CardTerminal terminal) {
+      this.terminal = terminal;
+    }
+
+    private boolean submit(Ticket ticket) {
+      Ticket next;
+      synchronized (this) {
+        if (removed) return false;
+
+        queue.add(ticket);
+        next = busy ? null : next();
+      }
+      grant(next);
+      return true;
+    }
+
+    private synchronized boolean cancel(Ticket ticket) {
+      return queue.remove(ticket);
+    }
+
+    private void release() {
+      Ticket next;
+      synchronized (this) {
+        busy = false;
+        next = next();
+        if (next == null && detached) removeIdle();
+      }
+      grant(next);
+    }
+
+    private synchronized void detach() {
+      detached = true;
+      if (!busy && queue.isEmpty()) removeIdle();
+    }
+
+    private void removeIdle() {
+      removed = true;
+      lanes.remove(terminal, this);
+    }
+
+    private synchronized int depth() {
+      return queue.size();
+    }
+
+    private synchronized boolean isBusy() {
+      return busy;
+    }
+
+    /**
+     * Takes the ticket which owns the lane next, must be called while holding the lock of the
+     * lane.
+     */
+    private Ticket next() {
+      Ticket ticket = queue.peek();
+      if (ticket == null) return null;
+
+      Ticket oldest = ticket;
+      for (Ticket waiting : queue) {
+        if (waiting.sequence < oldest.sequence) oldest = waiting;
+      }
+      if (ticket != oldest) {
+        if (bypassed < MAX_BYPASS) bypassed++;
+        else ticket = oldest;
+      }
+      if (ticket == oldest) bypassed = 0;
+
+      queue.remove(ticket);
+      ticket.queueDepth = queue.size();
+      busy = true;
+      return ticket;
+    }
+
+    /**
+     * Hands the lane to given ticket, must be called without holding the lock of the lane.
+     */
+    private void grant(Ticket ticket) {
+      if (ticket == null) return;
+
+      metrics.scheduled(terminal, ticket.queueDepth, System.nanoTime() - ticket.submitted);
+      ticket.onGrant.accept(ticket);
+    }
+
+  }
+
+}
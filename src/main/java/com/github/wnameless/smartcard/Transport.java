@@ -0,0 +1,763 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.smartcardio.CardChannel;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+import net.sf.rubycollect4j.util.ByteUtils;
+
+/**
+ *
+ * {@link Transport} transmits command scripts over a CardChannel. It resends a command with the
+ * exact Le on 6Cxx, collects all remaining data by GET RESPONSE on 61xx and stops a script early on
+ * configured status words.
+ *
+ */
+final class Transport {
+
+  private static final Logger logger = Logger.getLogger(Transport.class.getName());
+
+  private static final int MAX_RESPONSE_LENGTH = 1 << 20;
+
+  /**
+   * The space CardChannel#transmit(ByteBuffer, ByteBuffer) requires in the response buffer.
+   */
+  static final int MIN_RESPONSE_SPACE = 258;
+
+  private volatile boolean autoGetResponse = true;
+  private volatile boolean selectElision;
+  private volatile ResponseCache responseCache;
+  private volatile ExchangeRecorder exchangeRecorder;
+  private volatile CardProfileRegistry profiles = new CardProfileRegistry();
+  private volatile int[] stopStatusWords = new int[0];
+  private volatile CardReaderMetrics metrics = CardReaderMetrics.NONE;
+
+  boolean isAutoGetResponse() {
+    return autoGetResponse;
+  }
+
+  void setAutoGetResponse(boolean autoGetResponse) {
+    this.autoGetResponse = autoGetResponse;
+  }
+
+  boolean isSelectElision() {
+    return selectElision;
+  }
+
+  void setSelectElision(boolean selectElision) {
+    this.selectElision = selectElision;
+  }
+
+  ResponseCache getResponseCache() {
+    return responseCache;
+  }
+
+  void setResponseCache(ResponseCache responseCache) {
+    this.responseCache = responseCache;
+  }
+
+  ExchangeRecorder getExchangeRecorder() {
+    return exchangeRecorder;
+  }
+
+  void setExchangeRecorder(ExchangeRecorder exchangeRecorder) {
+    this.exchangeRecorder = exchangeRecorder;
+  }
+
+  void setProfiles(CardProfileRegistry profiles) {
+    this.profiles = profiles;
+  }
+
+  /**
+   * Returns whether 61xx and 6Cxx are handled transparently for the card of given session, the
+   * {@link CardProfile} of the card overrides the setting of this transport.
+   */
+  private boolean isAutoGetResponse(CardSession session) {
+    Boolean profiled = session.getProfile().getAutoGetResponse();
+    return profiled == null ? autoGetResponse : profiled;
+  }
+
+  int[] getStopStatusWords() {
+    return stopStatusWords.clone();
+  }
+
+  void setStopStatusWords(int... statusWords) {
+    int[] sorted = statusWords.clone();
+    for (int sw : sorted) {
+      if (sw < 0 || sw > 0xFFFF) throw new IllegalArgumentException("Invalid status word: " + sw);
+    }
+    Arrays.sort(sorted);
+    stopStatusWords = sorted;
+  }
+
+  CardReaderMetrics getMetrics() {
+    return metrics;
+  }
+
+  void setMetrics(CardReaderMetrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Transmits given commands in order and adds their responses, stops after the first response
+   * with a stop status word.
+   */
+  void transmit(CardSession session, CardChannel channel, List<CommandAPDU> commands,
+      List<ResponseAPDU> responses) throws CardException {
+    int[] stops = stopStatusWords;
+    ResponseCache cache = responseCache;
+    byte[] identity = cache == null ? null : identify(session, cache);
+    for (CommandAPDU command : commands) {
+      ResponseAPDU response = transmit(session, channel, command, cache, identity);
+      responses.add(response);
+      if (stops.length > 0 && Arrays.binarySearch(stops, response.getSW()) >= 0) break;
+    }
+  }
+
+  /**
+   * Transmits the steps of a {@link CommandScript} in order and adds their responses. A step is
+   * skipped if its condition doesn't accept the status word of the last response, and the script
+   * stops after a response with a stop status word of the step or of this transport.
+   */
+  void transmit(CardSession session, CardChannel channel, CommandScript script,
+      List<ResponseAPDU> responses) throws CardException {
+    int[] stops = stopStatusWords;
+    ResponseCache cache = responseCache;
+    byte[] identity = cache == null ? null : identify(session, cache);
+    int sw = -1;
+    for (int step = 0; step < script.size(); step++) {
+      if (!script.accepts(step, sw)) continue;
+
+      ResponseAPDU response = transmit(session, channel, script.getCommand(step), cache, identity);
+      responses.add(response);
+      sw = response.getSW();
+      if (script.stopsOn(step, sw)) break;
+      if (stops.length > 0 && Arrays.binarySearch(stops, sw) >= 0) break;
+    }
+  }
+
+  private ResponseAPDU transmit(CardSession session, CardChannel channel, CommandAPDU command,
+      ResponseCache cache, byte[] identity) throws CardException {
+    int channelNumber = channel.getChannelNumber();
+    boolean select = command.getINS() == (INS.SELECT_FILE & 0xFF);
+    ResponseAPDU response = null;
+    if (select && selectElision) response = session.getSelection(channelNumber, command);
+    if (response != null) return response;
+
+    byte[] context = null;
+    if (identity != null && cache.isCacheable(command)) {
+      context = session.getCacheContext(channelNumber, command);
+      if (context != null) response = cache.get(identity, context, command);
+      if (response != null) {
+        session.updateCacheContext(channelNumber, command, 0x9000);
+        return response;
+      }
+    }
+
+    response = exchange(session, channel, command);
+    if (isAutoGetResponse(session)) {
+      if (response.getSW1() == 0x6C) {
+        response = exchange(session, channel, withNe(command, response.getSW2()));
+      }
+      if (response.getSW1() == 0x61) {
+        response = getResponse(session, channel, command, response, session.getChainBuffer());
+      }
+    }
+    if (select) {
+      session.setSelection(channelNumber, command, response);
+    } else {
+      session.invalidateFileSelection(channelNumber);
+    }
+    session.updateCacheContext(channelNumber, command, response.getSW());
+    if (context != null && response.getSW() == 0x9000) {
+      cache.put(identity, context, command, response);
+    } else if (identity != null && isWrite(command.getINS())) {
+      cache.invalidate(identity);
+    }
+    return response;
+  }
+
+  /**
+   * Transmits a command from a ByteBuffer and puts its response into another ByteBuffer, handles
+   * 61xx and 6Cxx in place without building any CommandAPDU or ResponseAPDU. The data of all GET
+   * RESPONSE are appended to the response buffer, and the status word of the last response is
+   * returned. Once less than {@link #MIN_RESPONSE_SPACE} bytes are left in the response buffer,
+   * GET RESPONSE is received into the buffer of the session and copied over.
+   */
+  int transmit(CardSession session, CardChannel channel, ByteBuffer command, ByteBuffer response)
+      throws CardException {
+    int start = command.position();
+    int cla = command.get(start) & 0xFF;
+    int ins = command.get(start + 1) & 0xFF;
+    int sw = exchange(session, channel, command, response, ins);
+    if (isAutoGetResponse(session)) {
+      if (sw >> 8 == 0x6C && hasShortLe(command, start)) {
+        ByteBuffer retry = session.getCommandBuffer();
+        retry.clear();
+        retry.put(command.position(start));
+        retry.put(retry.position() - 1, (byte) sw).flip();
+        response.position(response.position() - 2);
+        sw = exchange(session, channel, retry, response, ins);
+      }
+      ByteBuffer getResponse = session.getCommandBuffer();
+      while (sw >> 8 == 0x61) {
+        getResponse.clear();
+        getResponse.put((byte) getResponseCLA(cla)).put(INS.GET_RESPONSE).putShort((short) 0)
+            .put((byte) sw).flip();
+        response.position(response.position() - 2);
+        sw = exchangeChunk(session, channel, getResponse, response, INS.GET_RESPONSE & 0xFF);
+      }
+    }
+
+    int channelNumber = channel.getChannelNumber();
+    session.clearSelection(channelNumber);
+    session.clearCacheContext(channelNumber);
+    if (isWrite(ins)) invalidateCache(session);
+    return sw;
+  }
+
+  /**
+   * Exchanges a short command like {@link #exchange(CardSession, CardChannel, ByteBuffer,
+   * ByteBuffer, int)}, but receives the response into the buffer of the session if the response
+   * buffer has too little space left for CardChannel#transmit(ByteBuffer, ByteBuffer).
+   */
+  private int exchangeChunk(CardSession session, CardChannel channel, ByteBuffer command,
+      ByteBuffer response, int ins) throws CardException {
+    if (response.remaining() >= MIN_RESPONSE_SPACE) {
+      return exchange(session, channel, command, response, ins);
+    }
+
+    ByteBuffer chunk = session.getResponseBuffer();
+    chunk.clear();
+    int sw = exchange(session, channel, command, chunk, ins);
+    chunk.flip();
+    if (chunk.remaining() > response.remaining()) {
+      throw new CardException("Response buffer is too small, " + response.remaining()
+          + " bytes left for a response of " + chunk.remaining() + " bytes");
+    }
+    response.put(chunk);
+    return sw;
+  }
+
+  /**
+   * Checks if an encoded command ends with a short Le which can be replaced on 6Cxx.
+   */
+  private static boolean hasShortLe(ByteBuffer command, int start) {
+    int length = command.limit() - start;
+    if (length == 5) return true;
+    int lc = length > 5 ? command.get(start + 4) & 0xFF : 0;
+    return lc > 0 && length == 6 + lc;
+  }
+
+  /**
+   * Returns the logical channel on which given application is selected, opens and selects it on a
+   * new logical channel if needed. If the card refuses to open a logical channel, the application
+   * is selected on the basic channel instead. A kept channel whose last SELECT is not the one of
+   * the application, such as after a script selected another application or file on it, is
+   * selected again.
+   */
+  CardChannel openApplication(CardSession session, byte[] aid) throws CardException {
+    String key = ByteUtils.toHexString(aid);
+    CardChannel channel = session.getApplicationChannel(key);
+    if (channel != null) {
+      if (session.getSelection(channel.getChannelNumber(), selectCommand(aid)) == null) {
+        select(session, channel, aid);
+      }
+      return channel;
+    }
+
+    if (session.isLogicalChannelSupported()) {
+      try {
+        channel = session.getCard().openLogicalChannel();
+      } catch (CardException e) {
+        logger.log(Level.FINE, "Logical channel is not available on " + session.getTerminal(), e);
+        session.setLogicalChannelSupported(false);
+      }
+    }
+    if (channel == null) {
+      select(session, session.getChannel(), aid);
+      return session.getChannel();
+    }
+
+    try {
+      select(session, channel, aid);
+    } catch (CardException e) {
+      closeQuietly(channel);
+      throw e;
+    }
+    session.putApplicationChannel(key, channel);
+    return channel;
+  }
+
+  private void select(CardSession session, CardChannel channel, byte[] aid)
+      throws CardException {
+    List<ResponseAPDU> responses = new ArrayList<>(1);
+    transmit(session, channel, Collections.singletonList(selectCommand(aid)), responses);
+    int sw = responses.get(0).getSW();
+    int sw1 = sw >> 8;
+    if (sw != 0x9000 && sw1 != 0x62 && sw1 != 0x63) {
+      throw new StatusWordException("SELECT " + ByteUtils.toHexString(aid) + " failed", sw);
+    }
+  }
+
+  private static CommandAPDU selectCommand(byte[] aid) {
+    return new CommandAPDU(0x00, INS.SELECT_FILE, 0x04, 0x00, aid, 256);
+  }
+
+  private static void closeQuietly(CardChannel channel) {
+    try {
+      channel.close();
+    } catch (CardException | IllegalStateException e) {
+      logger.log(Level.FINE, "Failed to close logical channel " + channel.getChannelNumber(), e);
+    }
+  }
+
+  /**
+   * Selects an elementary file and streams its content by READ BINARY in the largest chunks the
+   * card accepts.
+   */
+  void readBinary(CardSession session, int fileId, int length, OutputStream out)
+      throws CardException, IOException {
+    CardChannel channel = session.getChannel();
+    selectFile(session, channel, fileId);
+
+    // One command buffer is reused for all chunks, only P1, P2 and Le are rewritten
+    int maximumLe = session.getProfile().getMaximumResponseLength();
+    byte[] command = new byte[7];
+    command[1] = INS.READ_BINARY;
+    int offset = 0;
+    while (offset < length) {
+      if (offset > 0x7FFF) throw new CardException("Offset beyond 7FFF is not supported");
+
+      int remaining = length - offset;
+      boolean extended = remaining > 256 && maximumLe > 256 && isExtendedLengthAllowed(session);
+      int le = Math.min(remaining, Math.min(maximumLe, extended ? 65535 : 256));
+      ResponseAPDU response =
+          exchange(session, channel, readBinary(command, offset, le, extended));
+
+      int sw = response.getSW();
+      if (sw == 0x6700 && extended) {
+        learnExtendedLength(session, false);
+        continue;
+      }
+      if (response.getSW1() == 0x6C) {
+        response =
+            exchange(session, channel, readBinary(command, offset, ne(response.getSW2()), false));
+        sw = response.getSW();
+      }
+      // Wrong offset past the first chunk means the file ended on a chunk boundary
+      if (sw == 0x6B00 && offset > 0) break;
+      if (sw != 0x9000 && sw != 0x6282) throw new StatusWordException("READ BINARY failed", sw);
+      if (extended && session.getExtendedLength() == null) learnExtendedLength(session, true);
+
+      byte[] data = response.getData();
+      out.write(data, 0, Math.min(data.length, remaining));
+      offset += data.length;
+      if (sw == 0x6282 || data.length == 0) break;
+    }
+  }
+
+  /**
+   * Selects an elementary file and writes a payload to it by UPDATE BINARY, WRITE BINARY, WRITE
+   * RECORD or APPEND RECORD. Binary writes are split into the largest chunks the card accepts at
+   * increasing offsets, while a record is sent as one command, in extended length or by command
+   * chaining if it doesn't fit a short APDU. The payload is streamed one chunk at a time.
+   */
+  long write(CardSession session, int ins, int fileId, int position, InputStream in)
+      throws CardException, IOException {
+    CardChannel channel = session.getChannel();
+    selectFile(session, channel, fileId);
+    try {
+      return ins == (INS.WRITE_RECORD & 0xFF) || ins == (INS.APPEND_RECORD & 0xFF)
+          ? writeRecord(session, channel, ins, position, in)
+          : writeBinary(session, channel, ins, position, in);
+    } finally {
+      invalidateCache(session);
+    }
+  }
+
+  private long writeBinary(CardSession session, CardChannel channel, int ins, int offset,
+      InputStream in) throws CardException, IOException {
+    byte[] chunk = new byte[getMaximumLc(session, isExtendedLengthAllowed(session))];
+    long written = 0;
+    int length;
+    while ((length = readFully(in, chunk, 0, chunk.length)) > 0) {
+      int sent = 0;
+      while (sent < length) {
+        if (offset > 0x7FFF) throw new CardException("Offset beyond 7FFF is not supported");
+
+        int size = Math.min(length - sent, getMaximumLc(session, isExtendedLengthAllowed(session)));
+        int sw = exchange(session, channel,
+            new CommandAPDU(0x00, ins, offset >> 8, offset & 0xFF, chunk, sent, size)).getSW();
+        if (sw == 0x6700 && size > 255) {
+          learnExtendedLength(session, false);
+          continue;
+        }
+        checkWritten(ins, sw);
+        if (size > 255 && session.getExtendedLength() == null) learnExtendedLength(session, true);
+
+        sent += size;
+        offset += size;
+      }
+      written += length;
+    }
+    return written;
+  }
+
+  private long writeRecord(CardSession session, CardChannel channel, int ins, int record,
+      InputStream in) throws CardException, IOException {
+    boolean append = ins == (INS.APPEND_RECORD & 0xFF);
+    int p1 = append ? 0x00 : record;
+    int p2 = append ? 0x00 : 0x04;
+    int limit = getMaximumLc(session, isExtendedLengthAllowed(session));
+    // One more byte than a single command can carry tells whether the record needs chaining
+    byte[] buffer = new byte[limit + 1];
+    int length = readFully(in, buffer, 0, buffer.length);
+    if (length <= limit) {
+      int sw = exchange(session, channel, new CommandAPDU(0x00, ins, p1, p2, buffer, 0, length))
+          .getSW();
+      if (sw != 0x6700 || length <= 255) {
+        checkWritten(ins, sw);
+        if (length > 255 && session.getExtendedLength() == null) {
+          learnExtendedLength(session, true);
+        }
+        return length;
+      }
+      learnExtendedLength(session, false);
+    }
+
+    // All pieces but the last one are sent with the chaining bit of CLA
+    PushbackInputStream stream = new PushbackInputStream(
+        new SequenceInputStream(new ByteArrayInputStream(buffer, 0, length), in));
+    byte[] piece = new byte[getMaximumLc(session, false)];
+    long written = 0;
+    while (true) {
+      int size = readFully(stream, piece, 0, piece.length);
+      int next = stream.read();
+      if (next >= 0) stream.unread(next);
+      int cla = next >= 0 ? 0x10 : 0x00;
+      checkWritten(ins,
+          exchange(session, channel, new CommandAPDU(cla, ins, p1, p2, piece, 0, size)).getSW());
+      written += size;
+      if (next < 0) return written;
+    }
+  }
+
+  private static void checkWritten(int ins, int sw) throws StatusWordException {
+    if (sw == 0x9000) return;
+
+    String name;
+    switch (ins) {
+      case INS.UPDATE_BINARY & 0xFF:
+        name = "UPDATE BINARY";
+        break;
+      case INS.WRITE_BINARY & 0xFF:
+        name = "WRITE BINARY";
+        break;
+      case INS.WRITE_RECORD & 0xFF:
+        name = "WRITE RECORD";
+        break;
+      default:
+        name = "APPEND RECORD";
+    }
+    throw new StatusWordException(name + " failed", sw);
+  }
+
+  private static int readFully(InputStream in, byte[] bytes, int offset, int length)
+      throws IOException {
+    int total = 0;
+    while (total < length) {
+      int count = in.read(bytes, offset + total, length - total);
+      if (count < 0) break;
+      total += count;
+    }
+    return total;
+  }
+
+  private void selectFile(CardSession session, CardChannel channel, int fileId)
+      throws CardException {
+    CommandAPDU select = new CommandAPDU(0x00, INS.SELECT_FILE, 0x00, 0x0C,
+        new byte[] {(byte) (fileId >> 8), (byte) fileId});
+    ResponseAPDU selected = exchange(session, channel, select);
+    session.clearSelection(channel.getChannelNumber());
+    session.updateCacheContext(channel.getChannelNumber(), select, selected.getSW());
+    if (selected.getSW() != 0x9000) {
+      throw new StatusWordException("SELECT FILE failed", selected.getSW());
+    }
+  }
+
+  /**
+   * Checks if extended length APDUs may be sent to the card of given session, which is true
+   * unless the card refused them or is connected by T=0.
+   */
+  private static boolean isExtendedLengthAllowed(CardSession session) {
+    return !Boolean.FALSE.equals(session.getExtendedLength())
+        && !"T=0".equals(session.getCard().getProtocol());
+  }
+
+  /**
+   * Returns the largest Lc of a single command to the card of given session.
+   */
+  private static int getMaximumLc(CardSession session, boolean extended) {
+    return Math.min(session.getProfile().getMaximumCommandLength(), extended ? 65535 : 255);
+  }
+
+  /**
+   * Remembers the extended length support of a card in its session and in the
+   * {@link CardProfileRegistry}, so later sessions of the same type of card skip the probe.
+   */
+  private void learnExtendedLength(CardSession session, boolean extendedLength) {
+    session.setExtendedLength(extendedLength);
+    profiles.learnExtendedLength(session.getCard().getATR().getBytes(), extendedLength);
+  }
+
+  private static CommandAPDU readBinary(byte[] command, int offset, int le, boolean extended) {
+    command[2] = (byte) (offset >> 8);
+    command[3] = (byte) offset;
+    if (extended) {
+      command[4] = 0x00;
+      command[5] = (byte) (le >> 8);
+      command[6] = (byte) le;
+      return new CommandAPDU(command);
+    }
+    command[4] = (byte) le;
+    return new CommandAPDU(command, 0, 5);
+  }
+
+  private ResponseAPDU getResponse(CardSession session, CardChannel channel, CommandAPDU command,
+      ResponseAPDU response, ResponseBuffer buffer) throws CardException {
+    buffer.clear();
+    int cla = getResponseCLA(command.getCLA());
+    while (response.getSW1() == 0x61) {
+      buffer.append(response);
+      if (buffer.length > MAX_RESPONSE_LENGTH) throw new CardException("Response is too long");
+      response = exchange(session, channel,
+          new CommandAPDU(cla, INS.GET_RESPONSE, 0x00, 0x00, ne(response.getSW2())));
+    }
+    buffer.append(response);
+    return buffer.toResponseAPDU(response.getSW());
+  }
+
+  /**
+   * Returns the identity of the card for the {@link ResponseCache}, or null if the card has none.
+   */
+  private byte[] identify(CardSession session, ResponseCache cache) throws CardException {
+    byte[] identity = session.getIdentity();
+    if (identity == null) {
+      ResponseAPDU response = exchange(session, session.getChannel(), cache.getIdentityCommand());
+      identity = new byte[0];
+      if (response.getSW() == 0x9000 && response.getNr() > 0) {
+        byte[] atr = session.getCard().getATR().getBytes();
+        byte[] data = response.getData();
+        identity = Arrays.copyOf(atr, atr.length + data.length);
+        System.arraycopy(data, 0, identity, atr.length, data.length);
+      }
+      session.setIdentity(identity);
+    }
+    return identity.length == 0 ? null : identity;
+  }
+
+  private void invalidateCache(CardSession session) {
+    byte[] identity = session.getIdentity();
+    ResponseCache cache = responseCache;
+    if (cache != null && identity != null && identity.length > 0) cache.invalidate(identity);
+  }
+
+  /**
+   * Checks if a command only reads the card, so it can be resent without any side effect.
+   */
+  private static boolean isReadOnly(int cla, int ins) {
+    // GET DATA of PC/SC readers, such as the UID of a contactless card
+    if (cla == 0xFF) return ins == (INS.GET_DATA & 0xFF);
+    if ((cla & 0x80) != 0) return false;
+
+    switch (ins) {
+      case INS.SELECT_FILE & 0xFF:
+      case INS.READ_BINARY & 0xFF:
+      case INS.READ_RECORD & 0xFF:
+      case INS.GET_RESPONSE & 0xFF:
+      case INS.GET_DATA & 0xFF:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static boolean isWrite(int ins) {
+    switch (ins) {
+      case INS.ERASE_BINARY & 0xFF:
+      case INS.WRITE_BINARY & 0xFF:
+      case INS.WRITE_RECORD & 0xFF:
+      case INS.UPDATE_BINARY & 0xFF:
+      case INS.PUT_DATA & 0xFF:
+      case INS.UPDATE_DATA & 0xFF:
+      case INS.APPEND_RECORD & 0xFF:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Transmits a single command and reports it to the {@link CardReaderMetrics}.
+   */
+  private ResponseAPDU exchange(CardSession session, CardChannel channel, CommandAPDU command)
+      throws CardException {
+    CardReaderMetrics recorder = metrics;
+    ExchangeRecorder exchanges = exchangeRecorder;
+    boolean readOnly = isReadOnly(command.getCLA(), command.getINS());
+    session.sending(readOnly);
+    if (recorder == CardReaderMetrics.NONE && exchanges == null) {
+      ResponseAPDU response = channel.transmit(command);
+      session.answered(readOnly);
+      return response;
+    }
+
+    long start = System.nanoTime();
+    ResponseAPDU response = channel.transmit(command);
+    long nanos = System.nanoTime() - start;
+    session.answered(readOnly);
+    recorder.transmitted(session.getTerminal(), command.getINS(), encodedLength(command),
+        response.getNr() + 2, response.getSW(), nanos);
+    if (exchanges != null) {
+      exchanges.record(session.getTerminal(), session.getCard().getATR().getBytes(),
+          command.getBytes(), response.getBytes(), nanos);
+    }
+    return response;
+  }
+
+  private int exchange(CardSession session, CardChannel channel, ByteBuffer command,
+      ByteBuffer response, int ins) throws CardException {
+    CardReaderMetrics recorder = metrics;
+    ExchangeRecorder exchanges = exchangeRecorder;
+    boolean timed = recorder != CardReaderMetrics.NONE || exchanges != null;
+    long start = timed ? System.nanoTime() : 0;
+    int from = command.position();
+    int sent = command.remaining();
+    boolean readOnly = isReadOnly(command.get(from) & 0xFF, ins);
+    session.sending(readOnly);
+    int received = channel.transmit(command, response);
+    session.answered(readOnly);
+    if (received < 2) throw new CardException("Response is too short");
+
+    int end = response.position();
+    int sw = ((response.get(end - 2) & 0xFF) << 8) | (response.get(end - 1) & 0xFF);
+    if (timed) {
+      long nanos = System.nanoTime() - start;
+      recorder.transmitted(session.getTerminal(), ins, sent, received, sw, nanos);
+      if (exchanges != null) {
+        exchanges.record(session.getTerminal(), session.getCard().getATR().getBytes(),
+            copy(command, from, sent),
+            copy(response, end - received, received), nanos);
+      }
+    }
+    return sw;
+  }
+
+  private static byte[] copy(ByteBuffer buffer, int offset, int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; i++) {
+      bytes[i] = buffer.get(offset + i);
+    }
+    return bytes;
+  }
+
+  /**
+   * Returns the length of the encoded command without copying its bytes.
+   */
+  static int encodedLength(CommandAPDU command) {
+    int nc = command.getNc();
+    int ne = command.getNe();
+    boolean extended = nc > 255 || ne > 256;
+    int length = 4;
+    if (nc > 0) length += (extended ? 3 : 1) + nc;
+    if (ne > 0) length += extended ? (nc > 0 ? 2 : 3) : 1;
+    return length;
+  }
+
+  private static CommandAPDU withNe(CommandAPDU command, int sw2) {
+    return new CommandAPDU(command.getCLA(), command.getINS(), command.getP1(), command.getP2(),
+        command.getData(), ne(sw2));
+  }
+
+  private static int ne(int sw2) {
+    return sw2 == 0 ? 256 : sw2;
+  }
+
+  /**
+   * Keeps the logical channel bits of the original CLA, but drops secure messaging and chaining.
+   */
+  private static int getResponseCLA(int cla) {
+    return (cla & 0x40) == 0 ? cla & 0x03 : cla & 0x4F;
+  }
+
+  /**
+   *
+   * {@link ResponseBuffer} accumulates the data of chained responses in a single growing array.
+   *
+   */
+  static final class ResponseBuffer {
+
+    private byte[] bytes = new byte[512];
+    private int length;
+
+    void clear() {
+      length = 0;
+    }
+
+    void append(ResponseAPDU response) {
+      byte[] data = response.getData();
+      ensureCapacity(length + data.length);
+      System.arraycopy(data, 0, bytes, length, data.length);
+      length += data.length;
+    }
+
+    ResponseAPDU toResponseAPDU(int sw) {
+      ensureCapacity(length + 2);
+      bytes[length] = (byte) (sw >> 8);
+      bytes[length + 1] = (byte) sw;
+      // ResponseAPDU copies the given array anyway, so only trim it when needed
+      int total = length + 2;
+      return new ResponseAPDU(bytes.length == total ? bytes : Arrays.copyOf(bytes, total));
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (capacity > bytes.length) {
+        bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+      }
+    }
+
+  }
+
+}
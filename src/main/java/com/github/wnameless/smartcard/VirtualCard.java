@@ -0,0 +1,269 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import javax.smartcardio.ATR;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+import net.sf.rubycollect4j.util.ByteUtils;
+
+/**
+ * 
+ * {@link VirtualCard} is an in-memory smartcard which answers scripted CommandAPDU with a
+ * configurable latency, jitter and error rate. It can be inserted into a
+ * {@link VirtualCardTerminal}.
+ * 
+ */
+public final class VirtualCard {
+
+  private static final ResponseAPDU INS_NOT_SUPPORTED =
+      new ResponseAPDU(new byte[] {(byte) 0x6D, (byte) 0x00});
+
+  private final ATR atr;
+  private final Map<ByteKey, ResponseAPDU> responses;
+  private final Function<CommandAPDU, ResponseAPDU> responder;
+  private final long latencyNanos;
+  private final long jitterNanos;
+  private final double errorRate;
+
+  private VirtualCard(VirtualCardBuilder builder) {
+    atr = new ATR(builder.atr);
+    responses = new ConcurrentHashMap<>(builder.responses);
+    responder = builder.responder;
+    latencyNanos = builder.latencyNanos;
+    jitterNanos = builder.jitterNanos;
+    errorRate = builder.errorRate;
+  }
+
+  /**
+   * Returns a builder of {@link VirtualCard}.
+   * 
+   * @return {@link VirtualCardBuilder}
+   */
+  public static VirtualCardBuilder builder() {
+    return new VirtualCardBuilder();
+  }
+
+  /**
+   * Returns the ATR of this card.
+   * 
+   * @return ATR
+   */
+  public ATR getATR() {
+    return atr;
+  }
+
+  /**
+   * Answers a CommandAPDU after the simulated latency. A scripted response of the exact command
+   * bytes is returned if any, otherwise the responder decides.
+   * 
+   * @param command a CommandAPDU
+   * @return ResponseAPDU
+   * @throws CardException if a simulated error occurs
+   */
+  public ResponseAPDU transmit(CommandAPDU command) throws CardException {
+    delay();
+    if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+      throw new CardException("Simulated transmission error");
+    }
+
+    ResponseAPDU response = responses.get(new ByteKey(command.getBytes()));
+    return response != null ? response : responder.apply(command);
+  }
+
+  private void delay() throws CardException {
+    long nanos = latencyNanos;
+    if (jitterNanos > 0) nanos += ThreadLocalRandom.current().nextLong(jitterNanos + 1);
+    long deadline = System.nanoTime() + nanos;
+    // Thread#sleep rounds to milliseconds, which is too coarse for simulated card latency
+    for (long remaining = nanos; remaining > 0; remaining = deadline - System.nanoTime()) {
+      LockSupport.parkNanos(remaining);
+      if (Thread.currentThread().isInterrupted()) throw new CardException("Interrupted");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{" + ByteUtils.toHexString(atr.getBytes()) + "}";
+  }
+
+  private static final class ByteKey {
+
+    private final byte[] bytes;
+
+    private ByteKey(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof ByteKey && Arrays.equals(bytes, ((ByteKey) o).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(bytes);
+    }
+
+  }
+
+  /**
+   * 
+   * {@link VirtualCardBuilder} is designed to hold the script of a {@link VirtualCard}.
+   *
+   */
+  public static class VirtualCardBuilder {
+
+    private byte[] atr = new byte[] {(byte) 0x3B, (byte) 0x00};
+    private final Map<ByteKey, ResponseAPDU> responses = new ConcurrentHashMap<>();
+    private Function<CommandAPDU, ResponseAPDU> responder = command -> INS_NOT_SUPPORTED;
+    private long latencyNanos = 0;
+    private long jitterNanos = 0;
+    private double errorRate = 0;
+
+    /**
+     * Default constructor.
+     */
+    public VirtualCardBuilder() {}
+
+    /**
+     * Sets the ATR bytes, default is 3B00.
+     * 
+     * @param atrBytes the ATR bytes
+     * @return this {@link VirtualCardBuilder}
+     */
+    public VirtualCardBuilder setATR(byte... atrBytes) {
+      atr = atrBytes.clone();
+      return this;
+    }
+
+    /**
+     * Sets the ATR bytes by given HEX string, default is 3B00.
+     * 
+     * @param hexString a hex string
+     * @return this {@link VirtualCardBuilder}
+     * @throws IllegalArgumentException if hexadecimal string is invalid
+     */
+    public VirtualCardBuilder setATR(String hexString) {
+      atr = ByteUtils.fromHexString(hexString);
+      return this;
+    }
+
+    /**
+     * Scripts the ResponseAPDU of a CommandAPDU.
+     * 
+     * @param command a CommandAPDU
+     * @param response a ResponseAPDU
+     * @return this {@link VirtualCardBuilder}
+     */
+    public VirtualCardBuilder addResponse(CommandAPDU command, ResponseAPDU response) {
+      responses.put(new ByteKey(command.getBytes()), Objects.requireNonNull(response));
+      return this;
+    }
+
+    /**
+     * Scripts the response of a command by given HEX strings.
+     * 
+     * @param commandHex the command in hex
+     * @param responseHex the response in hex, including SW1 and SW2
+     * @return this {@link VirtualCardBuilder}
+     * @throws IllegalArgumentException if hexadecimal string is invalid
+     */
+    public VirtualCardBuilder addResponse(String commandHex, String responseHex) {
+      Objects.requireNonNull(commandHex);
+      Objects.requireNonNull(responseHex);
+      return addResponse(new CommandAPDU(ByteUtils.fromHexString(commandHex)),
+          new ResponseAPDU(ByteUtils.fromHexString(responseHex)));
+    }
+
+    /**
+     * Sets the responder of unscripted commands, default answers 6D00.
+     * 
+     * @param responder a Function which answers a CommandAPDU
+     * @return this {@link VirtualCardBuilder}
+     */
+    public VirtualCardBuilder setResponder(Function<CommandAPDU, ResponseAPDU> responder) {
+      this.responder = Objects.requireNonNull(responder);
+      return this;
+    }
+
+    /**
+     * Sets the latency of each transmission, default is 0.
+     * 
+     * @param latency the latency
+     * @param unit the TimeUnit of latency
+     * @return this {@link VirtualCardBuilder}
+     */
+    public VirtualCardBuilder setLatency(long latency, TimeUnit unit) {
+      if (latency < 0) throw new IllegalArgumentException("Latency must not be negative");
+
+      latencyNanos = unit.toNanos(latency);
+      return this;
+    }
+
+    /**
+     * Sets the maximum random jitter added to the latency, default is 0.
+     * 
+     * @param jitter the maximum jitter
+     * @param unit the TimeUnit of jitter
+     * @return this {@link VirtualCardBuilder}
+     */
+    public VirtualCardBuilder setJitter(long jitter, TimeUnit unit) {
+      if (jitter < 0) throw new IllegalArgumentException("Jitter must not be negative");
+
+      jitterNanos = unit.toNanos(jitter);
+      return this;
+    }
+
+    /**
+     * Sets the probability of a transmission to fail, default is 0.
+     * 
+     * @param errorRate the error rate between 0.0..1.0
+     * @return this {@link VirtualCardBuilder}
+     */
+    public VirtualCardBuilder setErrorRate(double errorRate) {
+      if (errorRate < 0 || errorRate > 1) {
+        throw new IllegalArgumentException("Error rate must be between 0.0..1.0");
+      }
+
+      this.errorRate = errorRate;
+      return this;
+    }
+
+    /**
+     * Returns a {@link VirtualCard} by user given script.
+     * 
+     * @return {@link VirtualCard}
+     */
+    public VirtualCard build() {
+      return new VirtualCard(this);
+    }
+
+  }
+
+}
@@ -0,0 +1,307 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import javax.smartcardio.ATR;
+import javax.smartcardio.Card;
+import javax.smartcardio.CardChannel;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardNotPresentException;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+
+/**
+ * 
+ * {@link VirtualCardTerminal} is an in-memory CardTerminal which a {@link VirtualCard} can be
+ * inserted into or removed from at any time. A connected Card becomes invalid once its
+ * {@link VirtualCard} is removed.
+ * 
+ */
+public final class VirtualCardTerminal extends CardTerminal {
+
+  private final Object lock = new Object();
+  private final List<Object> monitors = new CopyOnWriteArrayList<>();
+  private final String name;
+  private VirtualCard card;
+  private long insertions;
+
+  /**
+   * Returns a {@link VirtualCardTerminal} without card.
+   * 
+   * @param name the name of this terminal
+   */
+  public VirtualCardTerminal(String name) {
+    this.name = Objects.requireNonNull(name);
+  }
+
+  /**
+   * Inserts a {@link VirtualCard}, the previous one is removed if any.
+   * 
+   * @param card a {@link VirtualCard}
+   */
+  public void insert(VirtualCard card) {
+    Objects.requireNonNull(card);
+    synchronized (lock) {
+      this.card = card;
+      insertions++;
+      lock.notifyAll();
+    }
+    notifyMonitors();
+  }
+
+  /**
+   * Removes the {@link VirtualCard} if any.
+   */
+  public void remove() {
+    synchronized (lock) {
+      card = null;
+      lock.notifyAll();
+    }
+    notifyMonitors();
+  }
+
+  /**
+   * Registers a monitor which is notified on every card change of this terminal, so card changes
+   * of many terminals can be waited for without a lock shared by all of them.
+   */
+  void addMonitor(Object monitor) {
+    monitors.add(monitor);
+  }
+
+  void removeMonitor(Object monitor) {
+    monitors.remove(monitor);
+  }
+
+  private void notifyMonitors() {
+    for (Object monitor : monitors) {
+      synchronized (monitor) {
+        monitor.notifyAll();
+      }
+    }
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public Card connect(String protocol) throws CardException {
+    Objects.requireNonNull(protocol);
+    synchronized (lock) {
+      if (card == null) throw new CardNotPresentException("No card present");
+      return new ConnectedCard(card, insertions);
+    }
+  }
+
+  @Override
+  public boolean isCardPresent() {
+    synchronized (lock) {
+      return card != null;
+    }
+  }
+
+  @Override
+  public boolean waitForCardPresent(long timeout) throws CardException {
+    return waitFor(true, timeout);
+  }
+
+  @Override
+  public boolean waitForCardAbsent(long timeout) throws CardException {
+    return waitFor(false, timeout);
+  }
+
+  private boolean waitFor(boolean present, long timeout) throws CardException {
+    if (timeout < 0) throw new IllegalArgumentException("Timeout must not be negative");
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    synchronized (lock) {
+      try {
+        while ((card != null) != present) {
+          if (timeout == 0) {
+            lock.wait();
+          } else {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            if (remaining <= 0) return false;
+            lock.wait(remaining);
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CardException("Interrupted", e);
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Returns the insertion count of the present card, or -1 if no card is present, so a swapped
+   * card is told apart from the previous one.
+   */
+  long cardGeneration() {
+    synchronized (lock) {
+      return card == null ? -1 : insertions;
+    }
+  }
+
+  private VirtualCard currentCard(long insertion) throws CardException {
+    synchronized (lock) {
+      if (card == null || insertions != insertion) throw new CardException("Card removed");
+      return card;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "{" + name + "}";
+  }
+
+  private final class ConnectedCard extends Card {
+
+    private final VirtualCard virtualCard;
+    private final long insertion;
+    private final CardChannel basicChannel = new VirtualChannel(this, 0);
+    private int nextChannel = 1;
+    private volatile boolean connected = true;
+
+    private ConnectedCard(VirtualCard virtualCard, long insertion) {
+      this.virtualCard = virtualCard;
+      this.insertion = insertion;
+    }
+
+    @Override
+    public ATR getATR() {
+      return virtualCard.getATR();
+    }
+
+    @Override
+    public String getProtocol() {
+      return "T=1";
+    }
+
+    @Override
+    public CardChannel getBasicChannel() {
+      checkConnected();
+      return basicChannel;
+    }
+
+    @Override
+    public synchronized CardChannel openLogicalChannel() throws CardException {
+      checkConnected();
+      if (nextChannel > 19) throw new CardException("No more logical channels");
+      return new VirtualChannel(this, nextChannel++);
+    }
+
+    @Override
+    public void beginExclusive() throws CardException {
+      checkConnected();
+    }
+
+    @Override
+    public void endExclusive() throws CardException {
+      checkConnected();
+    }
+
+    @Override
+    public byte[] transmitControlCommand(int controlCode, byte[] command) throws CardException {
+      throw new CardException("Control commands are not supported");
+    }
+
+    @Override
+    public void disconnect(boolean reset) {
+      connected = false;
+    }
+
+    private ResponseAPDU transmit(CommandAPDU command) throws CardException {
+      checkConnected();
+      return currentCard(insertion).transmit(command);
+    }
+
+    private void checkConnected() {
+      if (!connected) throw new IllegalStateException("Card has been disconnected");
+    }
+
+  }
+
+  private static final class VirtualChannel extends CardChannel {
+
+    private final ConnectedCard card;
+    private final int channelNumber;
+
+    private VirtualChannel(ConnectedCard card, int channelNumber) {
+      this.card = card;
+      this.channelNumber = channelNumber;
+    }
+
+    @Override
+    public Card getCard() {
+      return card;
+    }
+
+    @Override
+    public int getChannelNumber() {
+      return channelNumber;
+    }
+
+    @Override
+    public ResponseAPDU transmit(CommandAPDU command) throws CardException {
+      return card.transmit(withChannel(command));
+    }
+
+    /**
+     * Encodes the channel number into the CLA of an interindustry command like PC/SC does.
+     */
+    private CommandAPDU withChannel(CommandAPDU command) {
+      if (channelNumber == 0 || (command.getCLA() & 0x80) != 0) return command;
+
+      byte[] bytes = command.getBytes();
+      bytes[0] = channelNumber < 4 ? (byte) ((bytes[0] & 0xBC) | channelNumber)
+          : (byte) ((bytes[0] & 0xB0) | 0x40 | (channelNumber - 4));
+      return new CommandAPDU(bytes);
+    }
+
+    @Override
+    public int transmit(ByteBuffer command, ByteBuffer response) throws CardException {
+      if (command == response) {
+        throw new IllegalArgumentException("command and response must not be the same object");
+      }
+      if (response.remaining() < Transport.MIN_RESPONSE_SPACE) {
+        throw new IllegalArgumentException("Insufficient space in response buffer");
+      }
+      byte[] commandBytes = new byte[command.remaining()];
+      command.get(commandBytes);
+      byte[] responseBytes = transmit(new CommandAPDU(commandBytes)).getBytes();
+      response.put(responseBytes);
+      return responseBytes.length;
+    }
+
+    @Override
+    public void close() throws CardException {
+      if (channelNumber == 0) throw new IllegalStateException("Basic channel cannot be closed");
+    }
+
+  }
+
+}
@@ -0,0 +1,204 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CardTerminals;
+import javax.smartcardio.TerminalFactory;
+import javax.smartcardio.TerminalFactorySpi;
+
+/**
+ * 
+ * {@link VirtualTerminals} creates TerminalFactory of {@link VirtualCardTerminal}s, so a
+ * {@link CardReader} can be load tested without any physical card reader.
+ * 
+ */
+public final class VirtualTerminals {
+
+  /**
+   * The TerminalFactory type of virtual terminals.
+   */
+  public static final String TYPE = "Virtual";
+
+  private static final Provider PROVIDER = new VirtualProvider();
+
+  private VirtualTerminals() {}
+
+  /**
+   * Returns a TerminalFactory which lists given {@link VirtualCardTerminal}s.
+   * 
+   * @param terminals an array of {@link VirtualCardTerminal}
+   * @return TerminalFactory
+   */
+  public static TerminalFactory newFactory(VirtualCardTerminal... terminals) {
+    return newFactory(Arrays.asList(terminals));
+  }
+
+  /**
+   * Returns a TerminalFactory which lists given {@link VirtualCardTerminal}s.
+   * 
+   * @param terminals a List of {@link VirtualCardTerminal}
+   * @return TerminalFactory
+   */
+  public static TerminalFactory newFactory(List<VirtualCardTerminal> terminals) {
+    List<VirtualCardTerminal> copy = new ArrayList<>(terminals);
+    copy.forEach(Objects::requireNonNull);
+    try {
+      return TerminalFactory.getInstance(TYPE, copy, PROVIDER);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static final class VirtualProvider extends Provider {
+
+    private static final long serialVersionUID = 1L;
+
+    private VirtualProvider() {
+      super("SmartcardReaderVirtual", "1.0", "Virtual card terminals of smartcard-reader");
+      putService(new Service(this, "TerminalFactory", TYPE, VirtualFactorySpi.class.getName(),
+          null, null) {
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Object newInstance(Object constructorParameter) {
+          return new VirtualFactorySpi((List<VirtualCardTerminal>) constructorParameter);
+        }
+
+      });
+    }
+
+  }
+
+  private static final class VirtualFactorySpi extends TerminalFactorySpi {
+
+    private final List<VirtualCardTerminal> terminals;
+
+    private VirtualFactorySpi(List<VirtualCardTerminal> terminals) {
+      this.terminals = terminals;
+    }
+
+    @Override
+    protected CardTerminals engineTerminals() {
+      return new VirtualCardTerminals(terminals);
+    }
+
+  }
+
+  private static final class VirtualCardTerminals extends CardTerminals {
+
+    private final List<VirtualCardTerminal> terminals;
+    private Map<VirtualCardTerminal, Long> states;
+    private final List<CardTerminal> insertions = new ArrayList<>();
+    private final List<CardTerminal> removals = new ArrayList<>();
+
+    private VirtualCardTerminals(List<VirtualCardTerminal> terminals) {
+      this.terminals = terminals;
+    }
+
+    @Override
+    public List<CardTerminal> list(State state) throws CardException {
+      Objects.requireNonNull(state);
+      synchronized (this) {
+        switch (state) {
+          case ALL:
+            return new ArrayList<>(terminals);
+          case CARD_PRESENT:
+          case CARD_ABSENT:
+            List<CardTerminal> list = new ArrayList<>();
+            for (VirtualCardTerminal terminal : terminals) {
+              if (terminal.isCardPresent() == (state == State.CARD_PRESENT)) list.add(terminal);
+            }
+            return list;
+          case CARD_INSERTION:
+            return new ArrayList<>(insertions);
+          default:
+            return new ArrayList<>(removals);
+        }
+      }
+    }
+
+    @Override
+    public boolean waitForChange(long timeout) throws CardException {
+      if (timeout < 0) throw new IllegalArgumentException("Timeout must not be negative");
+      if (terminals.isEmpty()) throw new IllegalStateException("No terminals available");
+
+      long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+      terminals.forEach(terminal -> terminal.addMonitor(this));
+      synchronized (this) {
+        boolean firstCall = states == null;
+        if (firstCall) states = currentStates();
+        try {
+          while (true) {
+            if (!firstCall && detectChanges()) return true;
+            firstCall = false;
+
+            if (timeout == 0) {
+              wait();
+            } else {
+              long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+              if (remaining <= 0) return detectChanges();
+              wait(remaining);
+            }
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new CardException("Interrupted", e);
+        } finally {
+          terminals.forEach(terminal -> terminal.removeMonitor(this));
+        }
+      }
+    }
+
+    private Map<VirtualCardTerminal, Long> currentStates() {
+      Map<VirtualCardTerminal, Long> current = new HashMap<>();
+      for (VirtualCardTerminal terminal : terminals) {
+        current.put(terminal, terminal.cardGeneration());
+      }
+      return current;
+    }
+
+    private boolean detectChanges() {
+      Map<VirtualCardTerminal, Long> current = currentStates();
+      insertions.clear();
+      removals.clear();
+      for (VirtualCardTerminal terminal : terminals) {
+        long previous = states.get(terminal);
+        long generation = current.get(terminal);
+        if (previous == generation) continue;
+        if (previous >= 0) removals.add(terminal);
+        if (generation >= 0) insertions.add(terminal);
+      }
+      states = current;
+      return !insertions.isEmpty() || !removals.isEmpty();
+    }
+
+  }
+
+}
@@ -1,6 +1,6 @@
 module com.github.wnameless.smartcard {
-  requires java.desktop;
   requires java.logging;
+  requires transitive java.management;
   requires transitive java.smartcardio;
   requires net.sf.rubycollect4j;
 
@@ -23,7 +23,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Modifier;
+import java.nio.BufferOverflowException;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
 import javax.smartcardio.CommandAPDU;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -214,6 +217,55 @@ public class APDUTest {
     }
   }
 
+  @Test
+  public void testGetEncodedLength() {
+    assertEquals(4, builder.getEncodedLength());
+    assertEquals(7, builder.setData((byte) 0x11, (byte) 0x22).getEncodedLength());
+    assertEquals(8, builder.setLe(16).getEncodedLength());
+    assertEquals(11, builder.setLe(512).getEncodedLength());
+    assertEquals(4 + 3 + 256 + 2, builder.setData(new byte[256]).getEncodedLength());
+    assertEquals(4 + 3 + 256 + 2, builder.setLe(16).getEncodedLength());
+  }
+
+  @Test
+  public void testToBytes() {
+    builder.setINS(INS.GET_DATA).setData((byte) 0x11).setLe(16);
+    assertArrayEquals(new byte[] {(byte) 0x00, INS.GET_DATA, (byte) 0x00, (byte) 0x00, (byte) 0x01,
+        (byte) 0x11, (byte) 0x10}, builder.toBytes());
+
+    builder.setLe(256);
+    byte[] bytes = builder.toBytes();
+    assertArrayEquals(new byte[] {(byte) 0x00, INS.GET_DATA, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+        (byte) 0x00, (byte) 0x01, (byte) 0x11, (byte) 0x01, (byte) 0x00}, bytes);
+    CommandAPDU command = new CommandAPDU(bytes);
+    assertEquals(1, command.getNc());
+    assertEquals(256, command.getNe());
+
+    builder.setData(new byte[256]).setLe(16);
+    command = new CommandAPDU(builder.toBytes());
+    assertEquals(256, command.getNc());
+    assertEquals(16, command.getNe());
+  }
+
+  @Test
+  public void testEncodeTo() {
+    builder.setINS(INS.READ_BINARY).setLe(512);
+    ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+    buffer.put((byte) 0x7F);
+    assertSame(buffer, builder.encodeTo(buffer));
+    assertEquals(1 + builder.getEncodedLength(), buffer.position());
+    assertArrayEquals(Bytes.concat(new byte[] {(byte) 0x7F}, builder.toBytes()),
+        Arrays.copyOf(buffer.array(), buffer.position()));
+  }
+
+  @Test
+  public void testEncodeToException() {
+    ByteBuffer buffer = ByteBuffer.allocate(6);
+    assertThrows(BufferOverflowException.class,
+        () -> builder.setData(new byte[4]).encodeTo(buffer));
+    assertEquals(0, buffer.position());
+  }
+
   @Test
   public void testArrayCopy() {
     byte[] apdu = new byte[] {(byte) 0x00, (byte) 0x02, (byte) 0x00};
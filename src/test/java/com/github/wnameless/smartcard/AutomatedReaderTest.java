@@ -18,12 +18,30 @@
  */
 package com.github.wnameless.smartcard;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CardTerminals;
 import javax.smartcardio.CommandAPDU;
 import javax.smartcardio.ResponseAPDU;
+import javax.smartcardio.TerminalFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import com.google.common.testing.EqualsTester;
@@ -46,6 +64,9 @@ public class AutomatedReaderTest {
   @Test
   public void testAllNPE() throws Exception {
     NullPointerTester tester = new NullPointerTester();
+    tester.setDefault(CardReader.class, CardReader.getInstance());
+    tester.setDefault(CommandScript.class, CommandScript.of(Arrays.asList(commands)));
+    tester.setDefault(PollingPolicy.class, PollingPolicy.builder().build());
     tester.testAllPublicConstructors(AutomatedReader.class);
     tester.ignore(AutomatedReader.class.getMethod("equals", Object.class))
         .testAllPublicInstanceMethods(reader);
@@ -63,6 +84,11 @@ public class AutomatedReaderTest {
   public void testConstructors() {
     assertTrue(new AutomatedReader(commands) instanceof AutomatedReader);
     assertTrue(new AutomatedReader(Arrays.asList(commands)) instanceof AutomatedReader);
+    assertEquals(reader, new AutomatedReader(CardReader.getInstance(),
+        CommandScript.of(Arrays.asList(commands))));
+    CommandScript unfilled = CommandScript.builder().add("00 B0 {offset:2} 00").build();
+    assertThrows(IllegalStateException.class,
+        () -> new AutomatedReader(CardReader.getInstance(), unfilled));
   }
 
   @Test
@@ -83,6 +109,322 @@ public class AutomatedReaderTest {
     reader.reading(1000, task2);
   }
 
+  @Test
+  public void testReadingOnlyChangedTerminals() throws Exception {
+    VirtualCardTerminal stable = new VirtualCardTerminal("Stable Reader");
+    VirtualCardTerminal changing = new VirtualCardTerminal("Changing Reader");
+    stable.insert(VirtualCard.builder()
+        .setResponder(c -> new ResponseAPDU(new byte[] {(byte) 0x90, (byte) 0x00})).build());
+    AtomicInteger counter = new AtomicInteger();
+    changing.insert(VirtualCard.builder().setResponder(
+        c -> new ResponseAPDU(new byte[] {(byte) counter.incrementAndGet(), (byte) 0x90, 0x00}))
+        .build());
+    AutomatedReader virtualReader = new AutomatedReader(
+        CardReader.newInstance(VirtualTerminals.newFactory(stable, changing)), commands);
+    Map<CardTerminal, AtomicInteger> executions = new ConcurrentHashMap<>();
+    virtualReader.reading(10, (t, responses) -> executions
+        .computeIfAbsent(t, k -> new AtomicInteger()).incrementAndGet());
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (executions.getOrDefault(changing, new AtomicInteger()).get() < 5
+        && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    virtualReader.stop();
+    assertTrue(executions.get(changing).get() >= 5);
+    assertEquals(1, executions.get(stable).get());
+  }
+
+  @Test
+  public void testReadingWithPollingPolicy() throws Exception {
+    VirtualCardTerminal stable = new VirtualCardTerminal("Stable Reader");
+    VirtualCardTerminal changing = new VirtualCardTerminal("Changing Reader");
+    VirtualCardTerminal empty = new VirtualCardTerminal("Empty Reader");
+    AtomicInteger stableCommands = new AtomicInteger();
+    stable.insert(VirtualCard.builder().setResponder(c -> {
+      stableCommands.incrementAndGet();
+      return new ResponseAPDU(new byte[] {(byte) 0x90, (byte) 0x00});
+    }).build());
+    AtomicInteger counter = new AtomicInteger();
+    changing.insert(VirtualCard.builder().setResponder(
+        c -> new ResponseAPDU(new byte[] {(byte) counter.incrementAndGet(), (byte) 0x90, 0x00}))
+        .build());
+    AutomatedReader virtualReader = new AutomatedReader(
+        CardReader.newInstance(VirtualTerminals.newFactory(stable, changing, empty)), commands);
+    Map<CardTerminal, AtomicInteger> executions = new ConcurrentHashMap<>();
+    PollingPolicy policy = PollingPolicy.builder().setMinimumInterval(10, TimeUnit.MILLISECONDS)
+        .setMaximumInterval(1, TimeUnit.SECONDS).build();
+    virtualReader.reading(policy, (t, responses) -> executions
+        .computeIfAbsent(t, k -> new AtomicInteger()).incrementAndGet());
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (executions.getOrDefault(changing, new AtomicInteger()).get() < 20
+        && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    virtualReader.stop();
+    assertTrue(executions.get(changing).get() >= 20);
+    assertEquals(1, executions.get(stable).get());
+    assertTrue(stableCommands.get() <= 2 * 10, "Stable card got " + stableCommands + " commands");
+    assertNull(executions.get(empty));
+  }
+
+  @Test
+  public void testReadingFailureKeepsCard() throws Exception {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Faulty Reader");
+    terminal.insert(VirtualCard.builder().setErrorRate(1).build());
+    AutomatedReader virtualReader = new AutomatedReader(
+        CardReader.newInstance(VirtualTerminals.newFactory(terminal)), commands);
+    List<CardEvent> events = new CopyOnWriteArrayList<>();
+    subscribe(virtualReader, events);
+    virtualReader.reading(10, (t, responses) -> {});
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (events.size() < 3 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    virtualReader.stop();
+    virtualReader.closeEvents();
+    assertTrue(events.size() >= 3);
+    for (CardEvent event : events) {
+      assertEquals(CardEvent.Type.ERROR, event.getType());
+      assertSame(terminal, event.getTerminal());
+    }
+  }
+
+  @Test
+  public void testReadingFailingTask() throws Exception {
+    VirtualCardTerminal failing = new VirtualCardTerminal("Failing Reader");
+    VirtualCardTerminal working = new VirtualCardTerminal("Working Reader");
+    AtomicInteger counter = new AtomicInteger();
+    VirtualCard card = VirtualCard.builder().setResponder(
+        c -> new ResponseAPDU(new byte[] {(byte) counter.incrementAndGet(), (byte) 0x90, 0x00}))
+        .build();
+    failing.insert(card);
+    working.insert(card);
+    AutomatedReader virtualReader = new AutomatedReader(
+        CardReader.newInstance(VirtualTerminals.newFactory(failing, working)), commands);
+    AtomicInteger executions = new AtomicInteger();
+    virtualReader.reading(10, (t, responses) -> {
+      if (t == failing) throw new IllegalStateException("task failed");
+      executions.incrementAndGet();
+    });
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (executions.get() < 5 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    virtualReader.stop();
+    assertTrue(executions.get() >= 5);
+  }
+
+  private static void subscribe(AutomatedReader reader, List<CardEvent> events) {
+    reader.events(Runnable::run, 16, OverflowPolicy.BLOCK)
+        .subscribe(new Flow.Subscriber<CardEvent>() {
+
+          @Override
+          public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+          }
+
+          @Override
+          public void onNext(CardEvent item) {
+            events.add(item);
+          }
+
+          @Override
+          public void onError(Throwable throwable) {}
+
+          @Override
+          public void onComplete() {}
+
+        });
+  }
+
+  @Test
+  public void testFingerprint() {
+    List<ResponseAPDU> responses =
+        Arrays.asList(new ResponseAPDU(new byte[] {0x01, (byte) 0x90, 0x00}),
+            new ResponseAPDU(new byte[] {(byte) 0x90, 0x00}));
+    List<ResponseAPDU> shifted = Arrays.asList(new ResponseAPDU(new byte[] {0x01, (byte) 0x90}),
+        new ResponseAPDU(new byte[] {0x00, (byte) 0x90, 0x00}));
+    byte[] atr = {0x3B, 0x00};
+    assertEquals(AutomatedReader.fingerprint(atr, responses),
+        AutomatedReader.fingerprint(atr.clone(), new ArrayList<>(responses)));
+    assertNotEquals(AutomatedReader.fingerprint(atr, responses),
+        AutomatedReader.fingerprint(atr, shifted));
+    assertNotEquals(AutomatedReader.fingerprint(atr, responses),
+        AutomatedReader.fingerprint(new byte[] {0x3B, 0x01}, responses));
+  }
+
+  @Test
+  public void testWatchingVirtualTerminal() throws Exception {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    AutomatedReader virtualReader = new AutomatedReader(
+        CardReader.newInstance(VirtualTerminals.newFactory(terminal)), commands);
+    BlockingQueue<List<ResponseAPDU>> results = new LinkedBlockingQueue<>();
+    virtualReader.watching((t, responses) -> results.add(responses));
+
+    terminal.insert(VirtualCard.builder()
+        .setResponder(c -> new ResponseAPDU(new byte[] {(byte) 0x90, (byte) 0x00})).build());
+    assertEquals(2, results.poll(5, TimeUnit.SECONDS).size());
+    terminal.remove();
+    assertTrue(results.poll(5, TimeUnit.SECONDS).isEmpty());
+    virtualReader.stop();
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (hasThread("smartcard-watcher") && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertFalse(hasThread("smartcard-watcher"));
+  }
+
+  static boolean hasThread(String prefix) {
+    return Thread.getAllStackTraces().keySet().stream()
+        .anyMatch(thread -> thread.isAlive() && thread.getName().startsWith(prefix));
+  }
+
+  @Test
+  public void testWatchingInsertsOnce() throws Exception {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(VirtualCard.builder()
+        .setResponder(c -> new ResponseAPDU(new byte[] {(byte) 0x90, (byte) 0x00})).build());
+    // The card is both present on reconcile and reported as inserted by waitForChange
+    CardTerminals terminals = mock(CardTerminals.class);
+    when(terminals.list()).thenReturn(singletonList(terminal));
+    when(terminals.list(any())).thenReturn(emptyList());
+    when(terminals.list(CardTerminals.State.CARD_PRESENT)).thenReturn(singletonList(terminal));
+    when(terminals.list(CardTerminals.State.CARD_INSERTION)).thenReturn(singletonList(terminal));
+    when(terminals.waitForChange(anyLong())).thenReturn(true).thenAnswer(invocation -> {
+      Thread.sleep(10);
+      return false;
+    });
+    TerminalFactory factory = mock(TerminalFactory.class);
+    when(factory.terminals()).thenReturn(terminals);
+    AutomatedReader virtualReader =
+        new AutomatedReader(CardReader.newInstance(factory), commands);
+    List<CardEvent> events = new CopyOnWriteArrayList<>();
+    virtualReader.events(Runnable::run, 16, OverflowPolicy.BLOCK)
+        .subscribe(new Flow.Subscriber<CardEvent>() {
+
+          @Override
+          public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+          }
+
+          @Override
+          public void onNext(CardEvent item) {
+            events.add(item);
+          }
+
+          @Override
+          public void onError(Throwable throwable) {}
+
+          @Override
+          public void onComplete() {}
+
+        });
+    AtomicInteger executions = new AtomicInteger();
+    virtualReader.watching((t, responses) -> executions.incrementAndGet());
+
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (executions.get() == 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    Thread.sleep(200);
+    virtualReader.stop();
+    virtualReader.closeEvents();
+    assertEquals(1, executions.get());
+    assertEquals(1,
+        events.stream().filter(e -> e.getType() == CardEvent.Type.INSERTED).count());
+    assertEquals(1,
+        events.stream().filter(e -> e.getType() == CardEvent.Type.RESPONSES).count());
+  }
+
+  @Test
+  public void testEvents() throws Exception {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    AutomatedReader virtualReader = new AutomatedReader(
+        CardReader.newInstance(VirtualTerminals.newFactory(terminal)), commands);
+    BlockingQueue<CardEvent> events = new LinkedBlockingQueue<>();
+    virtualReader.events(Runnable::run, 16, OverflowPolicy.BLOCK)
+        .subscribe(new Flow.Subscriber<CardEvent>() {
+
+          @Override
+          public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+          }
+
+          @Override
+          public void onNext(CardEvent item) {
+            events.add(item);
+          }
+
+          @Override
+          public void onError(Throwable throwable) {}
+
+          @Override
+          public void onComplete() {}
+
+        });
+    terminal.insert(VirtualCard.builder()
+        .setResponder(c -> new ResponseAPDU(new byte[] {(byte) 0x90, (byte) 0x00})).build());
+    virtualReader.watching();
+
+    assertEquals(CardEvent.Type.INSERTED, events.poll(5, TimeUnit.SECONDS).getType());
+    CardEvent responses = events.poll(5, TimeUnit.SECONDS);
+    assertEquals(CardEvent.Type.RESPONSES, responses.getType());
+    assertSame(terminal, responses.getTerminal());
+    assertEquals(2, responses.getResponses().size());
+    terminal.remove();
+    assertEquals(CardEvent.Type.REMOVED, events.poll(5, TimeUnit.SECONDS).getType());
+    virtualReader.stop();
+    virtualReader.closeEvents();
+  }
+
+  @Test
+  public void testDroppedEvents() throws Exception {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    AutomatedReader virtualReader = new AutomatedReader(
+        CardReader.newInstance(VirtualTerminals.newFactory(terminal)), commands);
+    CountDownLatch subscribed = new CountDownLatch(1);
+    virtualReader.events(Runnable::run, 1, OverflowPolicy.DROP)
+        .subscribe(new Flow.Subscriber<CardEvent>() {
+
+          @Override
+          public void onSubscribe(Flow.Subscription subscription) {
+            subscribed.countDown();
+          }
+
+          @Override
+          public void onNext(CardEvent item) {}
+
+          @Override
+          public void onError(Throwable throwable) {}
+
+          @Override
+          public void onComplete() {}
+
+        });
+    assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+    virtualReader.watching();
+
+    VirtualCard card = VirtualCard.builder().build();
+    for (int i = 0; i < 3; i++) {
+      terminal.insert(card);
+      Thread.sleep(50);
+      terminal.remove();
+      Thread.sleep(50);
+    }
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (virtualReader.getDroppedEvents() == 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertTrue(virtualReader.getDroppedEvents() > 0);
+    virtualReader.stop();
+    virtualReader.closeEvents();
+  }
+
   @Test
   public void testStop() {
     reader.stop();
@@ -0,0 +1,132 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.nio.ByteBuffer;
+import javax.smartcardio.ResponseAPDU;
+import org.junit.jupiter.api.Test;
+import net.sf.rubycollect4j.util.ByteUtils;
+
+public class BerTlvTest {
+
+  byte[] fci = ByteUtils.fromHexString("6F1C" + "8407A0000000031010"
+      + "A511" + "500456495341" + "870101" + "BF0C059F4D020B0A");
+
+  @Test
+  public void testFind() {
+    BerTlv tlv = BerTlv.wrap(fci);
+    assertArrayEquals(ByteUtils.fromHexString("A0000000031010"), tlv.getValue(0x6F, 0x84));
+    assertArrayEquals("VISA".getBytes(), tlv.getValue(0x6F, 0xA5, 0x50));
+    assertEquals(0x0B0A, tlv.find(0x6F, 0xA5, 0xBF0C, 0x9F4D).toUnsignedLong());
+    assertEquals(1, tlv.find(0x6F, 0xA5, 0x87).toUnsignedLong());
+    assertNull(tlv.find(0x6F, 0x88));
+    assertNull(tlv.find(0x84));
+    assertNull(tlv.find(0x6F, 0x84, 0x01));
+    assertThrows(IllegalArgumentException.class, () -> tlv.find());
+  }
+
+  @Test
+  public void testCursor() {
+    BerTlv.Cursor cursor = BerTlv.wrap(fci).find(0x6F).cursor();
+    assertThrows(IllegalStateException.class, cursor::getTag);
+    assertTrue(cursor.next());
+    assertEquals(0x84, cursor.getTag());
+    assertFalse(cursor.isConstructed());
+    assertEquals(7, cursor.getLength());
+    assertEquals(2, cursor.getValueOffset());
+    assertTrue(cursor.next());
+    assertEquals(0xA5, cursor.getTag());
+    assertTrue(cursor.isConstructed());
+
+    BerTlv.Cursor inner = cursor.getValue().cursor();
+    int[] tags = new int[3];
+    for (int i = 0; inner.next(); i++) {
+      tags[i] = inner.getTag();
+    }
+    assertArrayEquals(new int[] {0x50, 0x87, 0xBF0C}, tags);
+    assertFalse(cursor.next());
+    assertThrows(IllegalStateException.class, cursor::getLength);
+  }
+
+  @Test
+  public void testPaddingAndLongLength() {
+    byte[] bytes = new byte[133];
+    bytes[0] = 0x00;
+    bytes[1] = (byte) 0xFF;
+    bytes[2] = (byte) 0xC1;
+    bytes[3] = (byte) 0x81;
+    bytes[4] = (byte) 0x80;
+    bytes[132] = 0x7F;
+    BerTlv tlv = BerTlv.wrap(bytes, 2, 131);
+    assertEquals(128, tlv.find(0xC1).length());
+    assertEquals(0x7F, tlv.find(0xC1).get(127));
+    assertEquals(0x7F, BerTlv.wrap(bytes).find(0xC1).get(127));
+  }
+
+  @Test
+  public void testByteBuffer() {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(fci.length + 4);
+    buffer.put(new byte[2]).put(fci).put(new byte[] {(byte) 0x90, 0x00}).flip();
+    buffer.position(2).limit(2 + fci.length);
+    BerTlv tlv = BerTlv.wrap(buffer);
+    assertEquals(2, buffer.position());
+
+    ByteBuffer value = tlv.find(0x6F, 0xA5, 0x50).toByteBuffer();
+    assertTrue(value.isReadOnly());
+    assertEquals(4, value.remaining());
+    assertEquals('V', value.get(0));
+  }
+
+  @Test
+  public void testResponseAPDU() {
+    byte[] bytes = new byte[fci.length + 2];
+    System.arraycopy(fci, 0, bytes, 0, fci.length);
+    bytes[fci.length] = (byte) 0x90;
+    BerTlv tlv = BerTlv.wrap(new ResponseAPDU(bytes));
+    assertEquals(fci.length, tlv.length());
+    assertArrayEquals(fci, tlv.toByteArray());
+  }
+
+  @Test
+  public void testMalformed() {
+    assertThrows(IllegalArgumentException.class,
+        () -> BerTlv.wrap(ByteUtils.fromHexString("8405A000")).find(0x84));
+    assertThrows(IllegalArgumentException.class,
+        () -> BerTlv.wrap(ByteUtils.fromHexString("9F")).find(0x9F01));
+    assertThrows(IllegalArgumentException.class,
+        () -> BerTlv.wrap(ByteUtils.fromHexString("848001")).find(0x84));
+    assertThrows(IllegalArgumentException.class,
+        () -> BerTlv.wrap(ByteUtils.fromHexString("1FFFFFFF0100")).find(0x01));
+    assertThrows(IllegalArgumentException.class,
+        () -> BerTlv.wrap(ByteUtils.fromHexString("8482")).find(0x84));
+    assertThrows(IndexOutOfBoundsException.class, () -> BerTlv.wrap(fci, 4, fci.length));
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("BerTlv{870101}", BerTlv.wrap(ByteUtils.fromHexString("870101")).toString());
+  }
+
+}
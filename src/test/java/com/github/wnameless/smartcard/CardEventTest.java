@@ -0,0 +1,73 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.List;
+import javax.smartcardio.ResponseAPDU;
+import org.junit.jupiter.api.Test;
+
+public class CardEventTest {
+
+  VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+
+  @Test
+  public void testInserted() {
+    CardEvent event = CardEvent.inserted(terminal);
+    assertEquals(CardEvent.Type.INSERTED, event.getType());
+    assertSame(terminal, event.getTerminal());
+    assertTrue(event.getResponses().isEmpty());
+    assertNull(event.getError());
+    assertTrue(event.getTimestamp() > 0);
+  }
+
+  @Test
+  public void testRemoved() {
+    CardEvent event = CardEvent.removed(terminal);
+    assertEquals(CardEvent.Type.REMOVED, event.getType());
+    assertSame(terminal, event.getTerminal());
+  }
+
+  @Test
+  public void testResponses() {
+    List<ResponseAPDU> responses = new ArrayList<>();
+    responses.add(new ResponseAPDU(new byte[] {(byte) 0x90, 0x00}));
+    CardEvent event = CardEvent.responses(terminal, responses);
+    responses.clear();
+    assertEquals(CardEvent.Type.RESPONSES, event.getType());
+    assertEquals(1, event.getResponses().size());
+    assertThrows(UnsupportedOperationException.class, () -> event.getResponses().clear());
+  }
+
+  @Test
+  public void testError() {
+    RuntimeException e = new RuntimeException("Boom");
+    CardEvent event = CardEvent.error(null, e);
+    assertEquals(CardEvent.Type.ERROR, event.getType());
+    assertNull(event.getTerminal());
+    assertSame(e, event.getError());
+    assertEquals("CardEvent{ERROR, null, java.lang.RuntimeException: Boom}", event.toString());
+  }
+
+}
@@ -0,0 +1,83 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Arrays;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import net.sf.rubycollect4j.util.ByteUtils;
+
+public class CardProfileRegistryTest {
+
+  CardProfileRegistry registry;
+  CardProfile any = CardProfile.builder().setATR("3B").build();
+  CardProfile specific = CardProfile.builder().setATR("3B8F").setExtendedLength(true).build();
+  byte[] atr = ByteUtils.fromHexString("3B8F8001");
+
+  @BeforeEach
+  public void setUp() {
+    registry = new CardProfileRegistry();
+  }
+
+  @Test
+  public void testMatch() {
+    assertSame(CardProfile.DEFAULT, registry.match(atr));
+
+    registry.register(any);
+    registry.register(specific);
+    assertEquals(Arrays.asList(any, specific), registry.getProfiles());
+    assertSame(specific, registry.match(atr));
+    assertSame(any, registry.match(ByteUtils.fromHexString("3B00")));
+    assertSame(CardProfile.DEFAULT, registry.match(ByteUtils.fromHexString("3F00")));
+
+    assertTrue(registry.unregister(specific));
+    assertFalse(registry.unregister(specific));
+    assertSame(any, registry.match(atr));
+  }
+
+  @Test
+  public void testLearnExtendedLength() {
+    registry.register(any);
+    registry.learnExtendedLength(atr, false);
+    assertEquals(1, registry.getLearnedCount());
+    assertEquals(Boolean.FALSE, registry.match(atr).getExtendedLength());
+    assertSame(any, registry.match(ByteUtils.fromHexString("3B00")));
+
+    registry.clearLearned();
+    assertSame(any, registry.match(atr));
+
+    registry.register(specific);
+    registry.learnExtendedLength(atr, true);
+    assertEquals(0, registry.getLearnedCount());
+    registry.learnExtendedLength(atr, false);
+    registry.register(CardProfile.builder().build());
+    assertEquals(0, registry.getLearnedCount());
+  }
+
+  @Test
+  public void testToString() {
+    registry.register(any);
+    assertEquals("CardProfileRegistry{profiles=1, learned=0}", registry.toString());
+  }
+
+}
@@ -0,0 +1,105 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+import com.google.common.testing.EqualsTester;
+import net.sf.rubycollect4j.util.ByteUtils;
+
+public class CardProfileTest {
+
+  @Test
+  public void testDefaults() {
+    CardProfile profile = CardProfile.builder().build();
+    assertArrayEquals(new byte[0], profile.getATR());
+    assertArrayEquals(new byte[0], profile.getATRMask());
+    assertEquals("*", profile.getProtocol());
+    assertNull(profile.getExtendedLength());
+    assertEquals(65535, profile.getMaximumCommandLength());
+    assertEquals(65536, profile.getMaximumResponseLength());
+    assertNull(profile.getAutoGetResponse());
+    assertTrue(profile.matches(ByteUtils.fromHexString("3B00")));
+    assertEquals(0, profile.getSpecificity());
+  }
+
+  @Test
+  public void testMatches() {
+    CardProfile profile = CardProfile.builder().setATR("3B8F").build();
+    assertTrue(profile.matches(ByteUtils.fromHexString("3B8F8001")));
+    assertFalse(profile.matches(ByteUtils.fromHexString("3B8E8001")));
+    assertFalse(profile.matches(ByteUtils.fromHexString("3B")));
+    assertEquals(16, profile.getSpecificity());
+
+    profile = CardProfile.builder().setATR("3B8F").setATRMask("FFF0").build();
+    assertTrue(profile.matches(ByteUtils.fromHexString("3B80")));
+    assertFalse(profile.matches(ByteUtils.fromHexString("3B70")));
+    assertEquals(12, profile.getSpecificity());
+    assertArrayEquals(ByteUtils.fromHexString("3B80"), profile.getATR());
+  }
+
+  @Test
+  public void testLearn() {
+    CardProfile profile = CardProfile.builder().setATR("3B").setProtocol("T=1")
+        .setMaximumResponseLength(1024).build();
+    CardProfile learned = profile.learn(ByteUtils.fromHexString("3B02"), false);
+    assertArrayEquals(ByteUtils.fromHexString("3B02"), learned.getATR());
+    assertEquals("T=1", learned.getProtocol());
+    assertEquals(Boolean.FALSE, learned.getExtendedLength());
+    assertEquals(1024, learned.getMaximumResponseLength());
+  }
+
+  @Test
+  public void testInvalid() {
+    CardProfile.CardProfileBuilder builder = CardProfile.builder();
+    assertThrows(IllegalArgumentException.class, () -> builder.setProtocol("T=CL"));
+    assertThrows(IllegalArgumentException.class, () -> builder.setProtocol(null));
+    assertThrows(IllegalArgumentException.class, () -> builder.setMaximumCommandLength(0));
+    assertThrows(IllegalArgumentException.class, () -> builder.setMaximumCommandLength(65536));
+    assertThrows(IllegalArgumentException.class, () -> builder.setMaximumResponseLength(65537));
+    assertThrows(IllegalStateException.class,
+        () -> builder.setATR("3B00").setATRMask("FF").build());
+  }
+
+  @Test
+  public void testEquality() {
+    new EqualsTester()
+        .addEqualityGroup(CardProfile.builder().build(), CardProfile.builder().build())
+        .addEqualityGroup(CardProfile.builder().setATR("3B").build(),
+            CardProfile.builder().setATR("3B").setATRMask("FF").build())
+        .addEqualityGroup(CardProfile.builder().setExtendedLength(true).build())
+        .addEqualityGroup(CardProfile.builder().setMaximumCommandLength(255).build())
+        .testEquals();
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals(
+        "CardProfile{atr=3b, mask=ff, protocol=T=0, extendedLength=null, "
+            + "maximumCommandLength=65535, maximumResponseLength=65536, autoGetResponse=false}",
+        CardProfile.builder().setATR("3B").setProtocol("T=0").setAutoGetResponse(false).build()
+            .toString());
+  }
+
+}
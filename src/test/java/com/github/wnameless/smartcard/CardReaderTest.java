@@ -21,10 +21,29 @@ package com.github.wnameless.smartcard;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.smartcardio.Card;
 import javax.smartcardio.CardChannel;
+import javax.smartcardio.CardException;
 import javax.smartcardio.CardTerminal;
 import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+import javax.smartcardio.TerminalFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -32,6 +51,8 @@ import org.mockito.MockitoAnnotations;
 
 public class CardReaderTest {
 
+  static final ResponseAPDU OK = new ResponseAPDU(new byte[] {(byte) 0x90, (byte) 0x00});
+
   CardReader reader;
   CommandAPDU[] commands;
 
@@ -47,8 +68,10 @@ public class CardReaderTest {
   @BeforeEach
   public void setUp() throws Exception {
     MockitoAnnotations.openMocks(this);
+    when(terminal.getName()).thenReturn("Mock Reader");
     when(terminal.connect(any(String.class))).thenReturn(card);
     when(card.getBasicChannel()).thenReturn(channel);
+    when(channel.transmit(any(CommandAPDU.class))).thenReturn(OK);
 
     reader = CardReader.getInstance();
     commands = new CommandAPDU[] {
@@ -72,6 +95,873 @@ public class CardReaderTest {
     verify(terminal, times(1)).connect(any(String.class));
   }
 
+  @Test
+  public void testReadOnTermialReusesSession() throws Exception {
+    reader.readOnTerminal(terminal, commands);
+    reader.readOnTerminal(terminal, commands);
+    verify(terminal, times(1)).connect(any(String.class));
+    assertTrue(reader.getSessionPool().isOpen(terminal));
+  }
+
+  @Test
+  public void testReadOnTermialHoldsExclusiveAccess() throws Exception {
+    reader.readOnTerminal(terminal, commands);
+    verify(card).beginExclusive();
+    verify(card).endExclusive();
+
+    reader.getScheduler().setExclusive(false);
+    try {
+      reader.readOnTerminal(terminal, commands);
+      verify(card, times(1)).beginExclusive();
+    } finally {
+      reader.getScheduler().setExclusive(true);
+    }
+  }
+
+  @Test
+  public void testReadOnTermialSerializesScripts() throws Exception {
+    AtomicInteger active = new AtomicInteger();
+    AtomicInteger interleaved = new AtomicInteger();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(VirtualCard.builder().setLatency(1, TimeUnit.MILLISECONDS).setResponder(c -> {
+      // The first command opens a script and the second one closes it
+      if (c.getINS() == (INS.SELECT_FILE & 0xFF)) {
+        if (active.incrementAndGet() > 1) interleaved.incrementAndGet();
+      } else {
+        active.decrementAndGet();
+      }
+      return OK;
+    }).build());
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    List<Future<List<ResponseAPDU>>> futures = new ArrayList<>();
+    for (int i = 0; i < 40; i++) {
+      futures.add(pool.submit(() -> virtualReader.readOnTerminal(terminal, commands)));
+    }
+    for (Future<List<ResponseAPDU>> future : futures) {
+      assertEquals(2, future.get(5, TimeUnit.SECONDS).size());
+    }
+    pool.shutdown();
+    assertEquals(0, interleaved.get());
+    assertEquals(0, virtualReader.getScheduler().getQueueDepth(terminal));
+  }
+
+  @Test
+  public void testReadOnTerminalAsyncPriority() throws Exception {
+    List<Integer> order = new ArrayList<>();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(VirtualCard.builder().setLatency(50, TimeUnit.MILLISECONDS).setResponder(c -> {
+      synchronized (order) {
+        order.add(c.getP1());
+      }
+      return OK;
+    }).build());
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+
+    CompletableFuture<?> first = virtualReader.readOnTerminalAsync(terminal, 0,
+        Arrays.asList(new CommandAPDU(0x00, 0xCA, 0x01, 0x00)));
+    CompletableFuture<?> low = virtualReader.readOnTerminalAsync(terminal, -1,
+        Arrays.asList(new CommandAPDU(0x00, 0xCA, 0x02, 0x00)));
+    CompletableFuture<?> high = virtualReader.readOnTerminalAsync(terminal, 1,
+        Arrays.asList(new CommandAPDU(0x00, 0xCA, 0x03, 0x00)));
+    CompletableFuture.allOf(first, low, high).get(5, TimeUnit.SECONDS);
+    assertEquals(Arrays.asList(1, 3, 2), order);
+  }
+
+  @Test
+  public void testReadOnTermialReconnectsAfterCardRemoval() throws Exception {
+    reader.readOnTerminal(terminal, commands);
+    when(channel.transmit(any(CommandAPDU.class))).thenThrow(new CardException("removed"))
+        .thenReturn(new ResponseAPDU(new byte[] {(byte) 0x90, (byte) 0x00}));
+
+    assertEquals(commands.length, reader.readOnTerminal(terminal, commands).size());
+    verify(terminal, times(2)).connect(any(String.class));
+    verify(card, times(1)).disconnect(false);
+  }
+
+  @Test
+  public void testReadOnTermialDoesNotResendWrites() throws Exception {
+    CardReader mockReader = CardReader.newInstance(TerminalFactory.getDefault());
+    mockReader.readOnTerminal(terminal, commands);
+    CommandAPDU update =
+        new CommandAPDU(0x00, INS.UPDATE_BINARY, 0x00, 0x00, new byte[] {0x01, 0x02});
+    when(channel.transmit(any(CommandAPDU.class))).thenReturn(OK, OK)
+        .thenThrow(new CardException("removed")).thenReturn(OK);
+
+    assertEquals(2, mockReader.readOnTerminal(terminal, commands[0], update, commands[1]).size());
+    verify(terminal, times(1)).connect(any(String.class));
+    verify(channel, times(2 + 3)).transmit(any(CommandAPDU.class));
+  }
+
+  @Test
+  public void testReadOnTermialResendsFailedFirstWrite() throws Exception {
+    CardReader mockReader = CardReader.newInstance(TerminalFactory.getDefault());
+    mockReader.readOnTerminal(terminal, commands);
+    CommandAPDU update =
+        new CommandAPDU(0x00, INS.UPDATE_BINARY, 0x00, 0x00, new byte[] {0x01, 0x02});
+    when(channel.transmit(any(CommandAPDU.class))).thenThrow(new CardException("reset"))
+        .thenReturn(OK);
+
+    assertEquals(2, mockReader.readOnTerminal(terminal, update, commands[1]).size());
+    verify(terminal, times(2)).connect(any(String.class));
+  }
+
+  @Test
+  public void testReadConcurrently() {
+    assertEquals(reader.getCardTerminals(),
+        new ArrayList<>(reader.readConcurrently(commands).keySet()));
+  }
+
+  @Test
+  public void testReadTimeout() {
+    reader.setReadTimeout(5, TimeUnit.SECONDS);
+    assertEquals(5000, reader.getReadTimeout(TimeUnit.MILLISECONDS));
+    reader.setReadTimeout(10, TimeUnit.SECONDS);
+    assertThrows(IllegalArgumentException.class, () -> reader.setReadTimeout(0, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testExecutor() {
+    ExecutorService executor = reader.getExecutor();
+    ExecutorService other = Executors.newSingleThreadExecutor();
+    reader.setExecutor(other);
+    assertSame(other, reader.getExecutor());
+    reader.setExecutor(executor);
+    other.shutdown();
+  }
+
+  @Test
+  public void testGetTerminalRegistry() {
+    assertEquals(reader.getTerminalRegistry().getSnapshot(), reader.getCardTerminals());
+  }
+
+  @Test
+  public void testNewInstance() {
+    TerminalFactory factory = VirtualTerminals.newFactory();
+    CardReader virtualReader = CardReader.newInstance(factory);
+    assertNotSame(reader, virtualReader);
+    assertSame(factory, virtualReader.getTerminalFactory());
+  }
+
+  @Test
+  public void testReadOnVirtualTerminals() {
+    VirtualCardTerminal terminal1 = new VirtualCardTerminal("Virtual Reader 1");
+    VirtualCardTerminal terminal2 = new VirtualCardTerminal("Virtual Reader 2");
+    terminal1.insert(VirtualCard.builder().setResponder(c -> OK).build());
+    CardReader virtualReader =
+        CardReader.newInstance(VirtualTerminals.newFactory(terminal1, terminal2));
+
+    Map<CardTerminal, List<ResponseAPDU>> responses = virtualReader.read(commands);
+    assertEquals(Arrays.asList(terminal1, terminal2), new ArrayList<>(responses.keySet()));
+    assertEquals(Arrays.asList(OK, OK), responses.get(terminal1));
+    assertTrue(responses.get(terminal2).isEmpty());
+  }
+
+  @Test
+  public void testReadConcurrentlyOnVirtualTerminals() {
+    VirtualCardTerminal fast = new VirtualCardTerminal("Fast Reader");
+    VirtualCardTerminal hung = new VirtualCardTerminal("Hung Reader");
+    fast.insert(VirtualCard.builder().setResponder(c -> OK).build());
+    hung.insert(
+        VirtualCard.builder().setResponder(c -> OK).setLatency(5, TimeUnit.SECONDS).build());
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(fast, hung));
+    virtualReader.setReadTimeout(200, TimeUnit.MILLISECONDS);
+
+    Map<CardTerminal, List<ResponseAPDU>> responses = virtualReader.readConcurrently(commands);
+    assertEquals(Arrays.asList(OK, OK), responses.get(fast));
+    assertTrue(responses.get(hung).isEmpty());
+  }
+
+  @Test
+  public void testAutoGetResponse() {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    AtomicInteger getResponses = new AtomicInteger();
+    terminal.insert(VirtualCard.builder().setResponder(c -> {
+      if (c.getINS() == (INS.GET_RESPONSE & 0xFF)) {
+        return getResponses.incrementAndGet() % 2 == 0
+            ? new ResponseAPDU(new byte[] {3, 4, (byte) 0x90, 0x00})
+            : new ResponseAPDU(new byte[] {1, 2, (byte) 0x61, 0x02});
+      }
+      return c.getNe() == 4 ? new ResponseAPDU(new byte[] {(byte) 0x61, 0x02})
+          : new ResponseAPDU(new byte[] {(byte) 0x6C, 0x04});
+    }).build());
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    CommandAPDU command = APDU.builder().setINS(INS.READ_BINARY).setLe(1).build();
+
+    assertTrue(virtualReader.isAutoGetResponse());
+    assertEquals(new ResponseAPDU(new byte[] {1, 2, 3, 4, (byte) 0x90, 0x00}),
+        virtualReader.readOnTerminal(terminal, command).get(0));
+
+    virtualReader.setAutoGetResponse(false);
+    assertEquals(new ResponseAPDU(new byte[] {(byte) 0x6C, 0x04}),
+        virtualReader.readOnTerminal(terminal, command).get(0));
+  }
+
+  @Test
+  public void testTransmitByteBuffer() throws Exception {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    AtomicInteger getResponses = new AtomicInteger();
+    terminal.insert(VirtualCard.builder().setResponder(c -> {
+      if (c.getINS() == (INS.GET_RESPONSE & 0xFF)) {
+        return getResponses.incrementAndGet() % 2 == 0
+            ? new ResponseAPDU(new byte[] {3, 4, (byte) 0x90, 0x00})
+            : new ResponseAPDU(new byte[] {1, 2, (byte) 0x61, 0x02});
+      }
+      return c.getNe() == 4 ? new ResponseAPDU(new byte[] {(byte) 0x61, 0x02})
+          : new ResponseAPDU(new byte[] {(byte) 0x6C, 0x04});
+    }).build());
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    ByteBuffer command = ByteBuffer.allocateDirect(5);
+    ByteBuffer response = ByteBuffer.allocateDirect(512);
+
+    for (int i = 0; i < 2; i++) {
+      command.clear();
+      command.put(new byte[] {0x00, INS.READ_BINARY, 0x00, 0x00, 0x01}).flip();
+      response.clear();
+      assertEquals(0x9000, virtualReader.transmit(terminal, command, response));
+      response.flip();
+      byte[] bytes = new byte[response.remaining()];
+      response.get(bytes);
+      assertArrayEquals(new byte[] {1, 2, 3, 4, (byte) 0x90, 0x00}, bytes);
+      assertEquals(0x01, command.get(4));
+    }
+
+    virtualReader.setAutoGetResponse(false);
+    command.rewind();
+    response.clear();
+    assertEquals(0x6C04, virtualReader.transmit(terminal, command, response));
+    assertEquals(2, response.position());
+
+    assertThrows(IllegalArgumentException.class,
+        () -> virtualReader.transmit(terminal, command, command));
+    assertThrows(IllegalArgumentException.class,
+        () -> virtualReader.transmit(terminal, ByteBuffer.allocate(3), response));
+  }
+
+  @Test
+  public void testTransmitByteBufferGetResponseChunks() throws Exception {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(VirtualCard.builder().setResponder(c -> {
+      if (c.getINS() != (INS.GET_RESPONSE & 0xFF)) {
+        byte[] response = new byte[202];
+        response[200] = (byte) 0x61;
+        return new ResponseAPDU(response);
+      }
+      byte[] response = new byte[c.getNe() + 2];
+      response[c.getNe()] = (byte) (c.getNe() == 256 ? 0x61 : 0x90);
+      response[c.getNe() + 1] = (byte) (c.getNe() == 256 ? 0x20 : 0x00);
+      return new ResponseAPDU(response);
+    }).build());
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    byte[] command = {0x00, INS.READ_BINARY, 0x00, 0x00, 0x00};
+
+    ByteBuffer response = ByteBuffer.allocate(490);
+    assertEquals(0x9000, virtualReader.transmit(terminal, ByteBuffer.wrap(command), response));
+    assertEquals(200 + 256 + 32 + 2, response.position());
+
+    assertThrows(CardException.class, () -> virtualReader.transmit(terminal,
+        ByteBuffer.wrap(command), ByteBuffer.allocate(489)));
+    assertThrows(IllegalArgumentException.class, () -> virtualReader.transmit(terminal,
+        ByteBuffer.wrap(command), ByteBuffer.allocate(257)));
+  }
+
+  @Test
+  public void testReadCommandScript() {
+    AtomicInteger reads = new AtomicInteger();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(fileCard(16, false, reads));
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    CommandScript script = CommandScript.builder().add("00 A4 00 00 02 {file:2}").stopOn(0x6A82)
+        .add("00 B0 {offset:2} 04").when(0x9000).add("00 C0 00 00 00").when(0x6D00).build();
+
+    List<ResponseAPDU> responses =
+        virtualReader.readOnTerminal(terminal, script.with("file", 0x0101).with("offset", 4));
+    assertEquals(2, responses.size());
+    assertArrayEquals(new byte[] {4, 5, 6, 7}, responses.get(1).getData());
+
+    responses =
+        virtualReader.readOnTerminal(terminal, script.with("file", 0x0201).with("offset", 4));
+    assertEquals(1, responses.size());
+    assertEquals(0x6A82, responses.get(0).getSW());
+    assertEquals(1, reads.get());
+
+    assertEquals(Arrays.asList(terminal), new ArrayList<>(
+        virtualReader.read(script.with("file", 0x0101).with("offset", 0)).keySet()));
+    assertThrows(IllegalStateException.class,
+        () -> virtualReader.readOnTerminal(terminal, script));
+  }
+
+  @Test
+  public void testQuarantine() {
+    VirtualCardTerminal healthy = new VirtualCardTerminal("Healthy Reader");
+    VirtualCardTerminal broken = new VirtualCardTerminal("Broken Reader");
+    VirtualCardTerminal empty = new VirtualCardTerminal("Empty Reader");
+    healthy.insert(VirtualCard.builder().setResponder(c -> OK).build());
+    broken.insert(VirtualCard.builder().setResponder(c -> OK).setErrorRate(1).build());
+    CardReader virtualReader =
+        CardReader.newInstance(VirtualTerminals.newFactory(healthy, broken, empty));
+    TerminalHealth health = virtualReader.getHealth();
+    health.setQuarantine(1, 1, TimeUnit.MINUTES);
+
+    for (int i = 0; i < 3; i++) {
+      assertTrue(virtualReader.read(commands).containsKey(broken));
+    }
+    assertTrue(health.isQuarantined(broken));
+    assertFalse(health.isQuarantined(empty));
+    assertEquals(Arrays.asList(healthy, empty),
+        new ArrayList<>(virtualReader.read(commands).keySet()));
+    assertEquals(Arrays.asList(healthy, empty),
+        new ArrayList<>(virtualReader.readConcurrently(commands).keySet()));
+    assertEquals(Arrays.asList(healthy, empty),
+        new ArrayList<>(virtualReader.readAsync(commands).join().keySet()));
+
+    broken.insert(VirtualCard.builder().setResponder(c -> OK).build());
+    assertEquals(2, virtualReader.readOnTerminal(broken, commands).size());
+    assertFalse(health.isQuarantined(broken));
+    assertEquals(3, virtualReader.read(commands).size());
+  }
+
+  @Test
+  public void testStopStatusWords() {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(VirtualCard.builder()
+        .setResponder(c -> new ResponseAPDU(new byte[] {(byte) 0x6A, (byte) 0x82})).build());
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+
+    assertEquals(2, virtualReader.readOnTerminal(terminal, commands).size());
+    virtualReader.setStopStatusWords(0x9000, 0x6A82);
+    assertArrayEquals(new int[] {0x6A82, 0x9000}, virtualReader.getStopStatusWords());
+    assertEquals(1, virtualReader.readOnTerminal(terminal, commands).size());
+    assertThrows(IllegalArgumentException.class, () -> virtualReader.setStopStatusWords(0x10000));
+  }
+
+  @Test
+  public void testReadBinary() throws Exception {
+    AtomicInteger reads = new AtomicInteger();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(fileCard(1000, true, reads));
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+
+    byte[] content = virtualReader.readBinary(terminal, 0x0101, 1000);
+    assertEquals(1000, content.length);
+    for (int i = 0; i < content.length; i++) {
+      assertEquals((byte) i, content[i]);
+    }
+    assertEquals(1, reads.get());
+
+    assertEquals(1000, virtualReader.readBinary(terminal, 0x0101, 2000).length);
+  }
+
+  @Test
+  public void testReadBinaryWithoutExtendedLength() throws Exception {
+    AtomicInteger reads = new AtomicInteger();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(fileCard(1000, false, reads));
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    virtualReader.readBinary(terminal, 0x0101, 600, out);
+    assertEquals(600, out.size());
+    assertEquals(3, reads.get());
+  }
+
+  @Test
+  public void testReadBinaryEndingOnChunkBoundary() throws Exception {
+    AtomicInteger reads = new AtomicInteger();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(fileCard(512, false, reads));
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+
+    byte[] content = virtualReader.readBinary(terminal, 0x0101, 1000);
+    assertEquals(512, content.length);
+    assertEquals((byte) 511, content[511]);
+    assertEquals(3, reads.get());
+  }
+
+  @Test
+  public void testCardProfile() throws Exception {
+    AtomicInteger reads = new AtomicInteger();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(fileCard(1000, true, reads));
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    CardProfile profile =
+        CardProfile.builder().setATR("3B00").setMaximumResponseLength(100).build();
+    virtualReader.getProfiles().register(profile);
+
+    assertEquals(1000, virtualReader.readBinary(terminal, 0x0101, 1000).length);
+    assertEquals(10, reads.get());
+
+    virtualReader.getProfiles().unregister(profile);
+    virtualReader.getProfiles()
+        .register(CardProfile.builder().setATR("3B00").setExtendedLength(false).build());
+    virtualReader.getSessionPool().evict(terminal);
+    reads.set(0);
+    assertEquals(600, virtualReader.readBinary(terminal, 0x0101, 600).length);
+    assertEquals(3, reads.get());
+  }
+
+  @Test
+  public void testCardProfileLearning() throws Exception {
+    AtomicInteger reads = new AtomicInteger();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(fileCard(1000, false, reads));
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    byte[] atr = terminal.connect("*").getATR().getBytes();
+
+    virtualReader.readBinary(terminal, 0x0101, 600);
+    assertEquals(Boolean.FALSE, virtualReader.getProfiles().match(atr).getExtendedLength());
+    assertEquals(1, virtualReader.getProfiles().getLearnedCount());
+
+    virtualReader.getSessionPool().evict(terminal);
+    assertEquals(600, virtualReader.readBinary(terminal, 0x0101, 600).length);
+  }
+
+  @Test
+  public void testCardProfileAutoGetResponse() {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(VirtualCard.builder().setResponder(c -> c.getINS() == 0xC0
+        ? new ResponseAPDU(new byte[] {0x01, (byte) 0x90, 0x00})
+        : new ResponseAPDU(new byte[] {0x61, 0x01})).build());
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    virtualReader.getProfiles().register(CardProfile.builder().setAutoGetResponse(false).build());
+
+    assertEquals(0x6101, virtualReader.readOnTerminal(terminal, commands).get(0).getSW());
+  }
+
+  @Test
+  public void testWriteBinary() throws Exception {
+    List<CommandAPDU> log = new ArrayList<>();
+    byte[] file = new byte[2000];
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(writableCard(true, file, new ArrayList<>(), log));
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    byte[] data = new byte[1000];
+    for (int i = 0; i < data.length; i++) {
+      data[i] = (byte) i;
+    }
+
+    assertEquals(1000, virtualReader.write(terminal, INS.UPDATE_BINARY, 0x0101, 10, data));
+    assertEquals(2, log.size());
+    assertArrayEquals(data, Arrays.copyOfRange(file, 10, 1010));
+
+    log.clear();
+    ByteBuffer buffer = ByteBuffer.allocateDirect(600);
+    buffer.put(data, 0, 600).flip();
+    virtualReader.getProfiles()
+        .register(CardProfile.builder().setMaximumCommandLength(200).build());
+    virtualReader.getSessionPool().evict(terminal);
+    assertEquals(600, virtualReader.write(terminal, INS.WRITE_BINARY, 0x0101, 1200, buffer));
+    assertEquals(0, buffer.remaining());
+    assertEquals(4, log.size());
+    assertEquals(0x0640, (log.get(3).getP1() << 8) | log.get(3).getP2());
+    assertArrayEquals(Arrays.copyOf(data, 600), Arrays.copyOfRange(file, 1200, 1800));
+  }
+
+  @Test
+  public void testWriteBinaryWithoutExtendedLength() throws Exception {
+    List<CommandAPDU> log = new ArrayList<>();
+    byte[] file = new byte[2000];
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(writableCard(false, file, new ArrayList<>(), log));
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    byte[] data = new byte[600];
+    Arrays.fill(data, (byte) 0x5A);
+
+    assertEquals(600, virtualReader.write(terminal, INS.UPDATE_BINARY, 0x0101, 0,
+        new ByteArrayInputStream(data)));
+    assertEquals(5, log.size());
+    assertEquals(600, log.get(1).getNc());
+    assertArrayEquals(data, Arrays.copyOf(file, 600));
+    assertEquals(1, virtualReader.getProfiles().getLearnedCount());
+  }
+
+  @Test
+  public void testWriteRecord() throws Exception {
+    List<byte[]> records = new ArrayList<>();
+    List<CommandAPDU> log = new ArrayList<>();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(writableCard(false, new byte[0], records, log));
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    byte[] record = new byte[600];
+    Arrays.fill(record, (byte) 0xA5);
+
+    assertEquals(600, virtualReader.write(terminal, INS.WRITE_RECORD, 0x0101, 1, record));
+    assertEquals(1, records.size());
+    assertArrayEquals(record, records.get(0));
+
+    log.clear();
+    virtualReader.write(terminal, INS.APPEND_RECORD, 0x0101, 0, record);
+    assertEquals(4, log.size());
+    assertEquals(0x10, log.get(1).getCLA());
+    assertEquals(0x10, log.get(2).getCLA());
+    assertEquals(0x00, log.get(3).getCLA());
+    assertEquals(255, log.get(1).getNc());
+    assertEquals(90, log.get(3).getNc());
+    assertArrayEquals(record, records.get(1));
+
+    virtualReader.write(terminal, INS.APPEND_RECORD, 0x0101, 0, new byte[] {1, 2});
+    assertArrayEquals(new byte[] {1, 2}, records.get(2));
+  }
+
+  @Test
+  public void testWriteException() {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(writableCard(true, new byte[10], new ArrayList<>(), new ArrayList<>()));
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+
+    StatusWordException e = assertThrows(StatusWordException.class,
+        () -> virtualReader.write(terminal, INS.UPDATE_BINARY, 0x0101, 0, new byte[20]));
+    assertEquals(0x6B00, e.getSW());
+    assertTrue(e.getMessage().startsWith("UPDATE BINARY failed"));
+    e = assertThrows(StatusWordException.class,
+        () -> virtualReader.write(terminal, INS.UPDATE_BINARY, 0x0202, 0, new byte[1]));
+    assertEquals(0x6A82, e.getSW());
+    assertThrows(IllegalArgumentException.class,
+        () -> virtualReader.write(terminal, INS.READ_BINARY, 0x0101, 0, new byte[1]));
+    assertThrows(IllegalArgumentException.class,
+        () -> virtualReader.write(terminal, INS.UPDATE_BINARY, 0x0101, 0x8000, new byte[1]));
+    assertThrows(IllegalArgumentException.class,
+        () -> virtualReader.write(terminal, INS.WRITE_RECORD, 0x0101, 0, new byte[1]));
+    assertThrows(IllegalArgumentException.class,
+        () -> virtualReader.write(terminal, INS.UPDATE_BINARY, 0x10000, 0, new byte[1]));
+  }
+
+  @Test
+  public void testReadBinaryException() {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(fileCard(10, true, new AtomicInteger()));
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+
+    StatusWordException e = assertThrows(StatusWordException.class,
+        () -> virtualReader.readBinary(terminal, 0x0202, 10));
+    assertEquals(0x6A82, e.getSW());
+    assertThrows(IllegalArgumentException.class,
+        () -> virtualReader.readBinary(terminal, 0x10000, 10));
+    assertThrows(IllegalArgumentException.class,
+        () -> virtualReader.readBinary(terminal, 0x0101, -1));
+  }
+
+  @Test
+  public void testReadOnTerminalAsync() throws Exception {
+    AtomicInteger counter = new AtomicInteger();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(VirtualCard.builder().setLatency(1, TimeUnit.MILLISECONDS)
+        .setResponder(c -> new ResponseAPDU(new byte[] {(byte) counter.getAndIncrement(),
+            (byte) 0x90, 0x00}))
+        .build());
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+
+    List<CompletableFuture<List<ResponseAPDU>>> futures = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      futures.add(virtualReader.readOnTerminalAsync(terminal, commands));
+    }
+    for (int i = 0; i < 10; i++) {
+      List<ResponseAPDU> responses = futures.get(i).get(5, TimeUnit.SECONDS);
+      assertEquals(i * 2, responses.get(0).getData()[0]);
+      assertEquals(i * 2 + 1, responses.get(1).getData()[0]);
+    }
+  }
+
+  @Test
+  public void testReadOnTerminalAsyncException() {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+
+    ExecutionException e = assertThrows(ExecutionException.class,
+        () -> virtualReader.readOnTerminalAsync(terminal, commands).get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof CardException);
+  }
+
+  @Test
+  public void testReadOnTerminalAsyncCancellationAndTimeout() throws Exception {
+    AtomicInteger transmits = new AtomicInteger();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(VirtualCard.builder().setLatency(200, TimeUnit.MILLISECONDS)
+        .setResponder(c -> {
+          transmits.incrementAndGet();
+          return OK;
+        }).build());
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    virtualReader.setReadTimeout(100, TimeUnit.MILLISECONDS);
+
+    CompletableFuture<List<ResponseAPDU>> first = virtualReader.readOnTerminalAsync(terminal,
+        commands[0]);
+    CompletableFuture<List<ResponseAPDU>> second = virtualReader.readOnTerminalAsync(terminal,
+        commands[0]);
+    assertTrue(second.cancel(true));
+    ExecutionException e =
+        assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+    assertTrue(e.getCause() instanceof TimeoutException);
+
+    virtualReader.setReadTimeout(5, TimeUnit.SECONDS);
+    virtualReader.readOnTerminalAsync(terminal, commands[0]).get(5, TimeUnit.SECONDS);
+    assertEquals(2, transmits.get());
+  }
+
+  @Test
+  public void testReadAsync() throws Exception {
+    VirtualCardTerminal present = new VirtualCardTerminal("Present Reader");
+    VirtualCardTerminal absent = new VirtualCardTerminal("Absent Reader");
+    present.insert(VirtualCard.builder().setResponder(c -> OK).build());
+    CardReader virtualReader =
+        CardReader.newInstance(VirtualTerminals.newFactory(present, absent));
+
+    Map<CardTerminal, List<ResponseAPDU>> responses =
+        virtualReader.readAsync(commands).get(5, TimeUnit.SECONDS);
+    assertEquals(Arrays.asList(present, absent), new ArrayList<>(responses.keySet()));
+    assertEquals(2, responses.get(present).size());
+    assertTrue(responses.get(absent).isEmpty());
+  }
+
+  @Test
+  public void testReadOnApplication() throws Exception {
+    byte[] aid1 = {(byte) 0xA0, 0x00, 0x00, 0x00, 0x01};
+    byte[] aid2 = {(byte) 0xA0, 0x00, 0x00, 0x00, 0x02};
+    AtomicInteger selects = new AtomicInteger();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(dualAppletCard(selects));
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    CommandAPDU getData = new CommandAPDU(0x00, INS.GET_DATA, 0x00, 0x00, 256);
+
+    for (int i = 0; i < 3; i++) {
+      assertEquals(0x01,
+          virtualReader.readOnApplication(terminal, aid1, getData).get(0).getData()[0]);
+      assertEquals(0x02,
+          virtualReader.readOnApplication(terminal, aid2, getData).get(0).getData()[0]);
+    }
+    assertEquals(2, selects.get());
+
+    StatusWordException e = assertThrows(StatusWordException.class,
+        () -> virtualReader.readOnApplication(terminal, new byte[] {(byte) 0xA0, 0x09}, getData));
+    assertEquals(0x6A82, e.getSW());
+    assertThrows(IllegalArgumentException.class,
+        () -> virtualReader.readOnApplication(terminal, new byte[0], getData));
+  }
+
+  @Test
+  public void testReadOnApplicationAfterSelectingAnother() throws Exception {
+    byte[] aid1 = {(byte) 0xA0, 0x00, 0x00, 0x00, 0x01};
+    byte[] aid2 = {(byte) 0xA0, 0x00, 0x00, 0x00, 0x02};
+    AtomicInteger selects = new AtomicInteger();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(dualAppletCard(selects));
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    CommandAPDU getData = new CommandAPDU(0x00, INS.GET_DATA, 0x00, 0x00, 256);
+    CommandAPDU selectAid2 = new CommandAPDU(0x00, INS.SELECT_FILE, 0x04, 0x00, aid2, 256);
+
+    List<ResponseAPDU> responses =
+        virtualReader.readOnApplication(terminal, aid1, selectAid2, getData);
+    assertEquals(0x02, responses.get(1).getData()[0]);
+    assertEquals(0x01,
+        virtualReader.readOnApplication(terminal, aid1, getData).get(0).getData()[0]);
+    assertEquals(3, selects.get());
+    assertEquals(0x01,
+        virtualReader.readOnApplication(terminal, aid1, getData).get(0).getData()[0]);
+    assertEquals(3, selects.get());
+  }
+
+  @Test
+  public void testReadOnApplicationWithoutLogicalChannel() throws Exception {
+    when(card.openLogicalChannel()).thenThrow(new CardException("6881"));
+    CardReader mockReader = CardReader.newInstance(TerminalFactory.getDefault());
+    byte[] aid = {(byte) 0xA0, 0x00, 0x00, 0x00, 0x01};
+
+    assertEquals(1, mockReader.readOnApplication(terminal, aid, commands[1]).size());
+    assertEquals(1, mockReader.readOnApplication(terminal, aid, commands[1]).size());
+    verify(card, times(1)).openLogicalChannel();
+    verify(channel, times(4)).transmit(any(CommandAPDU.class));
+  }
+
+  @Test
+  public void testSelectElision() throws Exception {
+    AtomicInteger selects = new AtomicInteger();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    VirtualCard card = VirtualCard.builder().setResponder(c -> {
+      if (c.getINS() == (INS.SELECT_FILE & 0xFF)) {
+        selects.incrementAndGet();
+        return new ResponseAPDU(new byte[] {0x6F, 0x00, (byte) 0x90, 0x00});
+      }
+      return OK;
+    }).build();
+    terminal.insert(card);
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    assertFalse(virtualReader.isSelectElision());
+
+    virtualReader.readOnTerminal(terminal, commands);
+    virtualReader.readOnTerminal(terminal, commands);
+    assertEquals(2, selects.get());
+
+    virtualReader.setSelectElision(true);
+    for (int i = 0; i < 3; i++) {
+      List<ResponseAPDU> responses = virtualReader.readOnTerminal(terminal, commands);
+      assertEquals(2, responses.size());
+      assertArrayEquals(new byte[] {0x6F, 0x00}, responses.get(0).getData());
+    }
+    assertEquals(2, selects.get());
+
+    CommandAPDU selectFile = new CommandAPDU(0x00, INS.SELECT_FILE, 0x00, 0x00, new byte[] {1, 1});
+    CommandAPDU readBinary = new CommandAPDU(0x00, INS.READ_BINARY, 0x81, 0x00, 256);
+    virtualReader.readOnTerminal(terminal, selectFile, readBinary);
+    virtualReader.readOnTerminal(terminal, selectFile, readBinary);
+    assertEquals(4, selects.get());
+
+    terminal.insert(card);
+    virtualReader.readOnTerminal(terminal, commands);
+    assertEquals(5, selects.get());
+  }
+
+  @Test
+  public void testResponseCache() throws Exception {
+    AtomicInteger reads = new AtomicInteger();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    VirtualCard card = uidCard(new byte[] {0x04, 0x11, 0x22, 0x33}, reads);
+    terminal.insert(card);
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    assertNull(virtualReader.getResponseCache());
+    ResponseCache cache = ResponseCache.builder().build();
+    virtualReader.setResponseCache(cache);
+
+    CommandAPDU select =
+        new CommandAPDU(0x00, INS.SELECT_FILE, 0x04, 0x00, new byte[] {(byte) 0xA0, 0x01});
+    CommandAPDU readBinary = new CommandAPDU(0x00, INS.READ_BINARY, 0x00, 0x00, 256);
+    CommandAPDU getData = new CommandAPDU(0x00, INS.GET_DATA, 0x00, 0x5A, 256);
+    for (int i = 0; i < 3; i++) {
+      List<ResponseAPDU> responses = virtualReader.readOnTerminal(terminal, select, readBinary,
+          getData);
+      assertArrayEquals(new byte[] {(byte) 0xB0}, responses.get(1).getData());
+      assertArrayEquals(new byte[] {(byte) 0xCA}, responses.get(2).getData());
+    }
+    assertEquals(2, reads.get());
+    assertEquals(2, cache.size());
+
+    virtualReader.readOnTerminal(terminal, readBinary);
+    assertEquals(2, reads.get());
+    virtualReader.readOnTerminal(terminal, select,
+        new CommandAPDU(0x00, INS.UPDATE_BINARY, 0x00, 0x00, new byte[] {1}), readBinary);
+    assertEquals(3, reads.get());
+
+    terminal.insert(card);
+    virtualReader.readOnTerminal(terminal, select, readBinary);
+    assertEquals(4, reads.get());
+
+    terminal.insert(uidCard(null, reads));
+    virtualReader.readOnTerminal(terminal, select, readBinary);
+    virtualReader.readOnTerminal(terminal, select, readBinary);
+    assertEquals(6, reads.get());
+  }
+
+  @Test
+  public void testResponseCacheSkipsRelativeRecords() throws Exception {
+    AtomicInteger reads = new AtomicInteger();
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(uidCard(new byte[] {0x04, 0x11, 0x22, 0x33}, reads));
+    CardReader virtualReader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    ResponseCache cache = ResponseCache.builder().build();
+    virtualReader.setResponseCache(cache);
+
+    CommandAPDU readNext = new CommandAPDU(0x00, INS.READ_RECORD, 0x00, 0x0A, 256);
+    CommandAPDU readRecord = new CommandAPDU(0x00, INS.READ_RECORD, 0x01, 0x0C, 256);
+    for (int i = 0; i < 3; i++) {
+      virtualReader.readOnTerminal(terminal, readNext, readRecord);
+    }
+    assertEquals(3 + 1, reads.get());
+    assertEquals(1, cache.size());
+  }
+
+  static VirtualCard uidCard(byte[] uid, AtomicInteger reads) {
+    return VirtualCard.builder().setResponder(c -> {
+      if (c.getCLA() == 0xFF && c.getINS() == 0xCA) {
+        if (uid == null) return new ResponseAPDU(new byte[] {0x6D, 0x00});
+        byte[] response = Arrays.copyOf(uid, uid.length + 2);
+        response[uid.length] = (byte) 0x90;
+        return new ResponseAPDU(response);
+      }
+      if (c.getINS() == (INS.SELECT_FILE & 0xFF) || c.getINS() == (INS.UPDATE_BINARY & 0xFF)) {
+        return OK;
+      }
+      reads.incrementAndGet();
+      return new ResponseAPDU(new byte[] {(byte) c.getINS(), (byte) 0x90, 0x00});
+    }).build();
+  }
+
+  static VirtualCard dualAppletCard(AtomicInteger selects) {
+    Map<Integer, Byte> selected = new ConcurrentHashMap<>();
+    return VirtualCard.builder().setResponder(c -> {
+      int channel = (c.getCLA() & 0x40) == 0 ? c.getCLA() & 0x03 : 4 + (c.getCLA() & 0x0F);
+      if (c.getINS() == (INS.SELECT_FILE & 0xFF) && c.getP1() == 0x04) {
+        byte[] aid = c.getData();
+        if (aid.length != 5) return new ResponseAPDU(new byte[] {0x6A, (byte) 0x82});
+        selects.incrementAndGet();
+        selected.put(channel, aid[4]);
+        return OK;
+      }
+      Byte applet = selected.get(channel);
+      if (applet == null) return new ResponseAPDU(new byte[] {0x69, (byte) 0x85});
+      return new ResponseAPDU(new byte[] {applet, (byte) 0x90, 0x00});
+    }).build();
+  }
+
+  static VirtualCard writableCard(boolean extendedLength, byte[] file, List<byte[]> records,
+      List<CommandAPDU> log) {
+    ByteArrayOutputStream chain = new ByteArrayOutputStream();
+    return VirtualCard.builder().setResponder(c -> {
+      log.add(c);
+      if (c.getINS() == (INS.SELECT_FILE & 0xFF)) {
+        return c.getData()[0] == 0x01 ? OK
+            : new ResponseAPDU(new byte[] {(byte) 0x6A, (byte) 0x82});
+      }
+      if (c.getNc() > 255 && !extendedLength) return new ResponseAPDU(new byte[] {0x67, 0x00});
+
+      byte[] data = c.getData();
+      switch (c.getINS()) {
+        case INS.UPDATE_BINARY & 0xFF:
+        case INS.WRITE_BINARY & 0xFF:
+          int offset = (c.getP1() << 8) | c.getP2();
+          if (offset + data.length > file.length) {
+            return new ResponseAPDU(new byte[] {0x6B, 0x00});
+          }
+          System.arraycopy(data, 0, file, offset, data.length);
+          return OK;
+        case INS.WRITE_RECORD & 0xFF:
+        case INS.APPEND_RECORD & 0xFF:
+          chain.write(data, 0, data.length);
+          if ((c.getCLA() & 0x10) == 0) {
+            records.add(chain.toByteArray());
+            chain.reset();
+          }
+          return OK;
+        default:
+          return new ResponseAPDU(new byte[] {0x6D, 0x00});
+      }
+    }).build();
+  }
+
+  static VirtualCard fileCard(int size, boolean extendedLength, AtomicInteger reads) {
+    byte[] file = new byte[size];
+    for (int i = 0; i < size; i++) {
+      file[i] = (byte) i;
+    }
+    return VirtualCard.builder().setResponder(c -> {
+      if (c.getINS() == (INS.SELECT_FILE & 0xFF)) {
+        return c.getData()[0] == 0x01 ? OK
+            : new ResponseAPDU(new byte[] {(byte) 0x6A, (byte) 0x82});
+      }
+      if (c.getINS() != (INS.READ_BINARY & 0xFF)) return new ResponseAPDU(new byte[] {0x6D, 0x00});
+      if (c.getNe() > 256 && !extendedLength) return new ResponseAPDU(new byte[] {0x67, 0x00});
+
+      reads.incrementAndGet();
+      int offset = (c.getP1() << 8) | c.getP2();
+      if (offset >= size) return new ResponseAPDU(new byte[] {0x6B, 0x00});
+      int length = Math.min(c.getNe(), size - offset);
+      byte[] response = Arrays.copyOfRange(file, offset, offset + length + 2);
+      boolean eof = length < c.getNe();
+      response[length] = eof ? (byte) 0x62 : (byte) 0x90;
+      response[length + 1] = eof ? (byte) 0x82 : 0x00;
+      return new ResponseAPDU(response);
+    }).build();
+  }
+
   @Test
   public void testToString() {
     assertEquals(CardReader.class.getSimpleName(), reader.toString());
@@ -0,0 +1,125 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import java.util.concurrent.TimeUnit;
+import javax.smartcardio.ATR;
+import javax.smartcardio.Card;
+import javax.smartcardio.CardChannel;
+import javax.smartcardio.CardTerminal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class CardSessionPoolTest {
+
+  CardSessionPool pool;
+
+  @Mock
+  CardTerminal terminal;
+
+  @Mock
+  Card card;
+
+  @Mock
+  CardChannel channel;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    MockitoAnnotations.openMocks(this);
+    when(terminal.connect(any(String.class))).thenReturn(card);
+    when(card.getBasicChannel()).thenReturn(channel);
+    when(card.getATR()).thenReturn(new ATR(new byte[] {0x3B, 0x00}));
+    when(card.getProtocol()).thenReturn("T=1");
+
+    pool = new CardSessionPool();
+  }
+
+  @Test
+  public void testAcquire() throws Exception {
+    CardSession session = pool.acquire(terminal);
+    assertSame(channel, session.getChannel());
+    assertFalse(session.isReused());
+    assertSame(session, pool.acquire(terminal));
+    assertTrue(session.isReused());
+    verify(terminal, times(1)).connect("*");
+    assertEquals(1, pool.size());
+  }
+
+  @Test
+  public void testProfileProtocol() throws Exception {
+    CardProfileRegistry profiles = new CardProfileRegistry();
+    profiles.register(CardProfile.builder().setATR("3B00").setProtocol("T=0").build());
+    pool.setProfiles(profiles);
+
+    CardSession session = pool.acquire(terminal);
+    assertEquals("T=0", session.getProfile().getProtocol());
+    verify(card, times(1)).disconnect(false);
+    verify(terminal, times(1)).connect("T=0");
+
+    profiles.unregister(profiles.getProfiles().get(0));
+    pool.evict(terminal);
+    pool.acquire(terminal);
+    verify(terminal, times(2)).connect("*");
+    verify(terminal, times(1)).connect("T=0");
+  }
+
+  @Test
+  public void testEvict() throws Exception {
+    pool.acquire(terminal);
+    pool.evict(terminal);
+    assertFalse(pool.isOpen(terminal));
+    verify(card, times(1)).disconnect(false);
+  }
+
+  @Test
+  public void testIdleTimeout() throws Exception {
+    pool.setIdleTimeout(0, TimeUnit.SECONDS);
+    assertEquals(0, pool.getIdleTimeout(TimeUnit.MILLISECONDS));
+    pool.acquire(terminal);
+    pool.acquire(terminal);
+    verify(terminal, times(2)).connect("*");
+    verify(card, times(1)).disconnect(false);
+    assertEquals(1, pool.evictIdle());
+    assertEquals(0, pool.size());
+  }
+
+  @Test
+  public void testSetIdleTimeoutException() {
+    assertThrows(IllegalArgumentException.class, () -> pool.setIdleTimeout(-1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCloseAll() throws Exception {
+    pool.acquire(terminal);
+    pool.closeAll();
+    assertEquals(0, pool.size());
+    verify(card, times(1)).disconnect(false);
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("CardSessionPool{size=0}", pool.toString());
+  }
+
+}
@@ -0,0 +1,158 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import javax.smartcardio.CommandAPDU;
+import org.junit.jupiter.api.Test;
+import com.google.common.testing.EqualsTester;
+
+public class CommandScriptTest {
+
+  CommandAPDU select =
+      new CommandAPDU(0x00, INS.SELECT_FILE, 0x04, 0x00, new byte[] {(byte) 0xA0, 0x01});
+
+  @Test
+  public void testOf() {
+    CommandAPDU read = new CommandAPDU(0x00, INS.READ_BINARY, 0x00, 0x00, 256);
+    CommandScript script = CommandScript.of(Arrays.asList(select, read));
+    assertEquals(2, script.size());
+    assertEquals(Arrays.asList(select, read), script.getCommands());
+    assertEquals(select, script.getCommand(0));
+    assertTrue(script.isComplete());
+    assertTrue(script.getSlotNames().isEmpty());
+  }
+
+  @Test
+  public void testTemplate() {
+    CommandScript script = CommandScript.builder().add("00A4 0400 02 A001")
+        .add("00 B0 {offset:2} {le:1}").add("00 B2 {record:1} 0C 00").build();
+    assertEquals(select, script.getCommand(0));
+    assertEquals(Arrays.asList("offset", "le", "record"), new ArrayList<>(script.getSlotNames()));
+    assertFalse(script.isComplete());
+    assertThrows(IllegalStateException.class, script::checkComplete);
+  }
+
+  @Test
+  public void testWith() {
+    CommandScript script =
+        CommandScript.builder().add("00 B0 {offset:2} {le:1}").add("00 B2 {rec:1} 0C 00").build();
+    CommandScript filled = script.with("offset", 0x0102).with("le", 0x10).with("rec", 3);
+    assertTrue(filled.isComplete());
+    assertArrayEquals(new byte[] {0x00, (byte) 0xB0, 0x01, 0x02, 0x10},
+        filled.getCommand(0).getBytes());
+    assertArrayEquals(new byte[] {0x00, (byte) 0xB2, 0x03, 0x0C, 0x00},
+        filled.getCommand(1).getBytes());
+    assertFalse(script.isComplete());
+    assertArrayEquals(new byte[] {0x00, (byte) 0xB0, 0x00, 0x00, 0x00},
+        script.getCommand(0).getBytes());
+
+    assertEquals(filled.with("offset", 0x0102),
+        script.with("offset", new byte[] {1, 2}).with("le", 0x10).with("rec", 3));
+    assertThrows(IllegalArgumentException.class, () -> script.with("le", 0x100));
+    assertThrows(IllegalArgumentException.class, () -> script.with("le", -1));
+    assertThrows(IllegalArgumentException.class, () -> script.with("offset", new byte[1]));
+    assertThrows(IllegalArgumentException.class, () -> script.with("unknown", 1));
+  }
+
+  @Test
+  public void testCommandsAreBuiltOnce() {
+    CommandScript script = CommandScript.builder().add("00A4 0400 02 A001")
+        .add("00 B0 {offset:2} 10").add("00 B2 01 0C 00").build();
+    assertSame(script.getCommand(0), script.getCommand(0));
+
+    CommandScript filled = script.with("offset", 0x0102);
+    assertSame(script.getCommand(0), filled.getCommand(0));
+    assertNotSame(script.getCommand(1), filled.getCommand(1));
+    assertSame(script.getCommand(2), filled.getCommand(2));
+    assertEquals(0x0102, (filled.getCommand(1).getP1() << 8) | filled.getCommand(1).getP2());
+  }
+
+  @Test
+  public void testRepeatedSlot() {
+    CommandScript script =
+        CommandScript.builder().add("00 B0 00 {off:1} 01").add("00 B0 00 {off:1} 02").build();
+    CommandScript filled = script.with("off", 7);
+    assertEquals(Collections.singleton("off"), filled.getSlotNames());
+    assertEquals(7, filled.getCommand(0).getP2());
+    assertEquals(7, filled.getCommand(1).getP2());
+    assertThrows(IllegalArgumentException.class,
+        () -> CommandScript.builder().add("00 B0 {off:1} {off:2}"));
+  }
+
+  @Test
+  public void testInvalidTemplate() {
+    CommandScript.CommandScriptBuilder builder = CommandScript.builder();
+    assertThrows(IllegalArgumentException.class, () -> builder.add("00 B0 0"));
+    assertThrows(IllegalArgumentException.class, () -> builder.add("00 B0 ZZ 00"));
+    assertThrows(IllegalArgumentException.class, () -> builder.add("00 B0 {off} 00"));
+    assertThrows(IllegalArgumentException.class, () -> builder.add("00 B0 {off:0} 00"));
+    assertThrows(IllegalArgumentException.class, () -> builder.add("00 B0 {:1} 00"));
+    assertThrows(IllegalArgumentException.class, () -> builder.add("00 B0 {off:1 00"));
+    assertThrows(IllegalArgumentException.class, () -> builder.add("00 B0 {x:1} 00 05 01"));
+    assertEquals(0, builder.build().size());
+    assertTrue(builder.build().getSlotNames().isEmpty());
+  }
+
+  @Test
+  public void testConditions() {
+    CommandScript script = CommandScript.builder().add(select).stopOn(0x6A82)
+        .add("00 B0 00 00 00").when(0x9000).add("00 C0 00 00 00").when(0x6282, 0x6B00).build();
+    assertTrue(script.accepts(0, -1));
+    assertTrue(script.stopsOn(0, 0x6A82));
+    assertFalse(script.stopsOn(0, 0x9000));
+    assertFalse(script.accepts(1, -1));
+    assertTrue(script.accepts(1, 0x9000));
+    assertFalse(script.accepts(2, 0x9000));
+    assertTrue(script.accepts(2, 0x6B00));
+    assertFalse(script.stopsOn(2, 0x6B00));
+
+    assertThrows(IllegalStateException.class, () -> CommandScript.builder().when(0x9000));
+    assertThrows(IllegalArgumentException.class,
+        () -> CommandScript.builder().add(select).stopOn(0x10000));
+  }
+
+  @Test
+  public void testEquality() {
+    new EqualsTester()
+        .addEqualityGroup(CommandScript.of(Arrays.asList(select)),
+            CommandScript.builder().add("00 A4 04 00 02 A0 01").build())
+        .addEqualityGroup(CommandScript.builder().add(select).stopOn(0x6A82).build())
+        .testEquals();
+    assertNotEquals(CommandScript.builder().add("00 B0 {a:1} 00").build(),
+        CommandScript.builder().add("00 B0 {a:1} 00").build().with("a", 0));
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("CommandScript{size=1, bytes=5, slots=[off]}",
+        CommandScript.builder().add("00 B0 00 {off:1} 00").build().toString());
+  }
+
+}
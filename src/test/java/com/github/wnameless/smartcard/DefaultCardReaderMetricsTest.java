@@ -0,0 +1,125 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class DefaultCardReaderMetricsTest {
+
+  VirtualCardTerminal terminal;
+  CardReader reader;
+  DefaultCardReaderMetrics metrics;
+
+  @BeforeEach
+  public void setUp() {
+    terminal = new VirtualCardTerminal("Metrics Reader");
+    terminal.insert(VirtualCard.builder()
+        .setResponder(c -> c.getINS() == (INS.GET_DATA & 0xFF)
+            ? new ResponseAPDU(new byte[] {0x01, 0x02, (byte) 0x90, 0x00})
+            : new ResponseAPDU(new byte[] {0x6A, (byte) 0x82}))
+        .build());
+    reader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    metrics = (DefaultCardReaderMetrics) reader.getMetrics();
+  }
+
+  @Test
+  public void testRecording() {
+    assertNull(metrics.getTerminalMetrics(terminal));
+    reader.readOnTerminal(terminal,
+        APDU.builder().setINS(INS.GET_DATA).setP1((byte) 0x11).setData("0000").build(),
+        new CommandAPDU(0x00, INS.SELECT_FILE, 0x00, 0x0C, new byte[] {0x3F, 0x00}));
+
+    TerminalMetrics terminalMetrics = metrics.getTerminalMetrics(terminal);
+    assertEquals("Metrics Reader", terminalMetrics.getTerminalName());
+    assertEquals(1, terminalMetrics.getConnectCount());
+    assertEquals(2, terminalMetrics.getTransmitCount());
+    assertEquals(1, terminalMetrics.getTransmitLatency(INS.GET_DATA).getCount());
+    assertEquals(1, terminalMetrics.getTransmitLatency(INS.SELECT_FILE).getCount());
+    assertNull(terminalMetrics.getTransmitLatency(INS.READ_BINARY));
+    assertEquals(7 + 7, terminalMetrics.getBytesSent());
+    assertEquals(4 + 2, terminalMetrics.getBytesReceived());
+    assertEquals(1, terminalMetrics.getStatusWordCount(0x9000));
+    assertEquals(0, terminalMetrics.getStatusWordCount(0x6A83));
+    assertEquals(0, terminalMetrics.getStatusWordCount(0x19000));
+    assertEquals(1, terminalMetrics.getStatusWordCounts().get("6A82"));
+    assertEquals(List.of("6A82", "9000"),
+        List.copyOf(terminalMetrics.getStatusWordCounts().keySet()));
+    assertEquals(List.of("A4", "CA"),
+        List.copyOf(terminalMetrics.getTransmitLatency99thPercentileByINS().keySet()));
+    assertEquals(1, terminalMetrics.getQueueWait().getCount());
+    assertEquals(0, terminalMetrics.getMaxQueueDepth());
+    assertEquals(0, terminalMetrics.getErrorCount());
+  }
+
+  @Test
+  public void testErrors() {
+    terminal.remove();
+    assertTrue(reader.readOnTerminal(terminal, new CommandAPDU(0x00, 0xCA, 0x00, 0x00)).isEmpty());
+    assertEquals(1, metrics.getTerminalMetrics(terminal).getErrorCount());
+    assertEquals(0, metrics.getTerminalMetrics(terminal).getConnectCount());
+  }
+
+  @Test
+  public void testMBeans() throws Exception {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    reader.readOnTerminal(terminal, new CommandAPDU(0x00, 0xCA, 0x00, 0x00));
+    ObjectName name = DefaultCardReaderMetrics.objectName(metrics.getTerminalMetrics(terminal));
+    assertEquals("com.github.wnameless.smartcard:type=TerminalMetrics,name=\"Metrics Reader\"",
+        name.toString());
+
+    metrics.registerMBeans();
+    try {
+      assertTrue(server.isRegistered(name));
+      assertEquals(1L, server.getAttribute(name, "TransmitCount"));
+    } finally {
+      metrics.unregisterMBeans();
+    }
+    assertFalse(server.isRegistered(name));
+  }
+
+  @Test
+  public void testNone() {
+    reader.setMetrics(CardReaderMetrics.NONE);
+    reader.readOnTerminal(terminal, new CommandAPDU(0x00, 0xCA, 0x00, 0x00));
+    assertNull(metrics.getTerminalMetrics(terminal));
+  }
+
+  @Test
+  public void testEncodedLength() {
+    for (CommandAPDU command : new CommandAPDU[] {new CommandAPDU(0x00, 0xCA, 0x00, 0x00),
+        new CommandAPDU(0x00, 0xCA, 0x00, 0x00, 256), new CommandAPDU(0x00, 0xCA, 0x00, 0x00, 257),
+        new CommandAPDU(0x00, 0xA4, 0x00, 0x00, new byte[300]),
+        new CommandAPDU(0x00, 0xA4, 0x00, 0x00, new byte[3], 65536),
+        new CommandAPDU(0x00, 0xA4, 0x00, 0x00, new byte[3], 16)}) {
+      assertEquals(command.getBytes().length, Transport.encodedLength(command));
+    }
+  }
+
+}
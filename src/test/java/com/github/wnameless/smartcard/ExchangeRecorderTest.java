@@ -0,0 +1,192 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import javax.smartcardio.ATR;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ExchangeRecorderTest {
+
+  @TempDir
+  Path directory;
+
+  CommandAPDU select = new CommandAPDU(0x00, INS.SELECT_FILE, 0x00, 0x00, new byte[] {1, 1});
+  CommandAPDU read = new CommandAPDU(0x00, INS.READ_BINARY, 0x00, 0x00, 4);
+
+  @Test
+  public void testBuilder() {
+    assertThrows(IllegalStateException.class, () -> ExchangeRecorder.builder().build());
+    assertThrows(IllegalArgumentException.class,
+        () -> ExchangeRecorder.builder().setSegmentSize(1023));
+    assertThrows(NullPointerException.class, () -> ExchangeRecorder.builder().setDirectory(null));
+  }
+
+  @Test
+  public void testRecordAndRead() throws Exception {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(CardReaderTest.fileCard(16, false, new AtomicInteger()));
+    CardReader reader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    assertNull(reader.getExchangeRecorder());
+    Instant start = Instant.now();
+    try (ExchangeRecorder recorder =
+        ExchangeRecorder.builder().setDirectory(directory.resolve("log")).build()) {
+      reader.setExchangeRecorder(recorder);
+      reader.readOnTerminal(terminal, select, read);
+      ByteBuffer response = ByteBuffer.allocate(260);
+      reader.transmit(terminal, ByteBuffer.wrap(read.getBytes()), response);
+      assertEquals(3, recorder.getRecordCount());
+    }
+    reader.readOnTerminal(terminal, select, read);
+
+    List<ExchangeRecorder.Exchange> exchanges =
+        ExchangeRecorder.read(directory.resolve("log"));
+    assertEquals(3, exchanges.size());
+    ExchangeRecorder.Exchange exchange = exchanges.get(1);
+    assertEquals("Virtual Reader", exchange.getTerminalName());
+    assertEquals(new ATR(new byte[] {0x3B, 0x00}), exchange.getATR());
+    assertEquals(read, exchange.getCommand());
+    assertArrayEquals(new byte[] {0, 1, 2, 3}, exchange.getResponse().getData());
+    assertTrue(exchange.getLatency(TimeUnit.NANOSECONDS) > 0);
+    assertTrue(!exchange.getTimestamp().isBefore(start.minusSeconds(1)));
+    assertEquals(read, exchanges.get(2).getCommand());
+    assertEquals(exchange.getResponse(), exchanges.get(2).getResponse());
+  }
+
+  @Test
+  public void testSegments() throws Exception {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    byte[] data = new byte[600];
+    terminal.insert(VirtualCard.builder().setResponder(c -> {
+      byte[] response = new byte[data.length + 2];
+      response[data.length] = (byte) 0x90;
+      return new ResponseAPDU(response);
+    }).build());
+    CardReader reader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    try (ExchangeRecorder recorder =
+        ExchangeRecorder.builder().setDirectory(directory).setSegmentSize(1024).build()) {
+      reader.setExchangeRecorder(recorder);
+      for (int i = 0; i < 3; i++) {
+        reader.readOnTerminal(terminal, read);
+      }
+    }
+    try (ExchangeRecorder recorder = ExchangeRecorder.builder().setDirectory(directory).build()) {
+      reader.setExchangeRecorder(recorder);
+      reader.readOnTerminal(terminal, select);
+    }
+
+    try (Stream<Path> segments = Files.list(directory)) {
+      assertEquals(4, segments.count());
+    }
+    List<ExchangeRecorder.Exchange> exchanges = ExchangeRecorder.read(directory);
+    assertEquals(4, exchanges.size());
+    assertEquals(600, exchanges.get(2).getResponse().getNr());
+    assertEquals(select, exchanges.get(3).getCommand());
+  }
+
+  @Test
+  public void testSharedDirectory() throws Exception {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    byte[] response = new byte[602];
+    response[600] = (byte) 0x90;
+    terminal.insert(VirtualCard.builder().setResponder(c -> new ResponseAPDU(response)).build());
+    CardReader first = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    CardReader second = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    try (
+        ExchangeRecorder recorder1 =
+            ExchangeRecorder.builder().setDirectory(directory).setSegmentSize(1024).build();
+        ExchangeRecorder recorder2 =
+            ExchangeRecorder.builder().setDirectory(directory).setSegmentSize(1024).build()) {
+      first.setExchangeRecorder(recorder1);
+      second.setExchangeRecorder(recorder2);
+      for (int i = 0; i < 3; i++) {
+        first.readOnTerminal(terminal, read);
+        second.readOnTerminal(terminal, read);
+      }
+      assertEquals(3, recorder1.getRecordCount());
+      assertEquals(3, recorder2.getRecordCount());
+    }
+    assertEquals(6, ExchangeRecorder.read(directory).size());
+  }
+
+  @Test
+  public void testCorruptedSegment() throws Exception {
+    Files.write(directory.resolve("exchanges-000000.log"), new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+    assertThrows(IOException.class, () -> ExchangeRecorder.read(directory));
+  }
+
+  @Test
+  public void testReplay() throws Exception {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(CardReaderTest.fileCard(16, false, new AtomicInteger()));
+    CardReader reader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    CommandAPDU read2 = new CommandAPDU(0x00, INS.READ_BINARY, 0x00, 0x04, 4);
+    List<ResponseAPDU> recorded;
+    try (ExchangeRecorder recorder = ExchangeRecorder.builder().setDirectory(directory).build()) {
+      reader.setExchangeRecorder(recorder);
+      recorded = reader.readOnTerminal(terminal, select, read, read2);
+    }
+    assertThrows(IllegalArgumentException.class, () -> ExchangeRecorder.replay(directory, 0));
+
+    List<VirtualCardTerminal> terminals =
+        ExchangeRecorder.replay(directory, Double.POSITIVE_INFINITY);
+    assertEquals(1, terminals.size());
+    assertEquals("Virtual Reader", terminals.get(0).getName());
+    CardReader replayer = CardReader.newInstance(VirtualTerminals.newFactory(terminals));
+    for (int i = 0; i < 3; i++) {
+      assertEquals(recorded, replayer.readOnTerminal(terminals.get(0), select, read, read2));
+    }
+    assertEquals(recorded.get(2), replayer.readOnTerminal(terminals.get(0), read2).get(0));
+    assertEquals(0x6F00, replayer
+        .readOnTerminal(terminals.get(0), new CommandAPDU(0x00, INS.GET_DATA, 0, 0, 256)).get(0)
+        .getSW());
+  }
+
+  @Test
+  public void testReplayATR() throws Exception {
+    VirtualCardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+    terminal.insert(VirtualCard.builder().setATR("3B8F8001")
+        .setResponder(c -> new ResponseAPDU(new byte[] {(byte) 0x90, 0x00})).build());
+    CardReader reader = CardReader.newInstance(VirtualTerminals.newFactory(terminal));
+    try (ExchangeRecorder recorder = ExchangeRecorder.builder().setDirectory(directory).build()) {
+      reader.setExchangeRecorder(recorder);
+      reader.readOnTerminal(terminal, select);
+    }
+
+    VirtualCardTerminal replayed = ExchangeRecorder.replay(directory, 1).get(0);
+    assertEquals(terminal.connect("*").getATR(), replayed.connect("*").getATR());
+  }
+
+}
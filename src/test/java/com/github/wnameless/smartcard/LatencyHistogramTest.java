@@ -0,0 +1,75 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import org.junit.jupiter.api.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void testEmpty() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMean(), 0);
+    assertEquals(0, histogram.getMax());
+    assertEquals(0, histogram.getValueAtPercentile(99));
+  }
+
+  @Test
+  public void testRecord() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (long i = 1; i <= 1000; i++) {
+      histogram.record(i * 1000);
+    }
+    assertEquals(1000, histogram.getCount());
+    assertEquals(500500, histogram.getMean(), 0.001);
+    assertEquals(1000000, histogram.getMax());
+    assertWithin(500000, histogram.getValueAtPercentile(50));
+    assertWithin(990000, histogram.getValueAtPercentile(99));
+    assertEquals(1000000, histogram.getValueAtPercentile(100));
+  }
+
+  @Test
+  public void testOutOfRange() {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-1);
+    histogram.record(Long.MAX_VALUE);
+    assertEquals(0, histogram.getValueAtPercentile(50));
+    assertEquals((1L << 40) - 1, histogram.getMax());
+    assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101));
+    assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(Double.NaN));
+  }
+
+  @Test
+  public void testBuckets() {
+    for (long value = 0; value < 100000; value++) {
+      int index = LatencyHistogram.index(value);
+      assertTrue(LatencyHistogram.upperBound(index) >= value);
+      assertTrue(index == 0 || LatencyHistogram.upperBound(index - 1) < value);
+    }
+  }
+
+  private static void assertWithin(long expected, long actual) {
+    assertTrue(Math.abs(actual - expected) <= expected / 16, expected + " ~ " + actual);
+  }
+
+}
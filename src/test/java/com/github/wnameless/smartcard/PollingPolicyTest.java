@@ -0,0 +1,100 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+import com.google.common.testing.EqualsTester;
+
+public class PollingPolicyTest {
+
+  long ms = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void testDefaults() {
+    PollingPolicy policy = PollingPolicy.builder().build();
+    assertEquals(100, policy.getMinimumInterval(TimeUnit.MILLISECONDS));
+    assertEquals(5, policy.getMaximumInterval(TimeUnit.SECONDS));
+    assertEquals(2, policy.getBackoffMultiplier(), 0);
+    assertEquals(Double.POSITIVE_INFINITY, policy.getMaximumRate(), 0);
+  }
+
+  @Test
+  public void testBackoff() {
+    PollingPolicy policy = PollingPolicy.builder().setMinimumInterval(10, TimeUnit.MILLISECONDS)
+        .setMaximumInterval(50, TimeUnit.MILLISECONDS).build();
+    assertEquals(10 * ms, policy.nextInterval(0, false, 1));
+    assertEquals(20 * ms, policy.nextInterval(10 * ms, false, 1));
+    assertEquals(40 * ms, policy.nextInterval(20 * ms, false, 1));
+    assertEquals(50 * ms, policy.nextInterval(40 * ms, false, 1));
+    assertEquals(50 * ms, policy.nextInterval(50 * ms, false, 1));
+    assertEquals(10 * ms, policy.nextInterval(50 * ms, true, 1));
+  }
+
+  @Test
+  public void testMaximumRate() {
+    PollingPolicy policy = PollingPolicy.builder().setMinimumInterval(10, TimeUnit.MILLISECONDS)
+        .setMaximumRate(20).build();
+    assertEquals(10 * ms, policy.nextInterval(0, true, 0));
+    assertEquals(50 * ms, policy.nextInterval(0, true, 1));
+    assertEquals(250 * ms, policy.nextInterval(0, true, 5));
+  }
+
+  @Test
+  public void testFixed() {
+    PollingPolicy policy = PollingPolicy.fixed(30, TimeUnit.MILLISECONDS);
+    assertEquals(30 * ms, policy.nextInterval(0, false, 1));
+    assertEquals(30 * ms, policy.nextInterval(30 * ms, false, 1));
+    assertEquals(30 * ms, policy.nextInterval(30 * ms, true, 1));
+  }
+
+  @Test
+  public void testInvalid() {
+    PollingPolicy.PollingPolicyBuilder builder = PollingPolicy.builder();
+    assertThrows(IllegalArgumentException.class,
+        () -> builder.setMinimumInterval(0, TimeUnit.MILLISECONDS));
+    assertThrows(IllegalArgumentException.class,
+        () -> builder.setMaximumInterval(-1, TimeUnit.MILLISECONDS));
+    assertThrows(NullPointerException.class, () -> builder.setMinimumInterval(1, null));
+    assertThrows(IllegalArgumentException.class, () -> builder.setBackoffMultiplier(0.5));
+    assertThrows(IllegalArgumentException.class, () -> builder.setBackoffMultiplier(Double.NaN));
+    assertThrows(IllegalArgumentException.class, () -> builder.setMaximumRate(0));
+    assertThrows(IllegalStateException.class,
+        () -> builder.setMinimumInterval(10, TimeUnit.SECONDS).build());
+  }
+
+  @Test
+  public void testEquality() {
+    new EqualsTester()
+        .addEqualityGroup(PollingPolicy.builder().build(), PollingPolicy.builder().build())
+        .addEqualityGroup(PollingPolicy.fixed(1, TimeUnit.SECONDS))
+        .addEqualityGroup(PollingPolicy.builder().setMaximumRate(10).build()).testEquals();
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals(
+        "PollingPolicy{minimumInterval=100ms, maximumInterval=5000ms, "
+            + "backoffMultiplier=2.0, maximumRate=Infinity}",
+        PollingPolicy.builder().build().toString());
+  }
+
+}
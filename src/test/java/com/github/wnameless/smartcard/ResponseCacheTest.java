@@ -0,0 +1,131 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+import org.junit.jupiter.api.Test;
+
+public class ResponseCacheTest {
+
+  byte[] card1 = {0x3B, 0x00, 0x01};
+  byte[] card2 = {0x3B, 0x00, 0x02};
+  byte[] context = {0x00, (byte) 0xA4, 0x04, 0x00};
+  CommandAPDU read = new CommandAPDU(0x00, INS.READ_BINARY, 0x00, 0x00, 256);
+  ResponseAPDU response = new ResponseAPDU(new byte[] {0x01, 0x02, (byte) 0x90, 0x00});
+
+  @Test
+  public void testBuilder() {
+    ResponseCache cache = ResponseCache.builder().build();
+    assertEquals(1 << 20, cache.getMaximumBytes());
+    assertFalse(cache.isOffHeap());
+    assertEquals(ResponseCache.GET_UID, cache.getIdentityCommand());
+    assertThrows(IllegalArgumentException.class,
+        () -> ResponseCache.builder().setMaximumBytes(0));
+    assertThrows(NullPointerException.class, () -> ResponseCache.builder().setCacheable(null));
+    assertThrows(NullPointerException.class,
+        () -> ResponseCache.builder().setIdentityCommand(null));
+  }
+
+  @Test
+  public void testIsReadCommand() {
+    assertTrue(ResponseCache.isReadCommand(read));
+    assertTrue(ResponseCache.isReadCommand(new CommandAPDU(0x00, INS.READ_RECORD, 1, 4, 256)));
+    assertTrue(
+        ResponseCache.isReadCommand(new CommandAPDU(0x00, INS.READ_RECORD, 2, 0x0C, 256)));
+    assertFalse(ResponseCache.isReadCommand(new CommandAPDU(0x00, INS.READ_RECORD, 0, 4, 256)));
+    for (int mode = 0; mode < 4; mode++) {
+      assertFalse(
+          ResponseCache.isReadCommand(new CommandAPDU(0x00, INS.READ_RECORD, 0, mode, 256)));
+      assertFalse(ResponseCache
+          .isReadCommand(new CommandAPDU(0x00, INS.READ_RECORD, 0, 0x08 | mode, 256)));
+    }
+    assertTrue(ResponseCache.isReadCommand(new CommandAPDU(0x00, INS.GET_DATA, 0x9F, 0x7F, 256)));
+    assertFalse(ResponseCache.isReadCommand(new CommandAPDU(0x80, INS.READ_BINARY, 0, 0, 256)));
+    assertFalse(ResponseCache.isReadCommand(new CommandAPDU(0x0C, INS.READ_BINARY, 0, 0, 256)));
+    assertFalse(
+        ResponseCache.isReadCommand(new CommandAPDU(0x00, INS.UPDATE_BINARY, 0, 0, new byte[1])));
+    assertFalse(ResponseCache.isReadCommand(ResponseCache.GET_UID));
+  }
+
+  @Test
+  public void testGetAndPut() {
+    ResponseCache cache = ResponseCache.builder().build();
+    assertNull(cache.get(card1, context, read));
+    cache.put(card1, context, read, response);
+    assertEquals(response, cache.get(card1, context, read));
+    assertNull(cache.get(card2, context, read));
+    assertNull(cache.get(card1, new byte[0], read));
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(3, cache.getMissCount());
+  }
+
+  @Test
+  public void testOffHeap() {
+    ResponseCache cache = ResponseCache.builder().setOffHeap(true).build();
+    assertTrue(cache.isOffHeap());
+    cache.put(card1, context, read, response);
+    assertArrayEquals(response.getBytes(), cache.get(card1, context, read).getBytes());
+  }
+
+  @Test
+  public void testEviction() {
+    ResponseCache one = ResponseCache.builder().build();
+    one.put(card1, context, read, response);
+    long size = one.getBytes();
+
+    ResponseCache cache = ResponseCache.builder().setMaximumBytes(size * 2).build();
+    CommandAPDU read2 = new CommandAPDU(0x00, INS.READ_BINARY, 0x00, 0x01, 256);
+    CommandAPDU read3 = new CommandAPDU(0x00, INS.READ_BINARY, 0x00, 0x02, 256);
+    cache.put(card1, context, read, response);
+    cache.put(card1, context, read2, response);
+    cache.get(card1, context, read);
+    cache.put(card1, context, read3, response);
+    assertEquals(2, cache.size());
+    assertEquals(size * 2, cache.getBytes());
+    assertEquals(response, cache.get(card1, context, read));
+    assertNull(cache.get(card1, context, read2));
+    assertEquals(response, cache.get(card1, context, read3));
+
+    ResponseCache tiny = ResponseCache.builder().setMaximumBytes(size - 1).build();
+    tiny.put(card1, context, read, response);
+    assertEquals(0, tiny.size());
+  }
+
+  @Test
+  public void testInvalidate() {
+    ResponseCache cache = ResponseCache.builder().build();
+    cache.put(card1, context, read, response);
+    cache.put(card2, context, read, response);
+    cache.invalidate(card1);
+    assertNull(cache.get(card1, context, read));
+    assertEquals(response, cache.get(card2, context, read));
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.getBytes());
+  }
+
+}
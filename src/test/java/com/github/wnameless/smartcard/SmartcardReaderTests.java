@@ -22,5 +22,12 @@ import org.junit.platform.suite.api.SelectClasses;
 import org.junit.platform.suite.api.Suite;
 
 @Suite
-@SelectClasses({APDUTest.class, AutomatedReaderTest.class, CardReaderTest.class, INSTest.class})
+@SelectClasses({APDUTest.class, AutomatedReaderTest.class, BerTlvTest.class,
+    CardEventTest.class, CardProfileRegistryTest.class, CardProfileTest.class,
+    CardReaderTest.class, CardSessionPoolTest.class, CommandScriptTest.class,
+    DefaultCardReaderMetricsTest.class, ExchangeRecorderTest.class, INSTest.class,
+    LatencyHistogramTest.class, PollingPolicyTest.class, ResponseCacheTest.class,
+    StatusWordExceptionTest.class, TerminalHealthTest.class, TerminalRegistryTest.class,
+    TerminalSchedulerTest.class, VirtualCardTest.class, VirtualCardTerminalTest.class,
+    VirtualTerminalsTest.class})
 public class SmartcardReaderTests {}
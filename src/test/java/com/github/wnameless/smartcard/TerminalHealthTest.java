@@ -0,0 +1,105 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import javax.smartcardio.CardTerminal;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TerminalHealthTest {
+
+  TerminalHealth health;
+  CardTerminal terminal = new VirtualCardTerminal("Virtual Reader");
+
+  @BeforeEach
+  public void setUp() {
+    health = new TerminalHealth();
+    health.setQuarantine(50, 200, TimeUnit.MILLISECONDS);
+  }
+
+  @Test
+  public void testSettings() {
+    assertEquals(3, health.getFailureThreshold());
+    assertEquals(50, health.getInitialQuarantine(TimeUnit.MILLISECONDS));
+    assertEquals(200, health.getMaximumQuarantine(TimeUnit.MILLISECONDS));
+    assertThrows(IllegalArgumentException.class, () -> health.setFailureThreshold(0));
+    assertThrows(IllegalArgumentException.class,
+        () -> health.setQuarantine(0, 1, TimeUnit.SECONDS));
+    assertThrows(IllegalArgumentException.class,
+        () -> health.setQuarantine(2, 1, TimeUnit.SECONDS));
+    assertThrows(NullPointerException.class, () -> health.setQuarantine(1, 1, null));
+  }
+
+  @Test
+  public void testQuarantine() {
+    health.failed(terminal);
+    health.failed(terminal);
+    assertTrue(health.allows(terminal));
+    assertFalse(health.isQuarantined(terminal));
+    assertEquals(2, health.getConsecutiveFailures(terminal));
+
+    health.failed(terminal);
+    assertTrue(health.isQuarantined(terminal));
+    assertFalse(health.allows(terminal));
+    assertEquals(Arrays.asList(terminal), health.getQuarantinedTerminals());
+  }
+
+  @Test
+  public void testProbe() throws Exception {
+    health.setQuarantine(200, 1000, TimeUnit.MILLISECONDS);
+    health.setFailureThreshold(1);
+    health.failed(terminal);
+    assertFalse(health.allows(terminal));
+    Thread.sleep(250);
+    assertTrue(health.allows(terminal));
+    assertFalse(health.allows(terminal));
+
+    health.failed(terminal);
+    Thread.sleep(250);
+    assertFalse(health.allows(terminal));
+    Thread.sleep(200);
+    assertTrue(health.allows(terminal));
+
+    health.succeeded(terminal);
+    assertTrue(health.allows(terminal));
+    assertFalse(health.isQuarantined(terminal));
+    assertEquals(0, health.getConsecutiveFailures(terminal));
+  }
+
+  @Test
+  public void testReset() {
+    health.setFailureThreshold(1);
+    health.failed(terminal);
+    health.reset(terminal);
+    assertTrue(health.allows(terminal));
+    assertTrue(health.getQuarantinedTerminals().isEmpty());
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("TerminalHealth{quarantined=0}", health.toString());
+  }
+
+}
@@ -0,0 +1,122 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.smartcardio.CardTerminal;
+import javax.smartcardio.CardTerminals;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+public class TerminalRegistryTest {
+
+  TerminalRegistry registry;
+
+  @Mock
+  CardTerminals terminals;
+
+  @Mock
+  CardTerminal terminal1;
+
+  @Mock
+  CardTerminal terminal2;
+
+  @BeforeEach
+  public void setUp() throws Exception {
+    MockitoAnnotations.openMocks(this);
+    when(terminal1.getName()).thenReturn("Reader 1");
+    when(terminal2.getName()).thenReturn("Reader 2");
+    when(terminals.list()).thenReturn(Arrays.asList(terminal1));
+
+    registry = new TerminalRegistry(() -> terminals);
+  }
+
+  @Test
+  public void testGetTerminalsIsCached() throws Exception {
+    assertEquals(Arrays.asList(terminal1), registry.getTerminals());
+    assertEquals(Arrays.asList(terminal1), registry.getTerminals());
+    verify(terminals, times(1)).list();
+  }
+
+  @Test
+  public void testInvalidate() throws Exception {
+    registry.getTerminals();
+    registry.invalidate();
+    registry.getTerminals();
+    verify(terminals, times(2)).list();
+  }
+
+  @Test
+  public void testZeroTimeToLive() throws Exception {
+    registry.setTimeToLive(0, TimeUnit.SECONDS);
+    assertEquals(0, registry.getTimeToLive(TimeUnit.SECONDS));
+    registry.getTerminals();
+    registry.getTerminals();
+    verify(terminals, times(2)).list();
+  }
+
+  @Test
+  public void testSetTimeToLiveException() {
+    assertThrows(IllegalArgumentException.class,
+        () -> registry.setTimeToLive(-1, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testGetSnapshot() throws Exception {
+    assertTrue(registry.getSnapshot().isEmpty());
+    registry.getTerminals();
+    assertEquals(Arrays.asList(terminal1), registry.getSnapshot());
+    verify(terminals, times(1)).list();
+  }
+
+  @Test
+  public void testListeners() throws Exception {
+    List<CardTerminal> attached = new ArrayList<>();
+    List<CardTerminal> detached = new ArrayList<>();
+    TerminalListener listener = (a, d) -> {
+      attached.addAll(a);
+      detached.addAll(d);
+    };
+    registry.addListener(listener);
+
+    registry.refresh();
+    assertEquals(Arrays.asList(terminal1), attached);
+    assertTrue(detached.isEmpty());
+
+    when(terminals.list()).thenReturn(Arrays.asList(terminal2));
+    attached.clear();
+    registry.refresh();
+    assertEquals(Arrays.asList(terminal2), attached);
+    assertEquals(Arrays.asList(terminal1), detached);
+
+    registry.removeListener(listener);
+    when(terminals.list()).thenReturn(Arrays.asList(terminal1));
+    attached.clear();
+    registry.refresh();
+    assertTrue(attached.isEmpty());
+  }
+
+}
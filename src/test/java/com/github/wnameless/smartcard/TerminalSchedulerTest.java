@@ -0,0 +1,185 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.smartcardio.CardException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class TerminalSchedulerTest {
+
+  TerminalScheduler scheduler;
+  VirtualCardTerminal terminal;
+
+  @BeforeEach
+  public void setUp() {
+    scheduler = new TerminalScheduler();
+    terminal = new VirtualCardTerminal("Virtual Reader");
+  }
+
+  @Test
+  public void testPriorityAndFifoOrder() throws Exception {
+    TerminalScheduler.Ticket owner = scheduler.acquire(terminal, TerminalScheduler.NORMAL_PRIORITY);
+    assertTrue(scheduler.isBusy(terminal));
+
+    List<String> order = new ArrayList<>();
+    scheduler.submit(terminal, 0, t -> grant(order, "normal1", t));
+    scheduler.submit(terminal, -1, t -> grant(order, "low", t));
+    scheduler.submit(terminal, 0, t -> grant(order, "normal2", t));
+    scheduler.submit(terminal, 5, t -> grant(order, "high", t));
+    assertEquals(4, scheduler.getQueueDepth(terminal));
+
+    scheduler.release(owner);
+    assertEquals(Arrays.asList("high", "normal1", "normal2", "low"), order);
+    assertEquals(0, scheduler.getQueueDepth(terminal));
+    assertFalse(scheduler.isBusy(terminal));
+  }
+
+  @Test
+  public void testBoundedBypass() throws Exception {
+    TerminalScheduler.Ticket owner = scheduler.acquire(terminal, 0);
+    List<String> order = new ArrayList<>();
+    scheduler.submit(terminal, -1, t -> grant(order, "low", t));
+    submitHigh(order, 2 * TerminalScheduler.MAX_BYPASS);
+
+    scheduler.release(owner);
+    assertEquals(2 * TerminalScheduler.MAX_BYPASS + 1, order.size());
+    assertEquals(TerminalScheduler.MAX_BYPASS, order.indexOf("low"));
+    assertFalse(scheduler.isBusy(terminal));
+  }
+
+  @Test
+  public void testGrantOutsideLock() throws Exception {
+    TerminalScheduler.Ticket owner = scheduler.acquire(terminal, 0);
+    AtomicReference<Boolean> unlocked = new AtomicReference<>(false);
+    scheduler.submit(terminal, 0, t -> {
+      Thread probe = new Thread(() -> {
+        scheduler.getQueueDepth(terminal);
+        unlocked.set(true);
+      });
+      probe.start();
+      try {
+        probe.join(TimeUnit.SECONDS.toMillis(5));
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      scheduler.release(t);
+    });
+
+    scheduler.release(owner);
+    assertTrue(unlocked.get());
+    assertFalse(scheduler.isBusy(terminal));
+  }
+
+  @Test
+  public void testCancel() throws Exception {
+    TerminalScheduler.Ticket owner = scheduler.acquire(terminal, 0);
+    List<String> order = new ArrayList<>();
+    TerminalScheduler.Ticket cancelled = scheduler.submit(terminal, 0, t -> grant(order, "x", t));
+    assertTrue(scheduler.cancel(cancelled));
+    assertFalse(scheduler.cancel(cancelled));
+    assertFalse(scheduler.cancel(owner));
+
+    scheduler.release(owner);
+    assertTrue(order.isEmpty());
+    assertFalse(scheduler.isBusy(terminal));
+  }
+
+  @Test
+  public void testInterruptedAcquire() throws Exception {
+    TerminalScheduler.Ticket owner = scheduler.acquire(terminal, 0);
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    CountDownLatch done = new CountDownLatch(1);
+    Thread waiter = new Thread(() -> {
+      try {
+        scheduler.acquire(terminal, 0);
+      } catch (CardException e) {
+        error.set(e);
+      }
+      done.countDown();
+    });
+    waiter.start();
+    while (scheduler.getQueueDepth(terminal) == 0) {
+      Thread.sleep(1);
+    }
+    waiter.interrupt();
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertTrue(error.get() instanceof CardException);
+    assertEquals(0, scheduler.getQueueDepth(terminal));
+
+    scheduler.release(owner);
+    assertFalse(scheduler.isBusy(terminal));
+  }
+
+  @Test
+  public void testRemoveDetachedLane() throws Exception {
+    scheduler.release(scheduler.acquire(terminal, 0));
+    assertEquals(1, scheduler.getLaneCount());
+    scheduler.remove(terminal);
+    assertEquals(0, scheduler.getLaneCount());
+
+    TerminalScheduler.Ticket owner = scheduler.acquire(terminal, 0);
+    List<String> order = new ArrayList<>();
+    scheduler.submit(terminal, 0, t -> grant(order, "waiting", t));
+    scheduler.remove(terminal);
+    assertEquals(1, scheduler.getLaneCount());
+    scheduler.release(owner);
+    assertEquals(Arrays.asList("waiting"), order);
+    assertEquals(0, scheduler.getLaneCount());
+
+    scheduler.release(scheduler.acquire(terminal, 0));
+    assertEquals(1, scheduler.getLaneCount());
+    scheduler.remove(new VirtualCardTerminal("Unknown Reader"));
+    assertEquals(1, scheduler.getLaneCount());
+  }
+
+  @Test
+  public void testExclusive() {
+    assertTrue(scheduler.isExclusive());
+    scheduler.setExclusive(false);
+    assertFalse(scheduler.isExclusive());
+    assertThrows(NullPointerException.class, () -> scheduler.getQueueDepth(null));
+  }
+
+  private void submitHigh(List<String> order, int remaining) {
+    if (remaining == 0) return;
+
+    scheduler.submit(terminal, 5, t -> {
+      order.add("high");
+      submitHigh(order, remaining - 1);
+      scheduler.release(t);
+    });
+  }
+
+  private void grant(List<String> order, String name, TerminalScheduler.Ticket ticket) {
+    order.add(name);
+    scheduler.release(ticket);
+  }
+
+}
@@ -0,0 +1,125 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.nio.ByteBuffer;
+import javax.smartcardio.Card;
+import javax.smartcardio.CardChannel;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CardNotPresentException;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class VirtualCardTerminalTest {
+
+  VirtualCardTerminal terminal;
+  VirtualCard card;
+  CommandAPDU command = APDU.builder().setINS(INS.GET_CHALLENGE).setLe(8).build();
+
+  @BeforeEach
+  public void setUp() {
+    terminal = new VirtualCardTerminal("Virtual Reader 0");
+    card = VirtualCard.builder().setATR("3B021450")
+        .addResponse(command, new ResponseAPDU(new byte[] {1, 2, 3, 4, 5, 6, 7, 8, (byte) 0x90, 0}))
+        .build();
+  }
+
+  @Test
+  public void testConnectWithoutCard() {
+    assertFalse(terminal.isCardPresent());
+    assertThrows(CardNotPresentException.class, () -> terminal.connect("*"));
+  }
+
+  @Test
+  public void testConnect() throws Exception {
+    terminal.insert(card);
+    assertTrue(terminal.isCardPresent());
+
+    Card connected = terminal.connect("*");
+    assertEquals(card.getATR(), connected.getATR());
+    assertEquals("T=1", connected.getProtocol());
+
+    CardChannel channel = connected.getBasicChannel();
+    assertEquals(0, channel.getChannelNumber());
+    assertSame(connected, channel.getCard());
+    assertEquals(0x9000, channel.transmit(command).getSW());
+
+    ByteBuffer response = ByteBuffer.allocate(258);
+    assertEquals(10, channel.transmit(ByteBuffer.wrap(command.getBytes()), response));
+    assertEquals(10, response.position());
+    assertThrows(IllegalArgumentException.class,
+        () -> channel.transmit(ByteBuffer.wrap(command.getBytes()), ByteBuffer.allocate(257)));
+  }
+
+  @Test
+  public void testLogicalChannel() throws Exception {
+    terminal.insert(VirtualCard.builder()
+        .setResponder(c -> new ResponseAPDU(new byte[] {(byte) c.getCLA(), (byte) 0x90, 0}))
+        .build());
+    Card connected = terminal.connect("*");
+    CardChannel channel = connected.openLogicalChannel();
+    assertEquals(1, channel.getChannelNumber());
+    assertEquals(2, connected.openLogicalChannel().getChannelNumber());
+    assertEquals(0x01, channel.transmit(command).getData()[0]);
+    assertEquals(0x00, connected.getBasicChannel().transmit(command).getData()[0]);
+    connected.openLogicalChannel();
+    connected.openLogicalChannel();
+    assertEquals(0x41, connected.openLogicalChannel().transmit(command).getData()[0]);
+    channel.close();
+  }
+
+  @Test
+  public void testRemove() throws Exception {
+    terminal.insert(card);
+    CardChannel channel = terminal.connect("*").getBasicChannel();
+    terminal.remove();
+    assertThrows(CardException.class, () -> channel.transmit(command));
+
+    terminal.insert(card);
+    assertThrows(CardException.class, () -> channel.transmit(command));
+  }
+
+  @Test
+  public void testDisconnect() throws Exception {
+    terminal.insert(card);
+    Card connected = terminal.connect("*");
+    connected.disconnect(false);
+    assertThrows(IllegalStateException.class, () -> connected.getBasicChannel());
+  }
+
+  @Test
+  public void testWaitForCard() throws Exception {
+    assertFalse(terminal.waitForCardPresent(10));
+    assertTrue(terminal.waitForCardAbsent(10));
+
+    new Thread(() -> terminal.insert(card)).start();
+    assertTrue(terminal.waitForCardPresent(5000));
+    assertFalse(terminal.waitForCardAbsent(10));
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("Virtual Reader 0", terminal.getName());
+    assertEquals("VirtualCardTerminal{Virtual Reader 0}", terminal.toString());
+  }
+
+}
@@ -0,0 +1,102 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.concurrent.TimeUnit;
+import javax.smartcardio.CardException;
+import javax.smartcardio.CommandAPDU;
+import javax.smartcardio.ResponseAPDU;
+import org.junit.jupiter.api.Test;
+import com.github.wnameless.smartcard.VirtualCard.VirtualCardBuilder;
+import com.google.common.testing.NullPointerTester;
+
+public class VirtualCardTest {
+
+  CommandAPDU select = APDU.builder().setINS(INS.SELECT_FILE).setP1((byte) 0x04)
+      .setData("D1580000010000000000000000001100").build();
+
+  @Test
+  public void testAllNPE() {
+    NullPointerTester tester = new NullPointerTester();
+    tester.setDefault(CommandAPDU.class, select);
+    tester.setDefault(ResponseAPDU.class, new ResponseAPDU(new byte[] {(byte) 0x90, (byte) 0x00}));
+    tester.testAllPublicConstructors(VirtualCardBuilder.class);
+    tester.testAllPublicInstanceMethods(VirtualCard.builder());
+    tester.testAllPublicInstanceMethods(VirtualCard.builder().build());
+  }
+
+  @Test
+  public void testATR() {
+    assertArrayEquals(new byte[] {(byte) 0x3B, (byte) 0x00},
+        VirtualCard.builder().build().getATR().getBytes());
+    assertArrayEquals(new byte[] {(byte) 0x3B, (byte) 0x02, (byte) 0x14, (byte) 0x50},
+        VirtualCard.builder().setATR("3B021450").build().getATR().getBytes());
+  }
+
+  @Test
+  public void testScriptedResponse() throws Exception {
+    VirtualCard card = VirtualCard.builder()
+        .addResponse(select, new ResponseAPDU(new byte[] {(byte) 0x90, (byte) 0x00}))
+        .addResponse("00CA1100020000", "01029000").build();
+
+    assertEquals(0x9000, card.transmit(select).getSW());
+    assertArrayEquals(new byte[] {(byte) 0x01, (byte) 0x02}, card
+        .transmit(APDU.builder().setINS(INS.GET_DATA).setP1((byte) 0x11).setData("0000").build())
+        .getData());
+    assertEquals(0x6D00, card.transmit(APDU.builder().build()).getSW());
+  }
+
+  @Test
+  public void testResponder() throws Exception {
+    VirtualCard card = VirtualCard.builder()
+        .setResponder(command -> new ResponseAPDU(new byte[] {(byte) 0x6A, (byte) 0x82})).build();
+    assertEquals(0x6A82, card.transmit(select).getSW());
+  }
+
+  @Test
+  public void testErrorRate() {
+    VirtualCard card = VirtualCard.builder().setErrorRate(1).build();
+    assertThrows(CardException.class, () -> card.transmit(select));
+  }
+
+  @Test
+  public void testLatency() throws Exception {
+    VirtualCard card = VirtualCard.builder().setLatency(20, TimeUnit.MILLISECONDS)
+        .setJitter(5, TimeUnit.MILLISECONDS).build();
+    long start = System.nanoTime();
+    card.transmit(select);
+    assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20));
+  }
+
+  @Test
+  public void testBuilderExceptions() {
+    VirtualCardBuilder builder = VirtualCard.builder();
+    assertThrows(IllegalArgumentException.class, () -> builder.setLatency(-1, TimeUnit.SECONDS));
+    assertThrows(IllegalArgumentException.class, () -> builder.setJitter(-1, TimeUnit.SECONDS));
+    assertThrows(IllegalArgumentException.class, () -> builder.setErrorRate(1.5));
+    assertThrows(IllegalArgumentException.class, () -> builder.setATR("xyz"));
+  }
+
+  @Test
+  public void testToString() {
+    assertEquals("VirtualCard{3b00}", VirtualCard.builder().build().toString());
+  }
+
+}
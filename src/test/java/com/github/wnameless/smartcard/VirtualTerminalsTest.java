@@ -0,0 +1,94 @@
+/**
+ *
+ * @author Wei-Ming Wu
+ *
+ *
+ *         Copyright 2026 Wei-Ming Wu
+ *
+ *         Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file
+ *         except in compliance with the License. You may obtain a copy of the License at
+ *
+ *         http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *         Unless required by applicable law or agreed to in writing, software distributed under the
+ *         License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ *         either express or implied. See the License for the specific language governing
+ *         permissions and limitations under the License.
+ *
+ */
+package com.github.wnameless.smartcard;
+
+import static org.junit.jupiter.api.Assertions.*;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import javax.smartcardio.CardTerminals;
+import javax.smartcardio.CardTerminals.State;
+import javax.smartcardio.TerminalFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class VirtualTerminalsTest {
+
+  VirtualCardTerminal terminal1;
+  VirtualCardTerminal terminal2;
+  TerminalFactory factory;
+
+  @BeforeEach
+  public void setUp() {
+    terminal1 = new VirtualCardTerminal("Virtual Reader 1");
+    terminal2 = new VirtualCardTerminal("Virtual Reader 2");
+    factory = VirtualTerminals.newFactory(terminal1, terminal2);
+  }
+
+  @Test
+  public void testPrivateConstructor() throws Exception {
+    Constructor<VirtualTerminals> c = VirtualTerminals.class.getDeclaredConstructor();
+    assertTrue(Modifier.isPrivate(c.getModifiers()));
+    c.setAccessible(true);
+    c.newInstance();
+  }
+
+  @Test
+  public void testFactory() throws Exception {
+    assertEquals(VirtualTerminals.TYPE, factory.getType());
+    assertEquals(Arrays.asList(terminal1, terminal2), factory.terminals().list());
+  }
+
+  @Test
+  public void testList() throws Exception {
+    terminal2.insert(VirtualCard.builder().build());
+    CardTerminals terminals = factory.terminals();
+    assertEquals(Arrays.asList(terminal2), terminals.list(State.CARD_PRESENT));
+    assertEquals(Arrays.asList(terminal1), terminals.list(State.CARD_ABSENT));
+  }
+
+  @Test
+  public void testWaitForChange() throws Exception {
+    CardTerminals terminals = factory.terminals();
+    assertFalse(terminals.waitForChange(10));
+
+    terminal1.insert(VirtualCard.builder().build());
+    assertTrue(terminals.waitForChange(10));
+    assertEquals(Arrays.asList(terminal1), terminals.list(State.CARD_INSERTION));
+    assertTrue(terminals.list(State.CARD_REMOVAL).isEmpty());
+
+    terminal1.remove();
+    terminal2.insert(VirtualCard.builder().build());
+    assertTrue(terminals.waitForChange(10));
+    assertEquals(Arrays.asList(terminal2), terminals.list(State.CARD_INSERTION));
+    assertEquals(Arrays.asList(terminal1), terminals.list(State.CARD_REMOVAL));
+
+    terminal2.insert(VirtualCard.builder().build());
+    assertTrue(terminals.waitForChange(10));
+    assertEquals(Arrays.asList(terminal2), terminals.list(State.CARD_INSERTION));
+    assertEquals(Arrays.asList(terminal2), terminals.list(State.CARD_REMOVAL));
+  }
+
+  @Test
+  public void testWaitForChangeWithoutTerminals() {
+    assertThrows(IllegalStateException.class,
+        () -> VirtualTerminals.newFactory().terminals().waitForChange(10));
+  }
+
+}